@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lucene.analysis;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analysis of a corpus of short texts by the tokenizer and filters chain, and by the
+ * {@link FoldingLetterOrDigitTokenizer} which replaces it (same tokens, see FoldingLetterOrDigitTokenizerTest)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoldingTokenizerBenchmark {
+
+    private static final String[] WORDS = {"Apple", "iPhone", "12", "Cr\u00e8me", "br\u00fbl\u00e9e", "\u0152uf",
+            "v\u00e9lo", "THERMOMIX", "l'arbre", "a|b"};
+
+    private List<String> corpus;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        corpus = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 1 + random.nextInt(8); j++) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            corpus.add(sb.toString());
+        }
+    }
+
+    @Benchmark
+    public long chain() throws IOException {
+        return consume(FoldingLetterOrDigitTokenizerTest.CHAIN);
+    }
+
+    @Benchmark
+    public long fused() throws IOException {
+        return consume(FoldingLetterOrDigitTokenizerTest.FUSED);
+    }
+
+    /**
+     * @return length of the tokens, so that the analysis is not optimized away
+     */
+    private long consume(Analyzer analyzer) throws IOException {
+        long length = 0;
+        for (String text : corpus) {
+            try (TokenStream ts = analyzer.tokenStream("", text)) {
+                CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+                ts.reset();
+                while (ts.incrementToken()) {
+                    length += termAtt.length();
+                }
+                ts.end();
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest;
+
+import org.apache.solr.core.SolrConfig;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.IndexSchemaFactory;
+import org.apache.solr.util.TestHarness;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Config of the core of the tests, read from the test resources of the project: the directory given by the
+ * {@value #HOME_PROPERTY} system property, src/test/resources/solr of the working directory by default.
+ */
+public final class TestConfig {
+
+    public static final String HOME_PROPERTY = "autocomplete.test.home";
+
+    private static final String CORE = "collection1";
+
+    private TestConfig() {
+    }
+
+    private static Path home() {
+        return Paths.get(System.getProperty(HOME_PROPERTY, "src/test/resources/solr")).toAbsolutePath();
+    }
+
+    public static SolrConfig config() throws IOException {
+        Path home = home();
+        try {
+            return new SolrConfig(home.resolve(CORE), "solrconfig.xml");
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Test core not found in " + home + ", see -D" + HOME_PROPERTY, e);
+        }
+    }
+
+    public static IndexSchema schema(SolrConfig config) {
+        return IndexSchemaFactory.buildIndexSchema(IndexSchema.DEFAULT_SCHEMA_FILE, config);
+    }
+
+    /**
+     * @return the core of the tests, without update log, indexing into {@code dataDir}
+     */
+    public static TestHarness core(Path dataDir) throws IOException {
+        System.setProperty("solr.solr.home", home().toString());
+        System.setProperty("enable.update.log", "false");
+        SolrConfig config = config();
+        return new TestHarness(CORE, dataDir.toString(), config, schema(config));
+    }
+}
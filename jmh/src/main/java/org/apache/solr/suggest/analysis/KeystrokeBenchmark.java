@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.NormalAnalyzer;
+import org.apache.lucene.analysis.WordsParser;
+import org.apache.solr.suggest.analyzing.QueryInfos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query typed one keystroke after the other ({@link Allocations#KEYSTROKES}), parsed by the previous and the current
+ * implementations. The allocations asserted by the tests are compared with {@code -prof gc} (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeystrokeBenchmark {
+
+    private Analyzer analyzer;
+
+    @Setup
+    public void setUp() {
+        analyzer = new NormalAnalyzer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        analyzer.close();
+    }
+
+    /**
+     * @return number of matched tokens, so that the parsing is not optimized away
+     */
+    @Benchmark
+    public long queryInfosLegacy() {
+        long sum = 0;
+        for (String keystroke : Allocations.KEYSTROKES) {
+            sum += QueryInfosTest.Legacy.parse(keystroke, analyzer).matchedTokens.size();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long queryInfos() {
+        long sum = 0;
+        for (String keystroke : Allocations.KEYSTROKES) {
+            sum += QueryInfos.parse(keystroke, analyzer).getMatchedTokens().size();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long cleanRepetitionPattern() {
+        long sum = 0;
+        for (String keystroke : Allocations.KEYSTROKES) {
+            sum += keystroke.replaceAll(WordsParser.CLEANER, "$1$1").length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long cleanRepetitionScanner() {
+        long sum = 0;
+        for (String keystroke : Allocations.KEYSTROKES) {
+            sum += WordsParser.cleanRepetitionText(keystroke).length();
+        }
+        return sum;
+    }
+}
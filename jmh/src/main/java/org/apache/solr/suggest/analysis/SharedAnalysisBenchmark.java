@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.IOUtils;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.suggest.TestConfig;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.DocumentBuilder;
+import org.apache.solr.update.processor.LogUpdateProcessorFactory;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.update.processor.UpdateRequestProcessorFactory;
+import org.apache.solr.util.TestHarness;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long titles run through the processors of the reference chain, which clones the text into each field, and of
+ * the chain sharing its tokens, then through the analysis of the indexed fields as done by the index writer
+ * (same terms, see SharedAnalysisUpdateProcessorTest)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharedAnalysisBenchmark {
+
+    @Param({SharedAnalysisUpdateProcessorTest.REFERENCE_CHAIN, SharedAnalysisUpdateProcessorTest.SHARED_CHAIN})
+    public String chain;
+
+    private Path dataDir;
+    private TestHarness harness;
+    private List<String> titles;
+
+    @Setup
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("shared-analysis");
+        harness = TestConfig.core(dataDir);
+
+        Random random = new Random(3);
+        String[] words = SharedAnalysisUpdateProcessorTest.WORDS;
+        titles = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 8 + random.nextInt(12); j++) {
+                sb.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            titles.add(sb.toString());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        harness.close();
+        IOUtils.rm(dataDir);
+    }
+
+    /**
+     * Run the processors of the chain up to the log processor, then build and analyze the documents
+     *
+     * @return number of tokens
+     */
+    @Benchmark
+    public long analyze() throws IOException {
+        SolrCore core = harness.getCore();
+        IndexSchema schema = core.getLatestSchema();
+        long[] count = new long[1];
+        try (SolrQueryRequest req = new LocalSolrQueryRequest(core, new ModifiableSolrParams())) {
+            UpdateRequestProcessor processor = new UpdateRequestProcessor(null) {
+                @Override
+                public void processAdd(AddUpdateCommand cmd) throws IOException {
+                    for (IndexableField field : DocumentBuilder.toDocument(cmd.getSolrInputDocument(), schema)) {
+                        if (field.fieldType().indexOptions() == IndexOptions.NONE || !field.fieldType().tokenized()) {
+                            continue;
+                        }
+                        try (TokenStream ts = field.tokenStream(schema.getIndexAnalyzer(), null)) {
+                            ts.reset();
+                            while (ts.incrementToken()) {
+                                count[0]++;
+                            }
+                            ts.end();
+                        }
+                    }
+                }
+            };
+            List<UpdateRequestProcessorFactory> factories = core.getUpdateProcessingChain(chain).getProcessors();
+            for (int i = factories.indexOf(factories.stream()
+                    .filter(f -> f instanceof LogUpdateProcessorFactory).findFirst().get()) - 1; i >= 0; i--) {
+                processor = factories.get(i).getInstance(req, new SolrQueryResponse(), processor);
+            }
+
+            for (int i = 0; i < titles.size(); i++) {
+                AddUpdateCommand cmd = new AddUpdateCommand(req);
+                cmd.solrDoc = new SolrInputDocument("id", "doc" + i, "search", titles.get(i));
+                processor.processAdd(cmd);
+            }
+        }
+        return count[0];
+    }
+}
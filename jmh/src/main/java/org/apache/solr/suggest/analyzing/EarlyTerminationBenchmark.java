@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.solr.core.SolrConfig;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory;
+import org.apache.solr.suggest.TestConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One letter prefixes, which match most of the index, looked up in an index sorted by weight with a complete
+ * collection and with early termination (same results, see TopSuggestionsCollectorTest)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EarlyTerminationBenchmark {
+
+    private static final List<String> PREFIXES = List.of("a", "i", "s", "g", "t", "p", "c", "r", "b", "k", "m", "w", "o");
+
+    @Param({"5000", "20000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean earlyTermination;
+
+    private AutocompleteSuggester suggester;
+
+    @Setup
+    public void setUp() throws IOException {
+        SolrConfig config = TestConfig.config();
+        IndexSchema schema = TestConfig.schema(config);
+        Map<String, String> fields = AutocompleteLookupFactory.getFields(AutocompleteIndexBuilderTool.findSuggester(config, null));
+
+        Directory dir = new ByteBuffersDirectory();
+        Iterator<AutocompleteIndexBuilder.Suggestion> suggestions = TopSuggestionsCollectorTest.suggestions(size, 7L).iterator();
+        new AutocompleteIndexBuilder(schema, fields, 2, true)
+                .build(dir, () -> suggestions.hasNext() ? suggestions.next() : null);
+
+        // the searcher is kept open, so that the lookups do not reopen the index
+        suggester = new AutocompleteSuggester(dir, 0, true, true, fields, 0.00003f, null,
+                schema.getSimilarity(), false, 3600000L, 0, 0);
+        suggester.setSortByWeight(earlyTermination);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        suggester.close();
+    }
+
+    /**
+     * @return number of results, so that the lookups are not optimized away
+     */
+    @Benchmark
+    public int lookup() throws IOException {
+        int results = 0;
+        for (String prefix : PREFIXES) {
+            results += suggester.lookup2(prefix, 10, true, true).size();
+        }
+        return results;
+    }
+}
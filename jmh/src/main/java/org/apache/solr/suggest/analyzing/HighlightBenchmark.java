@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.solr.core.SolrConfig;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory;
+import org.apache.solr.suggest.TestConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Highlighting scanned with the folding tables, against the token stream of the query analyzer it replaces
+ * (same fragments, see HighlightTest)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HighlightBenchmark {
+
+    private static final int TEXTS = 1000;
+
+    private static final Set<String> MATCHED = Set.of("apple", "creme");
+
+    private static final String PREFIX = "th";
+
+    private AutocompleteSuggester suggester;
+
+    private String[] texts;
+
+    @Setup
+    public void setUp() throws IOException {
+        SolrConfig config = TestConfig.config();
+        IndexSchema schema = TestConfig.schema(config);
+        Map<String, String> fields = AutocompleteLookupFactory.getFields(AutocompleteIndexBuilderTool.findSuggester(config, null));
+
+        Directory dir = new ByteBuffersDirectory();
+        Iterator<AutocompleteIndexBuilder.Suggestion> suggestions =
+                List.of(new AutocompleteIndexBuilder.Suggestion("1", "apple", 1, null)).iterator();
+        new AutocompleteIndexBuilder(schema, fields, 1, false)
+                .build(dir, () -> suggestions.hasNext() ? suggestions.next() : null);
+        suggester = new AutocompleteSuggester(dir, 0, true, true, fields, 0.00003f, null,
+                schema.getSimilarity(), false, 0L, 0, 0);
+
+        Random random = new Random(7L);
+        texts = new String[TEXTS];
+        for (int i = 0; i < TEXTS; i++) {
+            texts[i] = HighlightTest.text(random);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        suggester.close();
+    }
+
+    /**
+     * @return length of the fragments, so that the highlighting is not optimized away
+     */
+    @Benchmark
+    public long analyzed() throws IOException {
+        long length = 0;
+        for (String text : texts) {
+            length += HighlightTest.analyzed(suggester, text, MATCHED, PREFIX).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long scanned() throws IOException {
+        long length = 0;
+        for (String text : texts) {
+            length += suggester.highlight(text, MATCHED, PREFIX).toString().length();
+        }
+        return length;
+    }
+}
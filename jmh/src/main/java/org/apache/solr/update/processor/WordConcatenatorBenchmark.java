@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import org.apache.lucene.analysis.CustomAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concatenation of the words of long product titles as done before, with a new analyzer and linked lists for
+ * each value, and by a reused {@link WordConcatenator} (same output, see WordConcatenatorTest)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordConcatenatorBenchmark {
+
+    private List<String> titles;
+    private WordConcatenator concatenator;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        titles = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            titles.add(WordConcatenatorTest.randomTitle(random, 15 + random.nextInt(25)));
+        }
+        concatenator = new WordConcatenator(new CustomAnalyzer());
+    }
+
+    /**
+     * @return length of the concatenations, so that they are not optimized away
+     */
+    @Benchmark
+    public long legacy() {
+        long length = 0;
+        for (String title : titles) {
+            length += WordConcatenatorTest.legacy(title).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long concatenator() throws IOException {
+        long length = 0;
+        for (String title : titles) {
+            length += concatenator.concat(title).length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,296 @@
+package org.apache.lucene.analysis;
+
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.util.CharTokenizer;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeFactory;
+
+import java.io.IOException;
+
+/**
+ * {@link LetterOrDigitTokenizer} followed by {@link LowerCaseFilter} and {@link ASCIIFoldingFilter} in a single pass.
+ * <p>
+ * Whether a char of the BMP is part of a token and what it becomes once lowercased and folded are read from tables
+ * computed once from the very same methods as the three steps, so that tokens and offsets are identical to the chain.
+ * Supplementary characters are lowercased on the fly, folding leaves them as is.
+ */
+public final class FoldingLetterOrDigitTokenizer extends Tokenizer {
+
+    private static final int BMP_SIZE = Character.MAX_VALUE + 1;
+    private static final int MAX_TOKEN_LENGTH = CharTokenizer.DEFAULT_MAX_WORD_LEN;
+    private static final int IO_BUFFER_SIZE = 4096;
+
+    /**
+     * Token chars of the BMP, one bit per char
+     */
+    private static final long[] TOKEN_CHARS = new long[BMP_SIZE >> 6];
+    /**
+     * Lowercased and folded char, when it is a single char
+     */
+    private static final char[] FOLDED = new char[BMP_SIZE];
+    /**
+     * Lowercased and folded chars, when there are several of them (e.g. the oe ligature to "oe"), else null
+     */
+    private static final char[][] FOLDED_EXPANSIONS = new char[BMP_SIZE][];
+    /**
+     * Max chars a single input char or surrogate pair folds to
+     */
+    private static final int MAX_FOLDED_LENGTH;
+
+    static {
+        int maxFoldedLength = 2;
+        char[] input = new char[2];
+        char[] output = new char[8];
+        for (int c = 0; c < BMP_SIZE; c++) {
+            if (!LetterOrDigitTokenizer.isLetterOrDigitOrPipe(c)) {
+                continue;
+            }
+            TOKEN_CHARS[c >> 6] |= 1L << c;
+
+            int length = Character.toChars(Character.toLowerCase(c), input, 0);
+            int folded = ASCIIFoldingFilter.foldToASCII(input, 0, output, 0, length);
+            if (folded == 1) {
+                FOLDED[c] = output[0];
+            } else {
+                char[] expansion = new char[folded];
+                System.arraycopy(output, 0, expansion, 0, folded);
+                FOLDED_EXPANSIONS[c] = expansion;
+                maxFoldedLength = Math.max(maxFoldedLength, folded);
+            }
+        }
+        MAX_FOLDED_LENGTH = maxFoldedLength;
+    }
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+    private final CharacterUtils.CharacterBuffer ioBuffer = CharacterUtils.newCharacterBuffer(IO_BUFFER_SIZE);
+
+    private int offset = 0;
+    private int bufferIndex = 0;
+    private int dataLen = 0;
+    private int finalOffset = 0;
+
+    public FoldingLetterOrDigitTokenizer() {
+        super();
+    }
+
+    public FoldingLetterOrDigitTokenizer(AttributeFactory factory) {
+        super(factory);
+    }
+
+    static boolean isTokenChar(char c) {
+        return (TOKEN_CHARS[c >> 6] & (1L << c)) != 0;
+    }
+
+    /**
+     * Lowercase and fold a token char (or surrogate pair) into {@code buffer}
+     *
+     * @return length of the folded chars
+     */
+    private static int fold(char c, int cp, int charCount, char[] buffer, int length) {
+        if (charCount == 2) {
+            return Character.toChars(Character.toLowerCase(cp), buffer, length);
+        }
+        char[] expansion = FOLDED_EXPANSIONS[c];
+        if (expansion == null) {
+            buffer[length] = FOLDED[c];
+            return 1;
+        }
+        System.arraycopy(expansion, 0, buffer, length, expansion.length);
+        return expansion.length;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        clearAttributes();
+        // length of the token in the input (bounded like CharTokenizer) and once folded
+        int inputLength = 0;
+        int length = 0;
+        int start = -1;
+        int end = -1;
+        char[] buffer = termAtt.buffer();
+        while (true) {
+            if (bufferIndex >= dataLen) {
+                offset += dataLen;
+                CharacterUtils.fill(ioBuffer, input);
+                if (ioBuffer.getLength() == 0) {
+                    dataLen = 0;
+                    if (inputLength > 0) {
+                        break;
+                    } else {
+                        finalOffset = correctOffset(offset);
+                        return false;
+                    }
+                }
+                dataLen = ioBuffer.getLength();
+                bufferIndex = 0;
+            }
+
+            final char[] chars = ioBuffer.getBuffer();
+            final char c = chars[bufferIndex];
+            final int cp;
+            final int charCount;
+            final boolean tokenChar;
+            if (Character.isHighSurrogate(c)) {
+                cp = Character.codePointAt(chars, bufferIndex, dataLen);
+                charCount = Character.charCount(cp);
+                tokenChar = charCount == 2 ? LetterOrDigitTokenizer.isLetterOrDigitOrPipe(cp) : isTokenChar(c);
+            } else {
+                cp = c;
+                charCount = 1;
+                tokenChar = isTokenChar(c);
+            }
+            bufferIndex += charCount;
+
+            if (tokenChar) {
+                if (inputLength == 0) {
+                    start = offset + bufferIndex - charCount;
+                    end = start;
+                }
+                if (length + MAX_FOLDED_LENGTH > buffer.length) {
+                    buffer = termAtt.resizeBuffer(length + MAX_FOLDED_LENGTH);
+                }
+                end += charCount;
+                inputLength += charCount;
+                length += fold(c, cp, charCount, buffer, length);
+                if (inputLength >= MAX_TOKEN_LENGTH) {
+                    break;
+                }
+            } else if (inputLength > 0) {
+                break;
+            }
+        }
+
+        termAtt.setLength(length);
+        offsetAtt.setOffset(correctOffset(start), finalOffset = correctOffset(end));
+        return true;
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        offsetAtt.setOffset(finalOffset, finalOffset);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        bufferIndex = 0;
+        offset = 0;
+        dataLen = 0;
+        finalOffset = 0;
+        ioBuffer.reset();
+    }
+
+    /**
+     * Tokens of a text in memory, as the tokenizer would produce them (same folded terms and offsets), without the
+     * reader, the buffers and the attributes of a token stream: for callers which only need to know where the
+     * tokens are and what they fold to, e.g. to highlight the matched words of a suggestion.
+     */
+    public static final class Scanner {
+        private final CharSequence text;
+        private int pos;
+        private char[] term = new char[16];
+        private int termLength;
+        private int start;
+        private int end;
+
+        public Scanner(CharSequence text) {
+            this.text = text;
+        }
+
+        /**
+         * Move to the next token
+         *
+         * @return false once the text is exhausted
+         */
+        public boolean next() {
+            int inputLength = 0;
+            termLength = 0;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                int cp = c;
+                int charCount = 1;
+                boolean tokenChar;
+                if (Character.isHighSurrogate(c)) {
+                    cp = Character.codePointAt(text, pos);
+                    charCount = Character.charCount(cp);
+                    tokenChar = charCount == 2 ? LetterOrDigitTokenizer.isLetterOrDigitOrPipe(cp) : isTokenChar(c);
+                } else {
+                    tokenChar = isTokenChar(c);
+                }
+
+                if (tokenChar) {
+                    if (inputLength == 0) {
+                        start = pos;
+                    }
+                    if (termLength + MAX_FOLDED_LENGTH > term.length) {
+                        term = ArrayUtil.grow(term, termLength + MAX_FOLDED_LENGTH);
+                    }
+                    pos += charCount;
+                    inputLength += charCount;
+                    termLength += fold(c, cp, charCount, term, termLength);
+                    if (inputLength >= MAX_TOKEN_LENGTH) {
+                        break;
+                    }
+                } else if (inputLength > 0) {
+                    break;
+                } else {
+                    pos += charCount;
+                }
+            }
+            end = start + inputLength;
+            return inputLength > 0;
+        }
+
+        /**
+         * @return offset of the first char of the current token in the text
+         */
+        public int start() {
+            return start;
+        }
+
+        /**
+         * @return offset after the last char of the current token in the text
+         */
+        public int end() {
+            return end;
+        }
+
+        /**
+         * @return folded chars of the current token, valid until the next token
+         */
+        public char[] term() {
+            return term;
+        }
+
+        public int termLength() {
+            return termLength;
+        }
+
+        public boolean termEquals(String s) {
+            return s.length() == termLength && termStartsWith(s);
+        }
+
+        public boolean termStartsWith(String prefix) {
+            if (prefix.length() > termLength) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (term[i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return folded current token, as a new string
+         */
+        public String termString() {
+            return new String(term, 0, termLength);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.apache.lucene.analysis;
+
+import org.apache.lucene.analysis.util.TokenizerFactory;
+import org.apache.lucene.util.AttributeFactory;
+
+import java.util.Map;
+
+/**
+ * Factory of {@link FoldingLetterOrDigitTokenizer}, to use in place of {@link LetterOrDigitTokenizerFactory}
+ * followed by the LowerCase and ASCIIFolding filters.
+ */
+public class FoldingLetterOrDigitTokenizerFactory extends TokenizerFactory {
+
+    /**
+     * Creates a new FoldingLetterOrDigitTokenizerFactory
+     */
+    public FoldingLetterOrDigitTokenizerFactory(Map<String, String> args) {
+        super(args);
+        if (!args.isEmpty()) {
+            throw new IllegalArgumentException("Unknown parameters: " + args);
+        }
+    }
+
+    @Override
+    public Tokenizer create(AttributeFactory factory) {
+        return new FoldingLetterOrDigitTokenizer(factory);
+    }
+}
@@ -19,6 +19,10 @@ public class LetterOrDigitTokenizer extends CharTokenizer {
      */
     @Override
     protected boolean isTokenChar(int c) {
+        return isLetterOrDigitOrPipe(c);
+    }
+
+    static boolean isLetterOrDigitOrPipe(int c) {
         return Character.isLetterOrDigit(c) || c == PIPE;
     }
 
@@ -1,6 +1,5 @@
 package org.apache.lucene.analysis;
 
-import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
 import org.apache.lucene.analysis.ngram.NGramTokenFilter;
 import org.apache.lucene.analysis.payloads.FloatEncoder;
 
@@ -17,9 +16,8 @@ public class NgramPositionAnalyzer extends Analyzer {
 
     @Override
     protected TokenStreamComponents createComponents(String fieldName) {
-        Tokenizer source = new LetterOrDigitTokenizer();
-        TokenStream filter = new LowerCaseFilter(source);
-        filter = new ASCIIFoldingFilter(filter);
+        Tokenizer source = new FoldingLetterOrDigitTokenizer();
+        TokenStream filter = source;
         filter = new PositionInsertFilter(filter);
         filter = new DeduplicateFilter(filter);
         filter = new CDelimitedPayloadTokenFilter(filter, PositionInsertFilter.DEFAULT_DELIMITER, new FloatEncoder());
@@ -1,7 +1,5 @@
 package org.apache.lucene.analysis;
 
-import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
-
 /**
  *
  * 
@@ -14,9 +12,7 @@ public class NormalAnalyzer extends Analyzer {
 
 	@Override
 	protected TokenStreamComponents createComponents(String fieldName) {
-		Tokenizer source = new LetterOrDigitTokenizer();
-		TokenStream filter = new LowerCaseFilter(source);
-		filter = new ASCIIFoldingFilter(filter);
-		return new TokenStreamComponents(source, filter);
+		Tokenizer source = new FoldingLetterOrDigitTokenizer();
+		return new TokenStreamComponents(source, source);
 	}
 }
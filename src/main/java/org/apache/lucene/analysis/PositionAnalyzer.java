@@ -1,6 +1,5 @@
 package org.apache.lucene.analysis;
 
-import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
 import org.apache.lucene.analysis.payloads.FloatEncoder;
 
 /**
@@ -15,9 +14,8 @@ public class PositionAnalyzer extends Analyzer {
 
 	@Override
 	protected TokenStreamComponents createComponents(String fieldName) {
-		Tokenizer source = new LetterOrDigitTokenizer();
-		TokenStream filter = new LowerCaseFilter(source);
-		filter = new ASCIIFoldingFilter(filter);
+		Tokenizer source = new FoldingLetterOrDigitTokenizer();
+		TokenStream filter = source;
 	 	filter = new DeduplicateFilter(filter);
 		filter = new PositionInsertFilter(filter);
 		filter = new CDelimitedPayloadTokenFilter(filter, PositionInsertFilter.DEFAULT_DELIMITER, new FloatEncoder());
@@ -26,6 +26,11 @@ public class WordsParser {
 
     public static final String CLEANER = "(.)\\1{3,}";
 
+    /**
+     * Length from which a run of the same character is reduced by {@link #cleanRepetitionText(String)}
+     */
+    private static final int MIN_REPETITION = 4;
+
     private WordsParser() {
         // Nothing to do
     }
@@ -78,9 +83,11 @@ public class WordsParser {
 
         Set<String> reusable = new LinkedHashSet<>();
 
+        // indexed access, get(j) walks the linked list
+        String[] wordArray = words.toArray(new String[0]);
         for (int i = 0; i < maxRun; i++) {
             for (int j = i; j < i + nbConcat && j < size; j++) {
-                currentList.add(words.get(j));
+                currentList.add(wordArray[j]);
                 if (currentList.size() >= sizeToKeep) {
                     result.addAll(recomposeTextWithReverse(currentList, "", reusable, withReverse));
                 }
@@ -130,8 +137,77 @@ public class WordsParser {
     }
 
 
+    /**
+     * Reduce to two the characters repeated more than three times in a row, same as
+     * {@code text.replaceAll(CLEANER, "$1$1")} in one pass and without compiling the pattern.
+     *
+     * @return {@code text} itself when there is nothing to clean
+     */
     public static String cleanRepetitionText(String text) {
-        return text.replaceAll(CLEANER, "$1$1");
+        int length = text.length();
+        if (length < MIN_REPETITION) {
+            return text;
+        }
+        for (int i = 0; i < length; ) {
+            int cp = text.codePointAt(i);
+            int end = endOfRun(text, i, cp, length);
+            if (end > i && text.codePointCount(i, end) >= MIN_REPETITION) {
+                char[] buffer = text.toCharArray();
+                return new String(buffer, 0, cleanRepetitionText(buffer, length));
+            }
+            i = end > i ? end : i + Character.charCount(cp);
+        }
+        return text;
+    }
+
+    /**
+     * Same as {@link #cleanRepetitionText(String)}, in place on the first {@code length} chars of {@code buffer}.
+     *
+     * @return the new length of the text in {@code buffer}
+     */
+    public static int cleanRepetitionText(char[] buffer, int length) {
+        int upto = 0;
+        int i = 0;
+        while (i < length) {
+            int cp = Character.codePointAt(buffer, i, length);
+            int charCount = Character.charCount(cp);
+            int count = 1;
+            int end = i + charCount;
+            if (!isLineTerminator(cp)) {
+                while (end < length && Character.codePointAt(buffer, end, length) == cp) {
+                    end += charCount;
+                    count++;
+                }
+            }
+            int keep = count >= MIN_REPETITION ? 2 : count;
+            for (int k = 0; k < keep; k++) {
+                upto += Character.toChars(cp, buffer, upto);
+            }
+            i = end;
+        }
+        return upto;
+    }
+
+    /**
+     * @return end of the run of {@code cp} starting at {@code i}, or {@code i} if {@code cp} can't be repeated
+     */
+    private static int endOfRun(String text, int i, int cp, int length) {
+        if (isLineTerminator(cp)) {
+            return i;
+        }
+        int charCount = Character.charCount(cp);
+        int end = i + charCount;
+        while (end < length && text.codePointAt(end) == cp) {
+            end += charCount;
+        }
+        return end;
+    }
+
+    /**
+     * Characters not matched by {@code .} in {@link #CLEANER}
+     */
+    private static boolean isLineTerminator(int cp) {
+        return cp == '\n' || cp == '\r' || cp == '\u0085' || cp == '\u2028' || cp == '\u2029';
     }
 
     public static LinkedList<String> decomposeText(final Analyzer searcherAnalyzer, final String fieldname, final String text) {
@@ -92,6 +92,33 @@ public class PositionSpanQuery extends SpanQuery {
         return wrappedQuery.getField();
     }
 
+    /**
+     * Upper bound of the score of a document: the best coefficient the position of its term can get,
+     * times the boost. Fuzzy term boosts are at most 1 and the span score is only bounded when it is not included.
+     *
+     * @return the bound, {@link Float#POSITIVE_INFINITY} when the span score is included
+     */
+    public float getMaxScore() {
+        return includeSpanScore ? Float.POSITIVE_INFINITY : getMaxCoefficient() * boost;
+    }
+
+    /**
+     * @return the highest payload score, i.e. position coefficient, of a document
+     */
+    private float getMaxCoefficient() {
+        // a span without payload scores 1
+        float max = Math.max(1f, defCoefficient);
+        for (float coefficient : defCoefficients) {
+            max = Math.max(max, coefficient);
+        }
+        if (coefficients != null && bestPosition >= 1 && bestPosition <= coefficients.length) {
+            for (float coefficient : coefficients[bestPosition - 1]) {
+                max = Math.max(max, coefficient);
+            }
+        }
+        return max;
+    }
+
     @Override
     public Query rewrite(IndexReader reader) throws IOException {
         Query matchRewritten = wrappedQuery.rewrite(reader);
@@ -173,7 +200,7 @@ public class PositionSpanQuery extends SpanQuery {
                 return null;
             LeafSimScorer docScorer = innerWeight.getSimScorer(context);
             PositionSpans positionSpans = new PositionSpans(spans, docScorer);
-            return new PayloadPositionSpanScorer(this, positionSpans, docScorer);
+            return new PayloadPositionSpanScorer(this, positionSpans, docScorer, getMaxCoefficient());
         }
 
         @Override
@@ -280,11 +307,24 @@ public class PositionSpanQuery extends SpanQuery {
     private class PayloadPositionSpanScorer extends SpanScorer {
 
         private final PositionSpans positionSpans;
+        private final float maxCoefficient;
 
-        private PayloadPositionSpanScorer(SpanWeight weight, PositionSpans positionSpans, LeafSimScorer docScorer) {
+        private PayloadPositionSpanScorer(SpanWeight weight, PositionSpans positionSpans, LeafSimScorer docScorer, float maxCoefficient) {
             super(weight, positionSpans, docScorer);
             this.positionSpans = positionSpans;
+            this.maxCoefficient = maxCoefficient;
+        }
 
+        /**
+         * Bound of the documents up to {@code upTo}: the best boost of the fuzzy terms which can still match there,
+         * times the best coefficient and the boost. The span score is not bounded, it is left to the similarity.
+         */
+        @Override
+        public float getMaxScore(int upTo) throws IOException {
+            if (includeSpanScore) {
+                return Float.POSITIVE_INFINITY;
+            }
+            return positionSpans.maxBoost(upTo) * maxCoefficient * boost;
         }
 
         protected float getPayloadScore() {
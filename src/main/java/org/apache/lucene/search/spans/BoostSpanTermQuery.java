@@ -61,13 +61,13 @@ public class BoostSpanTermQuery extends SpanTermQuery {
     }
 
     private boolean equalsTo(BoostSpanTermQuery other) {
-        return this.equals(other) &&
+        return super.equals(other) &&
                 Float.floatToIntBits(boost) == Float.floatToIntBits(other.boost);
     }
 
     @Override
     public int hashCode() {
-        int h = classHash();
+        int h = super.hashCode();
         h = 31 * h + Float.floatToIntBits(boost);
         return h;
     }
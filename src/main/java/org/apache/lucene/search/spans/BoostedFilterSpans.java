@@ -35,6 +35,17 @@ public abstract class BoostedFilterSpans extends FilterSpans {
 
     return 1f;
   }
+
+  /**
+   * @return an upper bound of {@link #boost(int)} for the documents up to {@code upTo} (included)
+   */
+  public final float maxBoost(int upTo) {
+    if (in instanceof BoostedSpans) {
+      return ((BoostedSpans) in).maxBoost(upTo);
+    }
+
+    return 1f;
+  }
   
   @Override
   public String toString() {
@@ -35,7 +35,6 @@ import org.apache.solr.handler.DisiBoostWrapper;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -213,18 +212,15 @@ public final class BoostedSpanOrQuery extends SpanQuery {
 
             return new BoostedSpans() {
                 Spans topPositionSpans = null;
-                Map<Integer, Float> boosts = new HashMap<>();
 
                 @Override
                 public int nextDoc() throws IOException {
                     topPositionSpans = null;
-                    DisiBoostWrapper topDocSpans = (DisiBoostWrapper) byDocQueue.top();
+                    DisiWrapper topDocSpans = byDocQueue.top();
                     int currentDoc = topDocSpans.doc;
                     do {
                         topDocSpans.doc = topDocSpans.iterator.nextDoc();
-                        addBoost(topDocSpans);
-                        boosts.put(topDocSpans.doc, topDocSpans.boost);
-                        topDocSpans = (DisiBoostWrapper) byDocQueue.updateTop();
+                        topDocSpans = byDocQueue.updateTop();
                     } while (topDocSpans.doc == currentDoc);
                     return topDocSpans.doc;
                 }
@@ -232,11 +228,10 @@ public final class BoostedSpanOrQuery extends SpanQuery {
                 @Override
                 public int advance(int target) throws IOException {
                     topPositionSpans = null;
-                    DisiBoostWrapper topDocSpans = (DisiBoostWrapper) byDocQueue.top();
+                    DisiWrapper topDocSpans = byDocQueue.top();
                     do {
                         topDocSpans.doc = topDocSpans.iterator.advance(target);
-                        addBoost(topDocSpans);
-                        topDocSpans = (DisiBoostWrapper) byDocQueue.updateTop();
+                        topDocSpans = byDocQueue.updateTop();
                     } while (topDocSpans.doc < target);
                     return topDocSpans.doc;
                 }
@@ -247,14 +242,37 @@ public final class BoostedSpanOrQuery extends SpanQuery {
                     return topDocSpans.doc;
                 }
 
+                /**
+                 * Best boost of the clauses on the current document
+                 */
+                @Override
                 public float boost(int docid) {
-                    Float boost = boosts.get(docid);
-                    return (boost == null) ? 1f : boost;
+                    if (docid != docID()) {
+                        return 1f;
+                    }
+                    float boost = 0f;
+                    for (DisiWrapper w = byDocQueue.topList(); w != null; w = w.next) {
+                        boost = Math.max(boost, boostOf(w));
+                    }
+                    return boost;
+                }
+
+                /**
+                 * Best boost of the clauses which have not gone past {@code upTo}, the only ones which can still match
+                 */
+                @Override
+                public float maxBoost(int upTo) {
+                    float boost = 0f;
+                    for (DisiWrapper w : byDocQueue) {
+                        if (w.doc <= upTo) {
+                            boost = Math.max(boost, boostOf(w));
+                        }
+                    }
+                    return boost;
                 }
 
-                private void addBoost(DisiBoostWrapper topDocSpans) {
-                    Float boost = boosts.get(topDocSpans.doc);
-                    boosts.put(topDocSpans.doc, (boost == null) ? topDocSpans.boost : Math.max(boost, topDocSpans.boost));
+                private float boostOf(DisiWrapper w) {
+                    return w instanceof DisiBoostWrapper ? ((DisiBoostWrapper) w).boost : 1f;
                 }
 
                 @Override
@@ -26,4 +26,9 @@ public abstract class BoostedSpans extends Spans  {
 
   protected abstract float boost(int docid);
 
+  /**
+   * @return an upper bound of the boost of the documents up to {@code upTo} (included), from the current document
+   */
+  protected abstract float maxBoost(int upTo);
+
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import org.apache.solr.core.PluginBag;
+import org.apache.solr.search.CacheRegenerator;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.spelling.suggest.SuggesterResult;
+
+import java.io.IOException;
+
+/**
+ * Autowarm the autocomplete cache by replaying its hottest keys on the new searcher.
+ * <p>
+ * Configured on the cache used by the {@link AutocompleteComponent}, the number of keys replayed
+ * is the {@code autowarmCount} of the cache:
+ * <pre>
+ * &lt;cache name="autocompleteCache" class="solr.search.CaffeineCache" size="4096"
+ *        autowarmCount="256" regenerator="solr.AutocompleteCacheRegenerator"/&gt;
+ * </pre>
+ */
+public class AutocompleteCacheRegenerator implements CacheRegenerator {
+
+    @Override
+    @SuppressWarnings({"rawtypes"})
+    public boolean regenerateItem(SolrIndexSearcher newSearcher, SolrCache newCache, SolrCache oldCache,
+                                  Object oldKey, Object oldVal) throws IOException {
+        if (oldKey instanceof String && oldVal instanceof SuggesterResult) {
+            PluginBag<SearchComponent> components = newSearcher.getCore().getSearchComponents();
+            for (String name : components.keySet()) {
+                SearchComponent component = components.get(name);
+                if (component instanceof AutocompleteComponent
+                        && ((AutocompleteComponent) component).regenerate(newSearcher, newCache, (String) oldKey, (SuggesterResult) oldVal)) {
+                    break;
+                }
+            }
+        }
+        // go on with the next keys
+        return true;
+    }
+}
@@ -18,7 +18,9 @@ package org.apache.solr.handler.component;
 
 
 import org.apache.lucene.analysis.WordsParser;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CharsRef;
 import org.apache.solr.common.SolrException;
@@ -26,8 +28,14 @@ import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.common.util.SimpleOrderedMap;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.core.CloseHook;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.core.SolrEventListener;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.metrics.SolrMetricsContext;
+import org.apache.solr.search.CacheConfig;
 import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.apache.solr.spelling.suggest.AutocompleteSolrSuggester;
@@ -35,6 +43,9 @@ import org.apache.solr.spelling.suggest.CdiscountSuggesterOptionsUtils;
 import org.apache.solr.spelling.suggest.LocalSuggesterOptions;
 import org.apache.solr.spelling.suggest.SolrSuggester;
 import org.apache.solr.spelling.suggest.SuggesterResult;
+import org.apache.solr.suggest.analyzing.AutocompleteSuggester;
+import org.apache.solr.suggest.analyzing.SegmentContexts;
+import org.apache.solr.util.RefCounted;
 import org.jose4j.json.internal.json_simple.parser.JSONParser;
 import org.jose4j.json.internal.json_simple.parser.ParseException;
 import org.slf4j.Logger;
@@ -42,14 +53,22 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * SuggestComponent: interacts with multiple {@link AutocompleteSolrSuggester} to serve up suggestions
@@ -76,9 +95,23 @@ public class AutocompleteComponent extends SuggestComponent {
     public static final String AUTOCOMPLETE_CACHE = "cacheName";
     public static final String AUTOCOMPLETE_MAX_QUERY_LENGTH_CACHE = "maxQueryLengthCache";
     public static final String CONTEXT_JSONFY = "contextJsonify";
+    /**
+     * With {@link #CONTEXT_JSONFY}, write the contexts verbatim in json responses instead of parsing them
+     */
+    public static final String CONTEXT_RAW_JSON = "contextRawJson";
+    public static final String CONFIG_FAN_OUT_THREADS = "fanOutThreads";
+    public static final String CONFIG_WARMUP_QUERIES = "warmupQueries";
+    public static final String CONFIG_WARMUP_COUNT = "warmupCount";
+    public static final String SUGGEST_TIME_ALLOWED = CONFIG_SUGGEST + "timeAllowed";
+    public static final String SUGGEST_MAX_DOCS_SCORED = CONFIG_SUGGEST + "maxDocsScored";
+    /**
+     * Search the previous index generation again, for suggesters built aside
+     */
+    public static final String SUGGEST_ROLLBACK = CONFIG_SUGGEST + "rollback";
 
 
     private static final Integer DEFAULT_MIN_SIZE_QUERY = 1;
+    private static final int DEFAULT_WARMUP_COUNT = 10;
     private static final Integer MAX_CACHE_QUERY_LENGTH = 2;
 
     private static class SuggesterResultLabels {
@@ -91,15 +124,40 @@ public class AutocompleteComponent extends SuggestComponent {
         static final String SUGGESTION_CAT = "categories";
     }
 
-    private int minSizeQuery = 1;
     private int minSizeQueryConfig = 1;
-    private boolean firstContextOnly = true;
     private boolean firstContextOnlyConfig = true;
 
     private int maxQueryLengthCache;
     private String cacheName;
-    private SolrCache<String, SuggesterResult> cache;
     private Boolean jsonifyContext;
+    private boolean rawJsonContextConfig;
+
+    private ExecutorService fanOutExecutor;
+
+    private List<String> warmupQueries = Collections.emptyList();
+    private int warmupCount = DEFAULT_WARMUP_COUNT;
+    private boolean regeneratedCache;
+    private volatile long warmupTime;
+
+    /**
+     * State of one request, never shared with other requests
+     */
+    private static final class RequestContext {
+        private final SolrCache<String, SuggesterResult> cache;
+        private final int queryLength;
+        private final boolean firstContextOnly;
+        private final boolean rawJsonContext;
+        private final LocalSuggesterOptions options;
+
+        private RequestContext(SolrCache<String, SuggesterResult> cache, int queryLength, boolean firstContextOnly,
+                               boolean rawJsonContext, LocalSuggesterOptions options) {
+            this.cache = cache;
+            this.queryLength = queryLength;
+            this.firstContextOnly = firstContextOnly;
+            this.rawJsonContext = rawJsonContext;
+            this.options = options;
+        }
+    }
 
 
     @Override
@@ -150,12 +208,94 @@ public class AutocompleteComponent extends SuggestComponent {
                     maxQueryLengthCache = (Integer) suggesterParams.get(AUTOCOMPLETE_MAX_QUERY_LENGTH_CACHE, MAX_CACHE_QUERY_LENGTH);
 
                     jsonifyContext = suggesterParams.getBooleanArg(CONTEXT_JSONFY);
+                    rawJsonContextConfig = Boolean.TRUE.equals(suggesterParams.getBooleanArg(CONTEXT_RAW_JSON));
+                }
+            }
+
+            if (suggesters.size() > 1) {
+                int fanOutThreads = initParams.get(CONFIG_FAN_OUT_THREADS) != null
+                        ? Integer.parseInt(initParams.get(CONFIG_FAN_OUT_THREADS).toString())
+                        : Math.max(2, Runtime.getRuntime().availableProcessors());
+                fanOutExecutor = newFanOutExecutor(fanOutThreads);
+                core.addCloseHook(new CloseHook() {
+                    @Override
+                    public void preClose(SolrCore core) {
+                        ExecutorUtil.shutdownAndAwaitTermination(fanOutExecutor);
+                    }
+
+                    @Override
+                    public void postClose(SolrCore core) {
+                        // Nothing to do
+                    }
+                });
+            }
+
+            Object warmupFile = initParams.get(CONFIG_WARMUP_QUERIES);
+            if (warmupFile != null) {
+                try {
+                    warmupQueries = core.getResourceLoader().getLines(warmupFile.toString());
+                } catch (IOException e) {
+                    throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Unable to read warmup queries " + warmupFile, e);
                 }
             }
+            if (initParams.get(CONFIG_WARMUP_COUNT) != null) {
+                warmupCount = Integer.parseInt(initParams.get(CONFIG_WARMUP_COUNT).toString());
+            }
+            CacheConfig cacheConfig = cacheName != null ? core.getSolrConfig().userCacheConfigs.get(cacheName) : null;
+            regeneratedCache = cacheConfig != null && cacheConfig.getRegenerator() instanceof AutocompleteCacheRegenerator;
 
-            AutocompleteLocalSuggesterListener listener = new AutocompleteLocalSuggesterListener();
+            AutocompleteLocalSuggesterListener listener = new AutocompleteLocalSuggesterListener(core);
             core.registerFirstSearcherListener(listener);
             core.registerNewSearcherListener(listener);
+            core.getUpdateHandler().registerCommitCallback(listener);
+        }
+    }
+
+    @Override
+    public void initializeMetrics(SolrMetricsContext parentContext, String scope) {
+        super.initializeMetrics(parentContext, scope);
+        metricsContext.gauge(this, () -> warmupTime, true, "warmupTime", getCategory().toString(), scope);
+    }
+
+    /**
+     * Virtual threads when the JDK provides them, else a bounded pool shared by the requests, without queue:
+     * once all its threads are busy, the suggesters run on the request thread instead of waiting for one
+     */
+    private static ExecutorService newFanOutExecutor(int threads) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return new ExecutorUtil.MDCAwareThreadPoolExecutor(0, threads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                    new SolrNamedThreadFactory("autocompleteFanOut"), (task, executor) -> task.run());
+        }
+    }
+
+    /**
+     * Builds or reloads the suggesters like {@link SuggestComponent}, and rolls back the suggesters built aside.
+     * A rollback request is a command: it returns no suggestions, and a replayed one does nothing as rollbacks
+     * only go backward. Cached suggestions are dropped when the index searched by the suggesters changed.
+     */
+    @Override
+    public void prepare(ResponseBuilder rb) throws IOException {
+        super.prepare(rb);
+        SolrParams params = rb.req.getParams();
+        if (!params.getBool(COMPONENT_NAME, false)) {
+            return;
+        }
+
+        boolean changed = params.getBool(SUGGEST_BUILD, false) || params.getBool(SUGGEST_BUILD_ALL, false);
+        if (params.getBool(SUGGEST_ROLLBACK, false)) {
+            for (AutocompleteSolrSuggester suggester : getLocalSuggesters(params)) {
+                changed |= suggester.rollback();
+            }
+            rb.rsp.add("command", "rollback");
+        }
+        if (changed && cacheName != null) {
+            SolrCache<?, ?> cache = rb.req.getSearcher().getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
         }
     }
 
@@ -170,9 +310,10 @@ public class AutocompleteComponent extends SuggestComponent {
         if (!params.getBool(COMPONENT_NAME, false) || suggesters.isEmpty()) {
             return;
         }
-
-        // Get cache from config
-        cache = cacheName != null ? rb.req.getSearcher().getCache(cacheName) : null;
+        if (params.getBool(SUGGEST_ROLLBACK, false)) {
+            // done by prepare, never a side effect of a lookup
+            return;
+        }
 
         boolean buildAll = params.getBool(SUGGEST_BUILD_ALL, false);
         boolean reloadAll = params.getBool(SUGGEST_RELOAD_ALL, false);
@@ -202,6 +343,7 @@ public class AutocompleteComponent extends SuggestComponent {
         if (query != null) {
 
             int queryLength = query.length();
+            int minSizeQuery = params.getInt(CONFIG_SUGGEST + CONFIG_PARAM_MIN_SIZE, minSizeQueryConfig);
             // check Query size
             if (queryLength < minSizeQuery) {
                 rb.rsp.add(SuggesterResultLabels.SUGGEST, Collections.emptyMap());
@@ -221,40 +363,158 @@ public class AutocompleteComponent extends SuggestComponent {
                 }
             }
 
-            minSizeQuery = params.getInt(CONFIG_SUGGEST + CONFIG_PARAM_MIN_SIZE, minSizeQueryConfig);
-            firstContextOnly = params.getBool(CONFIG_SUGGEST + CONFIG_FIRST_CONTEXT_ONLY, firstContextOnlyConfig);
+            boolean firstContextOnly = params.getBool(CONFIG_SUGGEST + CONFIG_FIRST_CONTEXT_ONLY, firstContextOnlyConfig);
+            boolean rawJsonContext = params.getBool(CONFIG_SUGGEST + CONTEXT_RAW_JSON, rawJsonContextConfig);
 
             LocalSuggesterOptions options = new LocalSuggesterOptions(rb.req.getSearcher(), new CharsRef(query), count, contextFilter, allTermsRequired, highlight, firstContextOnly);
+            options.setTimeAllowed(params.getLong(SUGGEST_TIME_ALLOWED, -1L));
+            options.setMaxDocsScored(params.getLong(SUGGEST_MAX_DOCS_SCORED, -1L));
+
+            // Get cache from config
+            SolrCache<String, SuggesterResult> cache = cacheName != null ? rb.req.getSearcher().getCache(cacheName) : null;
 
-            processOverSuggesters(rb, queryLength, options, querySuggesters);
+            processOverSuggesters(rb, new RequestContext(cache, queryLength, firstContextOnly, rawJsonContext, options), querySuggesters);
         }
     }
 
-    private void processOverSuggesters(ResponseBuilder rb, int queryLength, LocalSuggesterOptions options, Set<AutocompleteSolrSuggester> querySuggesters) throws IOException {
-        Map<String, SimpleOrderedMap<NamedList<Object>>> namedListResults = new HashMap<>();
-        for (AutocompleteSolrSuggester suggester : querySuggesters) {
+    private void processOverSuggesters(ResponseBuilder rb, RequestContext context, Set<AutocompleteSolrSuggester> querySuggesters) throws IOException {
+        List<SuggesterResult> suggesterResults = new ArrayList<>(querySuggesters.size());
+        if (querySuggesters.size() == 1 || fanOutExecutor == null) {
+            for (AutocompleteSolrSuggester suggester : querySuggesters) {
+                suggesterResults.add(getSuggestions(suggester, context));
+            }
+        } else {
+            // the first suggester runs on the request thread while the others run concurrently,
+            // results are merged in the requested order
+            List<Future<SuggesterResult>> futures = new ArrayList<>(querySuggesters.size() - 1);
+            AutocompleteSolrSuggester first = null;
+            for (AutocompleteSolrSuggester suggester : querySuggesters) {
+                if (first == null) {
+                    first = suggester;
+                } else {
+                    futures.add(fanOutExecutor.submit(() -> getSuggestions(suggester, context)));
+                }
+            }
+            suggesterResults.add(getSuggestions(first, context));
+            for (Future<SuggesterResult> future : futures) {
+                suggesterResults.add(getFanOutResult(future));
+            }
+        }
 
-            // Cache
-            SuggesterResult suggesterResult;
-            if (cache != null && queryLength <= maxQueryLengthCache) {
-                String key = CdiscountSuggesterOptionsUtils.keyCache(suggester.getName(), options);
+        Map<String, SimpleOrderedMap<NamedList<Object>>> namedListResults = new LinkedHashMap<>();
+        boolean partial = false;
+        for (SuggesterResult suggesterResult : suggesterResults) {
+            toNamedListLocal(suggesterResult, namedListResults, context);
+            partial |= isPartial(suggesterResult);
+        }
+        rb.rsp.add(SuggesterResultLabels.SUGGEST, namedListResults);
+        if (partial) {
+            // the time or work budget of the lookup was exceeded, the hits are the best ones found so far
+            rb.rsp.getResponseHeader().asShallowMap()
+                    .put(SolrQueryResponse.RESPONSE_HEADER_PARTIAL_RESULTS_KEY, Boolean.TRUE);
+        }
+    }
 
-                suggesterResult = cache.get(key);
-                if (suggesterResult == null) {
-                    suggesterResult = suggester.getSuggestions(options);
-                    cache.put(key, suggesterResult);
+    private static boolean isPartial(SuggesterResult suggesterResult) {
+        for (String suggesterName : suggesterResult.getSuggesterNames()) {
+            for (String token : suggesterResult.getTokens(suggesterName)) {
+                List<LookupResult> lookupResults = suggesterResult.getLookupResult(suggesterName, token);
+                if (lookupResults instanceof AutocompleteSuggester.LookupResults
+                        && ((AutocompleteSuggester.LookupResults) lookupResults).isPartial()) {
+                    return true;
                 }
-            } else {
-                suggesterResult = suggester.getSuggestions(options);
+            }
+        }
+        return false;
+    }
 
+    private SuggesterResult getSuggestions(AutocompleteSolrSuggester suggester, RequestContext context) throws IOException {
+        // Cache
+        SuggesterResult suggesterResult;
+        if (context.cache != null && context.queryLength <= maxQueryLengthCache) {
+            String key = CdiscountSuggesterOptionsUtils.keyCache(suggester.getName(), context.options);
+
+            suggesterResult = context.cache.get(key);
+            if (suggesterResult == null) {
+                suggesterResult = suggester.getSuggestions(context.options);
+                if (!isPartial(suggesterResult)) {
+                    context.cache.put(key, suggesterResult);
+                }
             }
-            toNamedListLocal(suggesterResult, namedListResults);
+        } else {
+            suggesterResult = suggester.getSuggestions(context.options);
+        }
+        return suggesterResult;
+    }
+
+    /**
+     * Replay the warmup queries on a new searcher through the same path as the requests,
+     * filling the cache of the new searcher on the way.
+     */
+    private void warmup(SolrIndexSearcher newSearcher) {
+        SolrCache<String, SuggesterResult> cache = cacheName != null ? newSearcher.getCache(cacheName) : null;
+        for (String query : warmupQueries) {
+            if (query.length() < minSizeQueryConfig) {
+                continue;
+            }
+            LocalSuggesterOptions options = new LocalSuggesterOptions(newSearcher, new CharsRef(WordsParser.cleanRepetitionText(query)),
+                    warmupCount, null, true, true, firstContextOnlyConfig);
+            RequestContext context = new RequestContext(cache, query.length(), firstContextOnlyConfig, rawJsonContextConfig, options);
+            for (SolrSuggester suggester : suggesters.values()) {
+                try {
+                    getSuggestions((AutocompleteSolrSuggester) suggester, context);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Autocomplete warmup query '{}' failed for {}", query, suggester.getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute again, on the new searcher, an entry of the outgoing cache.
+     *
+     * @return false if the cache or the suggesters of the entry are not managed by this component
+     * @see AutocompleteCacheRegenerator
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    boolean regenerate(SolrIndexSearcher newSearcher, SolrCache newCache, String key, SuggesterResult oldResult) throws IOException {
+        if (!newCache.name().equals(cacheName)) {
+            return false;
+        }
+        boolean regenerated = false;
+        for (String suggesterName : oldResult.getSuggesterNames()) {
+            SolrSuggester suggester = suggesters.get(suggesterName);
+            LocalSuggesterOptions options = CdiscountSuggesterOptionsUtils.parseKeyCache(suggesterName, key, newSearcher, firstContextOnlyConfig);
+            if (suggester instanceof AutocompleteSolrSuggester && options != null) {
+                SuggesterResult result = suggester.getSuggestions(options);
+                if (!isPartial(result)) {
+                    newCache.put(key, result);
+                }
+                regenerated = true;
+            }
+        }
+        return regenerated;
+    }
+
+    private SuggesterResult getFanOutResult(Future<SuggesterResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Interrupted while waiting for suggesters", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, cause);
         }
-        rb.rsp.add(SuggesterResultLabels.SUGGEST, namedListResults);
     }
 
     private Set<AutocompleteSolrSuggester> getLocalSuggesters(SolrParams params) {
-        Set<AutocompleteSolrSuggester> autocompleteSolrSuggesters = new HashSet<>();
+        Set<AutocompleteSolrSuggester> autocompleteSolrSuggesters = new LinkedHashSet<>();
         for (String suggesterName : getLocalSuggesterNames(params)) {
             SolrSuggester ss = suggesters.get(suggesterName);
             AutocompleteSolrSuggester curSuggester = (AutocompleteSolrSuggester) ss;
@@ -273,7 +533,7 @@ public class AutocompleteComponent extends SuggestComponent {
     }
 
     private Set<String> getLocalSuggesterNames(SolrParams params) {
-        Set<String> suggesterNames = new HashSet<>();
+        Set<String> suggesterNames = new LinkedHashSet<>();
         String[] suggesterNamesFromParams = params.getParams(SUGGEST_DICT);
         if (suggesterNamesFromParams == null) {
             suggesterNames.add(AutocompleteSolrSuggester.DEFAULT_DICT_NAME);
@@ -286,7 +546,8 @@ public class AutocompleteComponent extends SuggestComponent {
     /**
      * Convert {@link SuggesterResult} to NamedList for constructing responses
      */
-    private void toNamedListLocal(SuggesterResult suggesterResult, Map<String, SimpleOrderedMap<NamedList<Object>>> resultObj) {
+    private void toNamedListLocal(SuggesterResult suggesterResult, Map<String, SimpleOrderedMap<NamedList<Object>>> resultObj,
+                                  RequestContext context) {
 
         for (String suggesterName : suggesterResult.getSuggesterNames()) {
             SimpleOrderedMap<NamedList<Object>> results = new SimpleOrderedMap<>();
@@ -298,7 +559,7 @@ public class AutocompleteComponent extends SuggestComponent {
 
 
                 List<SimpleOrderedMap<Object>> suggestEntriesNamedList = new ArrayList<>();
-                overLookupResults(lookupResults, suggestEntriesNamedList);
+                overLookupResults(lookupResults, suggestEntriesNamedList, context);
                 suggestionBody.add(SuggesterResultLabels.HITS, suggestEntriesNamedList);
                 results.add("response", suggestionBody);
             }
@@ -306,12 +567,14 @@ public class AutocompleteComponent extends SuggestComponent {
         }
     }
 
-    private void overLookupResults(List<LookupResult> lookupResults, List<SimpleOrderedMap<Object>> suggestEntriesNamedList) {
+    private void overLookupResults(List<LookupResult> lookupResults, List<SimpleOrderedMap<Object>> suggestEntriesNamedList,
+                                   RequestContext context) {
         SimpleOrderedMap<Object> suggestEntryNamedList;
 
-        JSONParser parser = (jsonifyContext != null && jsonifyContext) ? new JSONParser() : null;
+        boolean parse = jsonifyContext != null && jsonifyContext;
+        JSONParser parser = null;
 
-        boolean first = firstContextOnly;
+        boolean first = context.firstContextOnly;
         for (LookupResult lookupResult : lookupResults) {
             suggestEntryNamedList = new SimpleOrderedMap<>();
             suggestEntriesNamedList.add(suggestEntryNamedList);
@@ -324,32 +587,61 @@ public class AutocompleteComponent extends SuggestComponent {
             }
             suggestEntryNamedList.add(SuggesterResultLabels.SUGGESTION_SCORE, lookupResult.value);
 
-            first = manageContexts(lookupResult, suggestEntryNamedList, first, parser);
+            Set<BytesRef> contexts = selectContexts(lookupResult, first, context);
+            if (contexts != null) {
+                first = false;
+                BytesRef categories = contexts.iterator().next();
+                // the contexts of the suggester keep the values computed from them, shared by the lookups
+                SegmentContexts.Context shared = contexts instanceof SegmentContexts.Context ? (SegmentContexts.Context) contexts : null;
+                if (!parse) {
+                    suggestEntryNamedList.add(SuggesterResultLabels.SUGGESTION_CAT, categories.utf8ToString());
+                    continue;
+                }
+                if (context.rawJsonContext) {
+                    // validated once per shared context, then copied as is by the json writer
+                    Object cached = shared == null ? null : shared.getRawJson();
+                    RawJsonContext json = cached instanceof RawJsonContext ? (RawJsonContext) cached : RawJsonContext.of(categories);
+                    if (json == null) {
+                        log.error("Autocomplete Context is not valid json : {}", categories.utf8ToString());
+                        continue;
+                    }
+                    if (shared != null && json != cached) {
+                        shared.setRawJson(json);
+                    }
+                    suggestEntryNamedList.add(SuggesterResultLabels.SUGGESTION_CAT, json);
+                    continue;
+                }
+                // contexts of hot suggestions are shared by the lookups, and parsed once
+                Object parsed = shared == null ? null : shared.getParsed();
+                if (parsed == null) {
+                    if (parser == null) {
+                        parser = new JSONParser();
+                    }
+                    try {
+                        parsed = parser.parse(categories.utf8ToString());
+                        if (shared != null) {
+                            shared.setParsed(parsed);
+                        }
+                    } catch (ParseException e) {
+                        log.error("Autocomplete Context parsing : ", e);
+                    }
+                }
+                if (parsed != null) {
+                    suggestEntryNamedList.add(SuggesterResultLabels.SUGGESTION_CAT, parsed);
+                }
+            }
         }
     }
 
-    private boolean manageContexts(LookupResult lookupResult, SimpleOrderedMap<Object> suggestEntryNamedList,
-                                   boolean first, JSONParser parser) {
-        // Categories
+    /**
+     * @return the contexts of a result, whose first one is returned, null if none
+     */
+    private static Set<BytesRef> selectContexts(LookupResult lookupResult, boolean first, RequestContext context) {
         Set<BytesRef> categoriesByt = lookupResult.contexts;
-        String categoriesText = null;
-        if (firstContextOnly) {
-            if (first && categoriesByt != null && !categoriesByt.isEmpty()) {
-                categoriesText = categoriesByt.iterator().next().utf8ToString();
-                first = false;
-            }
-        } else if (categoriesByt != null && !categoriesByt.isEmpty()) {
-            categoriesText = categoriesByt.iterator().next().utf8ToString();
-        }
-        if (categoriesText != null) {
-            try {
-                suggestEntryNamedList.add(SuggesterResultLabels.SUGGESTION_CAT, parser != null ? parser.parse(categoriesText) : categoriesText);
-            } catch (ParseException e) {
-                log.error("Autocomplete Context parsing : ", e);
-            }
+        if (categoriesByt == null || categoriesByt.isEmpty() || (context.firstContextOnly && !first)) {
+            return null;
         }
-
-        return first;
+        return categoriesByt;
     }
 
     /**
@@ -357,8 +649,10 @@ public class AutocompleteComponent extends SuggestComponent {
      */
     private class AutocompleteLocalSuggesterListener implements SolrEventListener {
 
-        public AutocompleteLocalSuggesterListener() {
-            // Nothing to do
+        private final SolrCore core;
+
+        public AutocompleteLocalSuggesterListener(SolrCore core) {
+            this.core = core;
         }
 
         @Override
@@ -369,14 +663,56 @@ public class AutocompleteComponent extends SuggestComponent {
         @Override
         public void newSearcher(SolrIndexSearcher newSearcher,
                                 SolrIndexSearcher currentSearcher) {
-            if (cache != null) {
-                cache.clear();
+            long start = System.nanoTime();
+            // entries copied from the outgoing cache are stale, unless they were computed again on the new searcher
+            if (cacheName != null && !regeneratedCache) {
+                SolrCache<?, ?> cache = newSearcher.getCache(cacheName);
+                if (cache != null) {
+                    cache.clear();
+                }
+            }
+
+            // compute the suggesters view and statistics before the searcher serves requests
+            for (SolrSuggester suggester : suggesters.values()) {
+                if (suggester instanceof AutocompleteSolrSuggester) {
+                    try {
+                        ((AutocompleteSolrSuggester) suggester).newSearcher(newSearcher);
+                    } catch (IOException e) {
+                        log.error("Autocomplete new searcher preparation failed for {}", suggester.getName(), e);
+                    }
+                }
+            }
+
+            if (!warmupQueries.isEmpty()) {
+                warmup(newSearcher);
             }
+            warmupTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.info("Autocomplete warmup of {} done in {} ms with {} queries", newSearcher, warmupTime, warmupQueries.size());
         }
 
         @Override
         public void postCommit() {
-            // Nothing to do
+            // suggestion stores of the committed segments, written before the new searcher is opened on them
+            RefCounted<IndexWriter> writer = null;
+            try {
+                writer = core.getSolrCoreState().getIndexWriter(core);
+                Directory indexDir = writer.get().getDirectory();
+                for (SolrSuggester suggester : suggesters.values()) {
+                    if (suggester instanceof AutocompleteSolrSuggester) {
+                        try {
+                            ((AutocompleteSolrSuggester) suggester).postCommit(indexDir);
+                        } catch (IOException e) {
+                            log.error("Autocomplete suggestion stores of {} not written", suggester.getName(), e);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Autocomplete suggestion stores not written", e);
+            } finally {
+                if (writer != null) {
+                    writer.decref();
+                }
+            }
         }
 
         @Override
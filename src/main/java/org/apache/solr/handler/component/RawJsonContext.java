@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.handler.component;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.TextWriter;
+import org.apache.solr.common.util.WriteableValue;
+import org.apache.solr.response.JSONWriter;
+import org.jose4j.json.internal.json_simple.parser.JSONParser;
+import org.jose4j.json.internal.json_simple.parser.ParseException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Json context of a suggestion, written verbatim by the json response writer instead of being parsed into maps
+ * then serialized again: the {@link JSONWriter} hands the values it does not know to {@link #write(String, TextWriter)},
+ * which copies the json after the key written by the enclosing map.
+ * <p>
+ * Contexts are validated once when they are created, so that responses stay valid json. The other writers (xml,
+ * javabin, python...) still receive the parsed json, as with {@link AutocompleteComponent#CONTEXT_JSONFY}.
+ * Instances are immutable and shared by the responses, see {@link org.apache.solr.suggest.analyzing.SegmentContexts}.
+ */
+final class RawJsonContext extends WriteableValue {
+
+    /**
+     * Nesting allowed in a context, deeper ones are rejected instead of overflowing the stack of the validation
+     */
+    private static final int MAX_DEPTH = 256;
+
+    private final char[] json;
+
+    private RawJsonContext(char[] json) {
+        this.json = json;
+    }
+
+    /**
+     * @return the context, null if it is not valid json
+     */
+    static RawJsonContext of(BytesRef context) {
+        char[] chars = new char[context.length];
+        int length = UnicodeUtil.UTF8toUTF16(context.bytes, context.offset, context.length, chars);
+        char[] json = length == chars.length ? chars : Arrays.copyOf(chars, length);
+        return new Validator(json).validate() ? new RawJsonContext(json) : null;
+    }
+
+    @Override
+    public void write(String name, TextWriter writer) throws IOException {
+        // subclasses of the json writer (python, ruby, php...) do not write json values
+        if (writer.getClass() == JSONWriter.class) {
+            writer.getWriter().write(json);
+        } else {
+            writer.writeVal(name, parse());
+        }
+    }
+
+    @Override
+    public Object resolve(Object o, JavaBinCodec codec) throws IOException {
+        return parse();
+    }
+
+    private Object parse() throws IOException {
+        try {
+            return new JSONParser().parse(toString());
+        } catch (ParseException e) {
+            throw new IOException("Autocomplete Context parsing : " + this, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(json);
+    }
+
+    /**
+     * Strict json syntax check, without building anything
+     */
+    private static final class Validator {
+        private final char[] json;
+        private int pos;
+
+        private Validator(char[] json) {
+            this.json = json;
+        }
+
+        private boolean validate() {
+            skipWhitespace();
+            if (!value(0)) {
+                return false;
+            }
+            skipWhitespace();
+            return pos == json.length;
+        }
+
+        private boolean value(int depth) {
+            if (pos >= json.length || depth > MAX_DEPTH) {
+                return false;
+            }
+            switch (json[pos]) {
+                case '{':
+                    return object(depth + 1);
+                case '[':
+                    return array(depth + 1);
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true");
+                case 'f':
+                    return literal("false");
+                case 'n':
+                    return literal("null");
+                default:
+                    return number();
+            }
+        }
+
+        private boolean object(int depth) {
+            pos++;
+            skipWhitespace();
+            if (next('}')) {
+                return true;
+            }
+            while (true) {
+                if (!is('"') || !string()) {
+                    return false;
+                }
+                skipWhitespace();
+                if (!next(':')) {
+                    return false;
+                }
+                skipWhitespace();
+                if (!value(depth)) {
+                    return false;
+                }
+                skipWhitespace();
+                if (next('}')) {
+                    return true;
+                }
+                if (!next(',')) {
+                    return false;
+                }
+                skipWhitespace();
+            }
+        }
+
+        private boolean array(int depth) {
+            pos++;
+            skipWhitespace();
+            if (next(']')) {
+                return true;
+            }
+            while (true) {
+                if (!value(depth)) {
+                    return false;
+                }
+                skipWhitespace();
+                if (next(']')) {
+                    return true;
+                }
+                if (!next(',')) {
+                    return false;
+                }
+                skipWhitespace();
+            }
+        }
+
+        private boolean string() {
+            pos++;
+            while (pos < json.length) {
+                char c = json[pos++];
+                if (c == '"') {
+                    return true;
+                }
+                if (c < 0x20) {
+                    return false;
+                }
+                if (c == '\\') {
+                    if (pos >= json.length) {
+                        return false;
+                    }
+                    char escaped = json[pos++];
+                    if (escaped == 'u') {
+                        for (int i = 0; i < 4; i++) {
+                            if (pos >= json.length || !isHexDigit(json[pos++])) {
+                                return false;
+                            }
+                        }
+                    } else if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                        return false;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean number() {
+            next('-');
+            if (!next('0') && !digits()) {
+                return false;
+            }
+            if (next('.') && !digits()) {
+                return false;
+            }
+            if (next('e') || next('E')) {
+                if (!next('+')) {
+                    next('-');
+                }
+                return digits();
+            }
+            return true;
+        }
+
+        private boolean digits() {
+            int start = pos;
+            while (pos < json.length && json[pos] >= '0' && json[pos] <= '9') {
+                pos++;
+            }
+            return pos > start;
+        }
+
+        private boolean literal(String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (pos >= json.length || json[pos++] != literal.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isHexDigit(char c) {
+            return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+        }
+
+        private boolean is(char c) {
+            return pos < json.length && json[pos] == c;
+        }
+
+        /**
+         * Skip {@code c} if it is the next char
+         */
+        private boolean next(char c) {
+            if (is(c)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length && (json[pos] == ' ' || json[pos] == '\t' || json[pos] == '\n' || json[pos] == '\r')) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.schema;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+import org.apache.lucene.analysis.util.TokenizerFactory;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.CloseableThreadLocal;
+import org.apache.solr.analysis.TokenizerChain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link TextField} able to index a {@link SharedTokens} value without tokenizing its text again.
+ * <p>
+ * When the index analyzer is a tokenizer followed by filters (no char filter), the tokens of the value
+ * are replayed through the filters of the analyzer, reused per thread like the components of an analyzer.
+ * The value must have been produced by a tokenizer of the same class and arguments, see
+ * {@link #getTokenizerKey()}: any other value, shared tokens included, is analyzed as by a TextField.
+ * Query analysis is not affected.
+ * <p>
+ * The filter chains reused per thread are released by {@link #close()}, see
+ * {@link org.apache.solr.update.processor.SharedAnalysisUpdateProcessorFactory}.
+ */
+public class SharedAnalysisTextField extends TextField implements Closeable {
+
+    private static final Sharing NOT_SHARED = new Sharing(null, null, null);
+
+    private volatile Sharing sharing;
+
+    /**
+     * @return identity of the tokenizer of the index analyzer, null if the analyzer can't replay shared tokens
+     */
+    public String getTokenizerKey() {
+        return getSharing().key;
+    }
+
+    /**
+     * Run the tokenizer of the index analyzer once on a text.
+     *
+     * @throws IllegalStateException if the index analyzer can't replay shared tokens
+     */
+    public SharedTokens tokenize(String text) throws IOException {
+        Sharing sharing = getSharing();
+        if (sharing == NOT_SHARED) {
+            throw new IllegalStateException("Field type " + typeName + " doesn't support shared tokens, "
+                    + "its index analyzer must be a tokenizer followed by filters");
+        }
+
+        int count = 0;
+        int length = 0;
+        char[] termChars = new char[text.length()];
+        int[] termEnds = new int[8];
+        int[] startOffsets = new int[8];
+        int[] endOffsets = new int[8];
+        int[] positionIncrements = new int[8];
+        try (TokenStream ts = sharing.tokenizer.tokenStream(typeName, text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
+            PositionIncrementAttribute posIncAtt = ts.addAttribute(PositionIncrementAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                termChars = ArrayUtil.grow(termChars, length + termAtt.length());
+                System.arraycopy(termAtt.buffer(), 0, termChars, length, termAtt.length());
+                length += termAtt.length();
+                if (count == termEnds.length) {
+                    termEnds = ArrayUtil.grow(termEnds);
+                    startOffsets = ArrayUtil.growExact(startOffsets, termEnds.length);
+                    endOffsets = ArrayUtil.growExact(endOffsets, termEnds.length);
+                    positionIncrements = ArrayUtil.growExact(positionIncrements, termEnds.length);
+                }
+                termEnds[count] = length;
+                startOffsets[count] = offsetAtt.startOffset();
+                endOffsets[count] = offsetAtt.endOffset();
+                positionIncrements[count] = posIncAtt.getPositionIncrement();
+                count++;
+            }
+            ts.end();
+            return new SharedTokens(text, sharing.key, termChars, termEnds, startOffsets, endOffsets,
+                    positionIncrements, count, offsetAtt.endOffset(), posIncAtt.getPositionIncrement());
+        }
+    }
+
+    /**
+     * Value of a field for a text: shared tokens if the type of the field is a SharedAnalysisTextField,
+     * the text otherwise.
+     *
+     * @param shared tokens of the text by tokenizer key, filled on the way
+     */
+    public static Object sharedValue(IndexSchema schema, String fieldName, String text, Map<String, SharedTokens> shared)
+            throws IOException {
+        SchemaField field = schema.getFieldOrNull(fieldName);
+        if (field == null || !(field.getType() instanceof SharedAnalysisTextField)) {
+            return text;
+        }
+        SharedAnalysisTextField type = (SharedAnalysisTextField) field.getType();
+        String key = type.getTokenizerKey();
+        if (key == null) {
+            return text;
+        }
+        SharedTokens tokens = shared.get(key);
+        if (tokens == null) {
+            tokens = type.tokenize(text);
+            shared.put(key, tokens);
+        }
+        return tokens;
+    }
+
+    @Override
+    public IndexableField createField(SchemaField field, Object value) {
+        if (value instanceof SharedTokens && field.indexed()) {
+            SharedTokens tokens = (SharedTokens) value;
+            Sharing sharing = getSharing();
+            if (sharing != NOT_SHARED && sharing.key.equals(tokens.tokenizerKey)) {
+                return new SharedTokensField(field, tokens, sharing);
+            }
+        }
+        return super.createField(field, value);
+    }
+
+    /**
+     * Release the tokenizer and the filter chains reused per thread. The field type stays usable,
+     * they are created again on next use.
+     */
+    @Override
+    public void close() {
+        Sharing current = sharing;
+        sharing = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private Sharing getSharing() {
+        Sharing current = sharing;
+        if (current == null) {
+            // analyzers are set after init, computed on first use
+            current = sharing = createSharing(getIndexAnalyzer());
+        }
+        return current;
+    }
+
+    private static Sharing createSharing(Analyzer analyzer) {
+        if (!(analyzer instanceof TokenizerChain)) {
+            return NOT_SHARED;
+        }
+        TokenizerChain chain = (TokenizerChain) analyzer;
+        if (chain.getCharFilterFactories() != null && chain.getCharFilterFactories().length > 0) {
+            return NOT_SHARED;
+        }
+        TokenizerFactory factory = chain.getTokenizerFactory();
+        String key = factory.getClass().getName() + new TreeMap<>(factory.getOriginalArgs());
+        return new Sharing(key, factory, chain.getTokenFilterFactories());
+    }
+
+    /**
+     * Tokenizer of the index analyzer alone, and filters to replay shared tokens through
+     */
+    private static final class Sharing {
+        private final String key;
+        private final Analyzer tokenizer;
+        private final TokenFilterFactory[] filters;
+        private final CloseableThreadLocal<Replay> replays = new CloseableThreadLocal<>();
+
+        private Sharing(String key, TokenizerFactory factory, TokenFilterFactory[] filters) {
+            this.key = key;
+            this.filters = filters;
+            this.tokenizer = factory == null ? null : new Analyzer() {
+                @Override
+                protected TokenStreamComponents createComponents(String fieldName) {
+                    return new TokenStreamComponents(factory.create());
+                }
+            };
+        }
+
+        private TokenStream replay(SharedTokens tokens) {
+            Replay replay = replays.get();
+            if (replay == null) {
+                replay = new Replay(filters);
+                replays.set(replay);
+            }
+            replay.source.setTokens(tokens);
+            return replay.sink;
+        }
+
+        private void close() {
+            replays.close();
+            if (tokenizer != null) {
+                tokenizer.close();
+            }
+        }
+    }
+
+    /**
+     * Per thread chain of filters, fields are inverted one after the other
+     */
+    private static final class Replay {
+        private final SharedTokenStream source = new SharedTokenStream();
+        private final TokenStream sink;
+
+        private Replay(TokenFilterFactory[] filters) {
+            TokenStream ts = source;
+            for (TokenFilterFactory filter : filters) {
+                ts = filter.create(ts);
+            }
+            this.sink = ts;
+        }
+    }
+
+    /**
+     * Source of the filters, in place of the tokenizer
+     */
+    private static final class SharedTokenStream extends TokenStream {
+        private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+        private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+        private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+        private SharedTokens tokens;
+        private int upto;
+
+        private void setTokens(SharedTokens tokens) {
+            this.tokens = tokens;
+            this.upto = 0;
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (upto >= tokens.count) {
+                return false;
+            }
+            clearAttributes();
+            int start = upto == 0 ? 0 : tokens.termEnds[upto - 1];
+            termAtt.copyBuffer(tokens.termChars, start, tokens.termEnds[upto] - start);
+            offsetAtt.setOffset(tokens.startOffsets[upto], tokens.endOffsets[upto]);
+            posIncAtt.setPositionIncrement(tokens.positionIncrements[upto]);
+            upto++;
+            return true;
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            offsetAtt.setOffset(tokens.finalOffset, tokens.finalOffset);
+            posIncAtt.setPositionIncrement(tokens.finalPositionIncrement);
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            upto = 0;
+        }
+    }
+
+    /**
+     * Stored and indexed like the text, the token stream being replayed when the field is inverted
+     */
+    private static final class SharedTokensField extends Field {
+        private final SharedTokens tokens;
+        private final Sharing sharing;
+
+        private SharedTokensField(SchemaField field, SharedTokens tokens, Sharing sharing) {
+            super(field.getName(), tokens.text, field);
+            this.tokens = tokens;
+            this.sharing = sharing;
+        }
+
+        @Override
+        public TokenStream tokenStream(Analyzer analyzer, TokenStream reuse) {
+            return sharing.replay(tokens);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.schema;
+
+/**
+ * Field value carrying its text and the output of the tokenizer of a {@link SharedAnalysisTextField}.
+ * <p>
+ * The text is tokenized once and every field of the document whose type has the same tokenizer replays
+ * the tokens through its own filters instead of tokenizing the text again. Term, offsets and position
+ * increments are kept. The value is a {@link CharSequence} of the text so that it is logged, stored and
+ * serialized (transaction log, forwarded updates) like the plain string, which is then analyzed as usual.
+ */
+public final class SharedTokens implements CharSequence {
+
+    final String text;
+    final String tokenizerKey;
+    final char[] termChars;
+    final int[] termEnds;
+    final int[] startOffsets;
+    final int[] endOffsets;
+    final int[] positionIncrements;
+    final int count;
+    final int finalOffset;
+    final int finalPositionIncrement;
+
+    SharedTokens(String text, String tokenizerKey, char[] termChars, int[] termEnds, int[] startOffsets,
+                 int[] endOffsets, int[] positionIncrements, int count, int finalOffset, int finalPositionIncrement) {
+        this.text = text;
+        this.tokenizerKey = tokenizerKey;
+        this.termChars = termChars;
+        this.termEnds = termEnds;
+        this.startOffsets = startOffsets;
+        this.endOffsets = endOffsets;
+        this.positionIncrements = positionIncrements;
+        this.count = count;
+        this.finalOffset = finalOffset;
+        this.finalPositionIncrement = finalPositionIncrement;
+    }
+
+    /**
+     * @return identity of the tokenizer which produced the tokens, see {@link SharedAnalysisTextField#getTokenizerKey()}
+     */
+    public String getTokenizerKey() {
+        return tokenizerKey;
+    }
+
+    /**
+     * @return number of tokens
+     */
+    public int getTokenCount() {
+        return count;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -20,6 +20,8 @@ import org.apache.lucene.search.spell.Dictionary;
 import org.apache.lucene.search.suggest.Lookup;
 import org.apache.lucene.search.suggest.Lookup.LookupResult;
 import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.IOUtils;
 import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.CloseHook;
@@ -36,6 +38,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static org.apache.solr.common.params.CommonParams.NAME;
@@ -208,6 +212,47 @@ public class AutocompleteSolrSuggester extends SolrSuggester {
         return new File(storeDir, factory.storeFileName());
     }
 
+    /**
+     * Notify the lookup that a new searcher is opened, before it is registered
+     */
+    public void newSearcher(SolrIndexSearcher searcher) throws IOException {
+        if (lookup instanceof AutocompleteSuggester) {
+            ((AutocompleteSuggester) lookup).newSearcher(searcher);
+        }
+    }
+
+    /**
+     * Write the missing suggestion stores of the commit just done in the core index directory
+     */
+    public void postCommit(Directory indexDir) throws IOException {
+        if (lookup instanceof AutocompleteSuggester) {
+            ((AutocompleteSuggester) lookup).postCommit(indexDir);
+        }
+    }
+
+    /**
+     * Roll the lookup back to its previous index generation, when it is built aside, once per build
+     *
+     * @return true if the lookup now searches another index
+     */
+    public boolean rollback() throws IOException {
+        return lookup instanceof AutocompleteSuggester && ((AutocompleteSuggester) lookup).rollback();
+    }
+
+    public Lookup getLookup() {
+        return lookup;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return lookup != null ? lookup.ramBytesUsed() : 0;
+    }
+
+    @Override
+    public Collection<Accountable> getChildResources() {
+        return lookup != null ? lookup.getChildResources() : Collections.emptyList();
+    }
+
     /**
      * Returns suggestions based on the {@link SuggesterOptions} passed
      */
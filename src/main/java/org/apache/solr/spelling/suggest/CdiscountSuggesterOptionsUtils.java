@@ -1,5 +1,8 @@
 package org.apache.solr.spelling.suggest;
 
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.util.CharsRef;
+
 public class CdiscountSuggesterOptionsUtils {
 
     public static final String SEPARATOR = "_";
@@ -16,4 +19,33 @@ public class CdiscountSuggesterOptionsUtils {
                 + SEPARATOR + options.allTermsRequired
                 + SEPARATOR + options.highlight;
     }
+
+    /**
+     * Options of a cache key built by {@link #keyCache}, or null if the key has a context filter query
+     * or was not built for this suggester
+     */
+    public static LocalSuggesterOptions parseKeyCache(String suggesterName, String key, IndexSearcher searcher, boolean firstContextOnly) {
+        String prefix = suggesterName + SEPARATOR;
+        String noContextFilter = SEPARATOR + null;
+        if (!key.startsWith(prefix)) {
+            return null;
+        }
+        int highlightIdx = key.lastIndexOf(SEPARATOR);
+        int allTermsRequiredIdx = key.lastIndexOf(SEPARATOR, highlightIdx - 1);
+        int countIdx = key.lastIndexOf(SEPARATOR, allTermsRequiredIdx - 1);
+        if (countIdx - noContextFilter.length() < prefix.length()
+                || !key.startsWith(noContextFilter, countIdx - noContextFilter.length())) {
+            return null;
+        }
+        int count;
+        try {
+            count = Integer.parseInt(key.substring(countIdx + 1, allTermsRequiredIdx));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String token = key.substring(prefix.length(), countIdx - noContextFilter.length());
+        boolean allTermsRequired = Boolean.parseBoolean(key.substring(allTermsRequiredIdx + 1, highlightIdx));
+        boolean highlight = Boolean.parseBoolean(key.substring(highlightIdx + 1));
+        return new LocalSuggesterOptions(searcher, new CharsRef(token), count, null, allTermsRequired, highlight, firstContextOnly);
+    }
 }
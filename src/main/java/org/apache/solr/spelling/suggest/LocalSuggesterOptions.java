@@ -7,6 +7,8 @@ public class LocalSuggesterOptions extends SuggesterOptions{
 
     boolean firstContextOnly;
     IndexSearcher searcher;
+    long timeAllowed;
+    long maxDocsScored;
 
     public LocalSuggesterOptions(SuggesterOptions opts) {
         super(opts.token, opts.count, opts.contextFilterQuery, opts.allTermsRequired, opts.highlight);
@@ -45,4 +47,26 @@ public class LocalSuggesterOptions extends SuggesterOptions{
     public IndexSearcher getSearcher() {
         return searcher;
     }
+
+    /**
+     * @return time allowed to the lookup in milliseconds, &lt;= 0 for no limit
+     */
+    public long getTimeAllowed() {
+        return timeAllowed;
+    }
+
+    public void setTimeAllowed(long timeAllowed) {
+        this.timeAllowed = timeAllowed;
+    }
+
+    /**
+     * @return maximum number of documents scored by the lookup, &lt;= 0 for no limit
+     */
+    public long getMaxDocsScored() {
+        return maxDocsScored;
+    }
+
+    public void setMaxDocsScored(long maxDocsScored) {
+        this.maxDocsScored = maxDocsScored;
+    }
 }
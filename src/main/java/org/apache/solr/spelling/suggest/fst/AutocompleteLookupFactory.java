@@ -19,15 +19,24 @@ package org.apache.solr.spelling.suggest.fst;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.search.suggest.Lookup;
 import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.StrUtils;
 import org.apache.solr.core.SolrCore;
+import org.apache.solr.suggest.analyzing.AutocompleteIndexBuilder;
 import org.apache.solr.suggest.analyzing.AutocompleteSuggester;
+import org.apache.solr.suggest.analyzing.DirectoryLoader;
+import org.apache.solr.suggest.analyzing.IndexGenerations;
+import org.apache.solr.suggest.analyzing.WeightBlend;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static org.apache.solr.handler.component.AutocompleteComponent.CONFIG_FIRST_CONTEXT_ONLY;
 
@@ -49,11 +58,81 @@ public class AutocompleteLookupFactory extends AnalyzingInfixLookupFactory {
     public static final String FIELD_WEIGHT = "weightField";
     public static final String WEIGHT_COEFF = "weightCoefficient";
 
+    /**
+     * How the weight is combined with the text score: additive (default, {@code text + coeff * weight}) or
+     * multiplicative ({@code text * (1 + coeff * weight)}), see {@link WeightBlend}
+     */
+    public static final String WEIGHT_FORMULA = "weightFormula";
+
+    /**
+     * Rank the suggestions of equal score by descending weight (default false: index order)
+     */
+    public static final String WEIGHT_TIE_BREAK = "weightTieBreak";
+
     public static final String FIELD_TEXT = "displayField";
     public static final String FIELD_CONTEXT = "contextField";
 
     public static final String MAX_NB_WORDS_FOR_POSITION_MATCH = "maxNbWordsForPositionMatch";
 
+    /**
+     * Delay (ms) between two background refreshes of the suggester searcher, 0 to reopen it on each lookup
+     */
+    public static final String SEARCHER_REFRESH_INTERVAL = "searcherRefreshInterval";
+
+    /**
+     * Number of threads searching the index segments of a lookup concurrently, 0 or 1 to search on the request thread
+     */
+    public static final String SEARCH_THREADS = "searchThreads";
+
+    /**
+     * Number of query texts whose parsing and built query are kept by the suggester, 0 to disable
+     */
+    public static final String QUERY_CACHE_SIZE = "queryCacheSize";
+
+    /**
+     * Number of threads analyzing the suggestions when the suggester is built from a dictionary
+     */
+    public static final String BUILD_THREADS = "buildThreads";
+
+    /**
+     * Directory (absolute or relative to the data dir) of the generations of a suggester built aside from the
+     * core index, see {@link IndexGenerations}. When not set, the suggester searches the core index.
+     */
+    public static final String BUILD_ASIDE_DIR = "buildAsideDir";
+
+    /**
+     * Implementation of the directory of the generations searched by the suggester: fs (default), mmap, nio or heap,
+     * build aside only (see {@link DirectoryLoader})
+     */
+    public static final String DIRECTORY = "directory";
+
+    /**
+     * Comma separated extensions of the files preloaded by the mmap directory
+     */
+    public static final String PRELOAD_EXTENSIONS = "preloadExtensions";
+
+    /**
+     * Sort the built index by descending weight and stop collecting the sorted segments early
+     */
+    public static final String SORT_BY_WEIGHT = "sortByWeight";
+
+    /**
+     * Write the display texts and contexts of each segment in a memory mapped side file, read instead of the
+     * doc values when creating the results (default false)
+     */
+    public static final String SUGGESTION_STORE = "suggestionStore";
+
+    /**
+     * Budget (MB) of the contexts kept by segment with the object parsed from them, so that the context of a
+     * suggestion is parsed once per segment instead of once per response (default 64, 0 to disable)
+     */
+    public static final String CONTEXT_CACHE_SIZE_MB = "contextCacheSizeMB";
+
+    /**
+     * Budget (MB) of the display texts kept by segment once decoded (default 32, 0 to disable)
+     */
+    public static final String TEXT_CACHE_SIZE_MB = "textCacheSizeMB";
+
     @Override
     public Lookup create(@SuppressWarnings({"rawtypes"}) NamedList params, SolrCore core) {
 
@@ -80,35 +159,135 @@ public class AutocompleteLookupFactory extends AnalyzingInfixLookupFactory {
                 ? null
                 : Integer.parseInt(params.get(MAX_NB_WORDS_FOR_POSITION_MATCH).toString());
 
+        long refreshInterval = params.get(SEARCHER_REFRESH_INTERVAL) != null
+                ? Long.parseLong(params.get(SEARCHER_REFRESH_INTERVAL).toString())
+                : 0L;
+
+        int searchThreads = params.get(SEARCH_THREADS) != null
+                ? Integer.parseInt(params.get(SEARCH_THREADS).toString())
+                : 0;
+
+        int queryCacheSize = params.get(QUERY_CACHE_SIZE) != null
+                ? Integer.parseInt(params.get(QUERY_CACHE_SIZE).toString())
+                : AutocompleteSuggester.DEFAULT_QUERY_CACHE_SIZE;
+
         boolean firstContextOnly = params.get(CONFIG_FIRST_CONTEXT_ONLY) != null && Boolean.parseBoolean(params.get(CONFIG_FIRST_CONTEXT_ONLY).toString());
 
-        // Fieldnames
-        Map<String, String> fields = new HashMap<>();
-        buildFields(FIELD, params, fields);
-        buildFields(FIELD_PAYLOAD, params, fields);
-        buildFields(FIELD_NGRAM, params, fields);
-        buildFields(FIELD_NGRAM_SECOND, params, fields);
-        buildFields(FIELD_CONCAT_PAYLOAD, params, fields);
-        buildFields(FIELD_CONCAT_NGRAM, params, fields);
+        int buildThreads = params.get(BUILD_THREADS) != null
+                ? Integer.parseInt(params.get(BUILD_THREADS).toString())
+                : Runtime.getRuntime().availableProcessors();
 
-        buildFields(FIELD_WEIGHT, params, fields);
-        buildFields(FIELD_TEXT, params, fields);
-        buildFields(FIELD_CONTEXT, params, fields);
+        String buildAsideDir = params.get(BUILD_ASIDE_DIR) != null
+                ? params.get(BUILD_ASIDE_DIR).toString() : null;
+        if (buildAsideDir != null && !new File(buildAsideDir).isAbsolute()) {
+            buildAsideDir = core.getDataDir() + File.separator + buildAsideDir;
+        }
+
+        boolean sortByWeight = isSortByWeight(params);
+        boolean suggestionStore = isSuggestionStore(params);
+
+        DirectoryLoader.Type directoryType = params.get(DIRECTORY) != null
+                ? DirectoryLoader.Type.fromString(params.get(DIRECTORY).toString())
+                : DirectoryLoader.Type.FS;
+        Set<String> preloadExtensions = params.get(PRELOAD_EXTENSIONS) != null
+                ? new HashSet<>(StrUtils.splitSmart(params.get(PRELOAD_EXTENSIONS).toString(), ','))
+                : DirectoryLoader.DEFAULT_PRELOAD_EXTENSIONS;
+        if (directoryType == DirectoryLoader.Type.HEAP && buildAsideDir == null) {
+            // the core index keeps changing, a heap copy of it would silently go stale
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+                    "The heap directory needs " + BUILD_ASIDE_DIR + ", the core index is modified after the copy");
+        }
+        if (directoryType != DirectoryLoader.Type.FS && buildAsideDir == null) {
+            // without build aside, requests search the core index through the solr searcher, opened by the
+            // directoryFactory of the core: the option would only change a directory nobody searches
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+                    "The " + params.get(DIRECTORY) + " directory needs " + BUILD_ASIDE_DIR
+                            + ", set the directoryFactory of the core to choose how the core index is read");
+        }
+        DirectoryLoader directoryLoader = new DirectoryLoader(directoryType, preloadExtensions);
 
+        Map<String, String> fields = getFields(params);
 
         float coeff = params.get(WEIGHT_COEFF) != null
                 ? Float.parseFloat(params.get(WEIGHT_COEFF).toString())
                 : 1f;
+        WeightBlend.Formula weightFormula = params.get(WEIGHT_FORMULA) != null
+                ? WeightBlend.Formula.fromString(params.get(WEIGHT_FORMULA).toString())
+                : WeightBlend.Formula.ADDITIVE;
+        long contextCacheSize = params.get(CONTEXT_CACHE_SIZE_MB) != null
+                ? (long) (Double.parseDouble(params.get(CONTEXT_CACHE_SIZE_MB).toString()) * 1024 * 1024)
+                : 64L * 1024 * 1024;
+        long textCacheSize = params.get(TEXT_CACHE_SIZE_MB) != null
+                ? (long) (Double.parseDouble(params.get(TEXT_CACHE_SIZE_MB).toString()) * 1024 * 1024)
+                : 32L * 1024 * 1024;
+        boolean weightTieBreak = params.get(WEIGHT_TIE_BREAK) != null && Boolean.parseBoolean(params.get(WEIGHT_TIE_BREAK).toString());
         Similarity configSimilarity = core.getLatestSchema() != null ? core.getLatestSchema().getSimilarity() : null;
 
         try {
-            return new AutocompleteSuggester(FSDirectory.open(new File(indexPath).toPath()),
-                    minPrefixChars, allTermsRequired, highlight, fields, coeff, nbWordsForPositionMatch, configSimilarity, firstContextOnly);
+            // the core index is not searched by a suggester built aside
+            Directory dir = buildAsideDir == null
+                    ? directoryLoader.open(new File(indexPath).toPath())
+                    : FSDirectory.open(new File(indexPath).toPath());
+            AutocompleteSuggester suggester = new AutocompleteSuggester(dir,
+                    minPrefixChars, allTermsRequired, highlight, fields, coeff, nbWordsForPositionMatch, configSimilarity, firstContextOnly,
+                    refreshInterval, searchThreads, queryCacheSize);
+            // without build aside, the index of the suggester is the core index, written by the core only:
+            // suggest.build is a no-op instead of replacing it under the core writer
+            if (core.getLatestSchema() != null && buildAsideDir != null) {
+                suggester.setIndexBuilder(new AutocompleteIndexBuilder(core.getLatestSchema(), fields, buildThreads, sortByWeight,
+                        suggestionStore));
+            }
+            suggester.setSortByWeight(sortByWeight);
+            suggester.setWeightFormula(weightFormula);
+            suggester.setWeightTieBreak(weightTieBreak);
+            suggester.setSuggestionStore(suggestionStore);
+            suggester.setContextCacheSize(contextCacheSize);
+            suggester.setTextCacheSize(textCacheSize);
+            suggester.setDirectoryLoader(directoryLoader);
+            if (buildAsideDir != null) {
+                suggester.setBuildAside(new IndexGenerations(new File(buildAsideDir).toPath()));
+            }
+            return suggester;
         } catch (IOException e) {
             throw new AutocompleteRuntimeException(e);
         }
     }
 
+    /**
+     * @return true if the suggester configuration sorts its index by weight
+     */
+    @SuppressWarnings({"rawtypes"})
+    public static boolean isSortByWeight(NamedList params) {
+        return params.get(SORT_BY_WEIGHT) != null && Boolean.parseBoolean(params.get(SORT_BY_WEIGHT).toString());
+    }
+
+    /**
+     * @return true if the suggester configuration writes and reads suggestion stores
+     */
+    @SuppressWarnings({"rawtypes"})
+    public static boolean isSuggestionStore(NamedList params) {
+        return params.get(SUGGESTION_STORE) != null && Boolean.parseBoolean(params.get(SUGGESTION_STORE).toString());
+    }
+
+    /**
+     * Field names of a suggester configuration, by parameter name
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static Map<String, String> getFields(NamedList params) {
+        Map<String, String> fields = new HashMap<>();
+        buildFields(FIELD, params, fields);
+        buildFields(FIELD_PAYLOAD, params, fields);
+        buildFields(FIELD_NGRAM, params, fields);
+        buildFields(FIELD_NGRAM_SECOND, params, fields);
+        buildFields(FIELD_CONCAT_PAYLOAD, params, fields);
+        buildFields(FIELD_CONCAT_NGRAM, params, fields);
+
+        buildFields(FIELD_WEIGHT, params, fields);
+        buildFields(FIELD_TEXT, params, fields);
+        buildFields(FIELD_CONTEXT, params, fields);
+        return fields;
+    }
+
     /**
      * Find fields name in params
      *
@@ -116,7 +295,7 @@ public class AutocompleteLookupFactory extends AnalyzingInfixLookupFactory {
      * @param params
      * @param fields
      */
-    private void buildFields(String fieldName, NamedList<String> params, Map<String, String> fields) {
+    private static void buildFields(String fieldName, NamedList<String> params, Map<String, String> fields) {
         if (fields == null) {
             fields = new HashMap<>();
         }
@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CustomAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SharedTokens;
+import org.apache.solr.update.DocumentBuilder;
+import org.apache.solr.update.processor.WordConcatenator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.solr.schema.SharedAnalysisTextField.sharedValue;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_CONCAT_NGRAM;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_CONCAT_PAYLOAD;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_CONTEXT;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_NGRAM;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_NGRAM_SECOND;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_PAYLOAD;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_TEXT;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_WEIGHT;
+
+/**
+ * Bulk build of a suggester index, out of the update chain.
+ * <p>
+ * Each suggestion becomes the document the {@code concat_autocomplete} chain would index: the text goes to the
+ * field and its technical fields, the concatenations of its words to the concat fields, and the document is built
+ * by the schema like a Solr update. Suggestions are read on the calling thread and analyzed by batches on the
+ * worker threads, each one filling its own segments of a dedicated {@link IndexWriter}. The index replaces
+ * the content of the directory and is merged into a single segment before being committed: until then, and on
+ * failure, readers of the directory keep seeing the previous commit. The {@link SuggestionStore} of the segment,
+ * if enabled, is written once it is committed.
+ */
+public final class AutocompleteIndexBuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final int BATCH_SIZE = 512;
+    private static final double RAM_BUFFER_SIZE_MB = 256;
+
+    /**
+     * Fields receiving the text as is
+     */
+    private static final List<String> TEXT_FIELDS = List.of(FIELD, FIELD_PAYLOAD, FIELD_NGRAM, FIELD_NGRAM_SECOND, FIELD_TEXT);
+    /**
+     * Fields receiving the concatenations of the words of the text
+     */
+    private static final List<String> CONCAT_FIELDS = List.of(FIELD_CONCAT_PAYLOAD, FIELD_CONCAT_NGRAM);
+
+    private final IndexSchema schema;
+    private final Map<String, String> fields;
+    private final int threads;
+    private final boolean sortByWeight;
+    private final boolean suggestionStore;
+    private final Analyzer concatAnalyzer = new CustomAnalyzer();
+
+    /**
+     * @param fields  field names of the suggester, by parameter name of {@code AutocompleteLookupFactory}
+     * @param threads number of threads analyzing the suggestions, &lt;= 1 to analyze them on the calling thread
+     */
+    public AutocompleteIndexBuilder(IndexSchema schema, Map<String, String> fields, int threads) {
+        this(schema, fields, threads, false);
+    }
+
+    /**
+     * @param sortByWeight sort the index by descending weight, so that lookups can stop collecting a segment
+     *                     once the remaining suggestions weigh too little to compete
+     */
+    public AutocompleteIndexBuilder(IndexSchema schema, Map<String, String> fields, int threads, boolean sortByWeight) {
+        this(schema, fields, threads, sortByWeight, false);
+    }
+
+    /**
+     * @param suggestionStore write the display texts and contexts of the built segment in a {@link SuggestionStore}
+     */
+    public AutocompleteIndexBuilder(IndexSchema schema, Map<String, String> fields, int threads, boolean sortByWeight,
+                                    boolean suggestionStore) {
+        this.schema = schema;
+        this.fields = fields;
+        this.threads = threads;
+        this.sortByWeight = sortByWeight;
+        this.suggestionStore = suggestionStore;
+    }
+
+    /**
+     * Suggestion to index
+     */
+    public static final class Suggestion {
+        private final String id;
+        private final String text;
+        private final float weight;
+        private final String context;
+
+        /**
+         * @param context content of the context field, null for none
+         */
+        public Suggestion(String id, String text, float weight, String context) {
+            this.id = id;
+            this.text = text;
+            this.weight = weight;
+            this.context = context;
+        }
+    }
+
+    /**
+     * Suggestions to index, read one after the other
+     */
+    public interface Source {
+        /**
+         * @return the next suggestion, null at the end
+         */
+        Suggestion next() throws IOException;
+    }
+
+    /**
+     * Build from the entries of a dictionary: the text is also the id of the suggestion, the payload its context.
+     */
+    public long build(Directory dir, InputIterator iterator) throws IOException {
+        return build(dir, () -> {
+            BytesRef text = iterator.next();
+            if (text == null) {
+                return null;
+            }
+            String t = text.utf8ToString();
+            BytesRef payload = iterator.hasPayloads() ? iterator.payload() : null;
+            return new Suggestion(t, t, iterator.weight(), payload == null ? null : payload.utf8ToString());
+        });
+    }
+
+    /**
+     * Replace the content of a directory by the index of the suggestions.
+     *
+     * @return number of suggestions indexed
+     */
+    public long build(Directory dir, Source source) throws IOException {
+        long start = System.nanoTime();
+        // the index is merged and read only: no compound files, so that postings can be preloaded on their own
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setNoCFSRatio(0.0);
+        IndexWriterConfig config = new IndexWriterConfig(schema.getIndexAnalyzer())
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
+                .setSimilarity(schema.getSimilarity())
+                .setRAMBufferSizeMB(RAM_BUFFER_SIZE_MB)
+                .setUseCompoundFile(false)
+                .setMergePolicy(mergePolicy)
+                .setCommitOnClose(false);
+        if (sortByWeight && fields.get(FIELD_WEIGHT) != null) {
+            config.setIndexSort(new Sort(schema.getField(fields.get(FIELD_WEIGHT)).getSortField(true)));
+        }
+
+        long count = 0;
+        try (IndexWriter writer = new IndexWriter(dir, config)) {
+            ExecutorService executor = threads > 1
+                    ? ExecutorUtil.newMDCAwareFixedThreadPool(threads, new SolrNamedThreadFactory("autocompleteBuild"))
+                    : null;
+            try {
+                Deque<Future<?>> pending = new ArrayDeque<>();
+                List<Suggestion> batch = new ArrayList<>(BATCH_SIZE);
+                Suggestion suggestion;
+                while ((suggestion = source.next()) != null) {
+                    batch.add(suggestion);
+                    count++;
+                    if (batch.size() == BATCH_SIZE) {
+                        index(writer, batch, executor, pending);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                index(writer, batch, executor, pending);
+                while (!pending.isEmpty()) {
+                    await(pending.poll());
+                }
+            } finally {
+                // on failure, the pending batches must not add documents to a closed writer
+                if (executor != null) {
+                    ExecutorUtil.shutdownNowAndAwaitTermination(executor);
+                }
+            }
+
+            long analyzed = System.nanoTime();
+            writer.forceMerge(1);
+            writer.commit();
+            if (suggestionStore) {
+                try (DirectoryReader reader = DirectoryReader.open(writer.getDirectory())) {
+                    SuggestionStore.writeMissing(reader, fields.get(FIELD_TEXT), fields.get(FIELD_CONTEXT));
+                }
+            }
+            log.info("Autocomplete index built with {} suggestions in {} ms (merge {} ms)", count,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - analyzed));
+        }
+        return count;
+    }
+
+    /**
+     * Index a batch on a worker, waiting for the oldest batches so that at most two batches per worker are pending
+     */
+    private void index(IndexWriter writer, List<Suggestion> batch, ExecutorService executor, Deque<Future<?>> pending)
+            throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (executor == null) {
+            index(writer, batch);
+            return;
+        }
+        while (pending.size() >= 2 * threads) {
+            await(pending.poll());
+        }
+        pending.add(executor.submit(() -> {
+            index(writer, batch);
+            return null;
+        }));
+    }
+
+    private void index(IndexWriter writer, List<Suggestion> batch) throws IOException {
+        WordConcatenator concatenator = new WordConcatenator(concatAnalyzer);
+        for (Suggestion suggestion : batch) {
+            writer.addDocument(toDocument(suggestion, concatenator));
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building the autocomplete index", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to index suggestions", e.getCause());
+        }
+    }
+
+    /**
+     * @return the document indexed for a suggestion, as built from the {@code concat_autocomplete} update chain
+     */
+    Document toDocument(Suggestion suggestion, WordConcatenator concatenator) throws IOException {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(schema.getUniqueKeyField().getName(), suggestion.id);
+
+        Map<String, SharedTokens> shared = new HashMap<>(2);
+        for (String field : TEXT_FIELDS) {
+            String name = fields.get(field);
+            if (name != null) {
+                doc.addField(name, sharedValue(schema, name, suggestion.text, shared));
+            }
+        }
+
+        String concat = null;
+        shared.clear();
+        for (String field : CONCAT_FIELDS) {
+            String name = fields.get(field);
+            if (name != null) {
+                if (concat == null) {
+                    concat = concatenator.concat(suggestion.text);
+                }
+                doc.addField(name, sharedValue(schema, name, concat, shared));
+            }
+        }
+
+        if (fields.get(FIELD_WEIGHT) != null) {
+            doc.addField(fields.get(FIELD_WEIGHT), suggestion.weight);
+        }
+        if (fields.get(FIELD_CONTEXT) != null && suggestion.context != null) {
+            doc.addField(fields.get(FIELD_CONTEXT), suggestion.context);
+        }
+        return DocumentBuilder.toDocument(doc, schema);
+    }
+}
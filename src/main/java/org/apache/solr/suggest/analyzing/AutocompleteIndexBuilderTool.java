@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.Utils;
+import org.apache.solr.core.PluginInfo;
+import org.apache.solr.core.SolrConfig;
+import org.apache.solr.handler.component.AutocompleteComponent;
+import org.apache.solr.handler.component.SearchComponent;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.IndexSchemaFactory;
+import org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory;
+import org.noggit.JSONUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_CONTEXT;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_WEIGHT;
+
+/**
+ * Command line entry point of {@link AutocompleteIndexBuilder}, for full rebuilds while Solr is stopped.
+ * <p>
+ * The schema and the suggester fields are read from the configuration directory of the core, the suggestions
+ * from a file with one suggestion per line:
+ * <ul>
+ * <li>jsonl: a json object with the field, weight field and context field of the suggester (e.g.
+ * {@code {"search": "apple iphone", "weight": 100, "jsonText": {...}}}), and optionally the unique key, which
+ * defaults to the text,</li>
+ * <li>tsv: text, weight and optionally context, separated by tabs, the text being the unique key.</li>
+ * </ul>
+ * Lines without a text, or with a weight which is not a number, are rejected with their line number.
+ * <pre>
+ * java -cp ... org.apache.solr.suggest.analyzing.AutocompleteIndexBuilderTool -conf config/autocomplete
+ *     -index /var/solr/data/autocomplete/data/index -input suggestions.jsonl [-format jsonl|tsv] [-threads 8]
+ *     [-suggester default]
+ * </pre>
+ */
+public final class AutocompleteIndexBuilderTool {
+
+    private static final String USAGE = "Usage: AutocompleteIndexBuilderTool -conf <config dir> -index <index dir> "
+            + "-input <file> [-format jsonl|tsv] [-threads <n>] [-suggester <name>]";
+
+    private AutocompleteIndexBuilderTool() {
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("-")) {
+                exit(USAGE);
+            }
+            options.put(args[i].substring(1), args[i + 1]);
+        }
+        if (args.length % 2 != 0 || !options.containsKey("conf") || !options.containsKey("index") || !options.containsKey("input")) {
+            exit(USAGE);
+        }
+
+        Path input = Paths.get(options.get("input"));
+        String format = options.getOrDefault("format", input.toString().endsWith(".tsv") ? "tsv" : "jsonl");
+        if (!"jsonl".equals(format) && !"tsv".equals(format)) {
+            exit("Unknown format " + format + ", expected jsonl or tsv");
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        SolrConfig config = new SolrConfig(Paths.get(options.get("conf")), "solrconfig.xml");
+        IndexSchema schema = IndexSchemaFactory.buildIndexSchema(IndexSchema.DEFAULT_SCHEMA_FILE, config);
+        NamedList suggester = findSuggester(config, options.get("suggester"));
+        Map<String, String> fields = AutocompleteLookupFactory.getFields(suggester);
+        boolean sortByWeight = AutocompleteLookupFactory.isSortByWeight(suggester);
+        boolean suggestionStore = AutocompleteLookupFactory.isSuggestionStore(suggester);
+
+        long start = System.nanoTime();
+        long count;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Directory dir = FSDirectory.open(Paths.get(options.get("index")))) {
+            AutocompleteIndexBuilder.Source source = "tsv".equals(format)
+                    ? tsv(reader)
+                    : jsonl(reader, schema.getUniqueKeyField().getName(), fields);
+            count = new AutocompleteIndexBuilder(schema, fields, threads, sortByWeight, suggestionStore).build(dir, source);
+        }
+        System.out.println("Indexed " + count + " suggestions into " + options.get("index") + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.exit(1);
+    }
+
+    /**
+     * @param name name of the suggester, null for the first one
+     * @return configuration of a suggester of the autocomplete component
+     */
+    @SuppressWarnings("rawtypes")
+    public static NamedList findSuggester(SolrConfig config, String name) {
+        for (PluginInfo info : config.getPluginInfos(SearchComponent.class.getName())) {
+            if (!info.className.endsWith(AutocompleteComponent.class.getSimpleName())) {
+                continue;
+            }
+            for (Object suggester : info.initArgs.getAll("suggester")) {
+                NamedList params = (NamedList) suggester;
+                if (name == null || name.equals(params.get(CommonParams.NAME))) {
+                    return params;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No autocomplete suggester" + (name == null ? "" : " named " + name)
+                + " in the configuration");
+    }
+
+    static AutocompleteIndexBuilder.Source jsonl(BufferedReader reader, String uniqueKey, Map<String, String> fields) {
+        int[] lineNumber = new int[1];
+        return () -> {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                lineNumber[0]++;
+            } while (line.trim().isEmpty());
+
+            Object parsed;
+            try {
+                parsed = Utils.fromJSONString(line);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Line " + lineNumber[0] + ": invalid json", e);
+            }
+            if (!(parsed instanceof Map)) {
+                throw new IllegalArgumentException("Line " + lineNumber[0] + ": not a json object");
+            }
+            Map<?, ?> json = (Map<?, ?>) parsed;
+            Object text = json.get(fields.get(FIELD));
+            if (!(text instanceof String)) {
+                throw new IllegalArgumentException("Line " + lineNumber[0] + ": no text in " + fields.get(FIELD));
+            }
+            Object id = json.get(uniqueKey);
+            Object weight = fields.get(FIELD_WEIGHT) == null ? null : json.get(fields.get(FIELD_WEIGHT));
+            if (weight != null && !(weight instanceof Number)) {
+                throw new IllegalArgumentException("Line " + lineNumber[0] + ": " + fields.get(FIELD_WEIGHT)
+                        + " is not a number: " + weight);
+            }
+            Object context = fields.get(FIELD_CONTEXT) == null ? null : json.get(fields.get(FIELD_CONTEXT));
+            return new AutocompleteIndexBuilder.Suggestion(id == null ? (String) text : id.toString(), (String) text,
+                    weight == null ? 0f : ((Number) weight).floatValue(),
+                    context == null || context instanceof String ? (String) context : JSONUtil.toJSON(context, -1));
+        };
+    }
+
+    static AutocompleteIndexBuilder.Source tsv(BufferedReader reader) {
+        int[] lineNumber = new int[1];
+        return () -> {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                lineNumber[0]++;
+            } while (line.trim().isEmpty());
+
+            String[] columns = line.split("\t", 3);
+            float weight;
+            try {
+                weight = columns.length > 1 && !columns[1].isEmpty() ? Float.parseFloat(columns[1]) : 0f;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber[0] + ": weight is not a number: " + columns[1], e);
+            }
+            return new AutocompleteIndexBuilder.Suggestion(columns[0], columns[0], weight,
+                    columns.length > 2 ? columns[2] : null);
+        };
+    }
+}
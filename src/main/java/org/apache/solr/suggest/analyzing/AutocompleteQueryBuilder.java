@@ -1,8 +1,6 @@
 package org.apache.solr.suggest.analyzing;
 
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queries.function.FunctionQuery;
-import org.apache.lucene.queries.function.valuesource.FloatFieldSource;
 import org.apache.lucene.query.PositionSpanQuery;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
@@ -36,21 +34,32 @@ public class AutocompleteQueryBuilder {
 
     private final int nbWordsForPositionMatch;
     private final Map<String, String> fields;
-    private final float coeff;
+    private final WeightBlend blend;
     private final long docCount;
 
     public AutocompleteQueryBuilder(Integer nbWordsForPositionMatch, Map<String, String> fields, float coeff, long docCount) {
+        this(nbWordsForPositionMatch, fields, new WeightBlend(WeightBlend.Formula.ADDITIVE, coeff), docCount);
+    }
+
+    /**
+     * @param blend how the weight is combined with the score of the text clauses
+     */
+    public AutocompleteQueryBuilder(Integer nbWordsForPositionMatch, Map<String, String> fields, WeightBlend blend, long docCount) {
         this.nbWordsForPositionMatch = nbWordsForPositionMatch == null ?
                 AutocompleteQueryBuilder.MIN_LENGTH_FOR_MAXEDITS
                 : nbWordsForPositionMatch;
 
         this.fields = fields;
-        this.coeff = coeff;
+        this.blend = blend;
         this.docCount = docCount;
     }
 
 
-    public BooleanQuery getQuery(QueryInfos queryInfos, BooleanClause.Occur occ) {
+    /**
+     * @return the text clauses, wrapped in a {@link WeightBlendQuery} when there is a weight field so that only
+     * the documents they match are weighted
+     */
+    public Query getQuery(QueryInfos queryInfos, BooleanClause.Occur occ) {
         BooleanQuery.Builder query = new BooleanQuery.Builder();
 
         int position = 1;
@@ -76,7 +85,7 @@ public class AutocompleteQueryBuilder {
 
         // Potential boost
         if (this.fields.get(FIELD_WEIGHT) != null) {
-            query.add(new BoostQuery(new FunctionQuery(new FloatFieldSource(this.fields.get(FIELD_WEIGHT))), coeff), occ);
+            return new WeightBlendQuery(query.build(), this.fields.get(FIELD_WEIGHT), blend);
         }
 
         return query.build();
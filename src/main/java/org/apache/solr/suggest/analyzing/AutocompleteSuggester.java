@@ -17,49 +17,65 @@
 package org.apache.solr.suggest.analyzing;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.FoldingLetterOrDigitTokenizer;
 import org.apache.lucene.analysis.NormalAnalyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
-import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
-import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.FilterLeafReader;
-import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.ReaderUtil;
-import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.search.suggest.InputIterator;
 import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Accountable;
-import org.apache.lucene.util.Accountables;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.solr.common.util.ExecutorUtil;
+import org.apache.solr.common.util.SolrNamedThreadFactory;
 import org.apache.solr.spelling.suggest.LocalSuggesterOptions;
-import org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory;
+import org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.AutocompleteRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.StringReader;
+import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_CONCAT_NGRAM;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_CONCAT_PAYLOAD;
 import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_CONTEXT;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_NGRAM;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_NGRAM_SECOND;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_PAYLOAD;
 import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_TEXT;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_WEIGHT;
 
 /**
  * Analyzes the input text and then suggests matches based
@@ -78,6 +94,12 @@ import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIE
 
 public class AutocompleteSuggester extends Lookup implements Closeable {
 
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    /**
+     * Default number of query texts whose parsing and built query are kept
+     */
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 1024;
 
     protected final Analyzer queryAnalyzer = new NormalAnalyzer();
 
@@ -91,12 +113,47 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
     private final Integer nbWordsForPositionMatch;
     private final boolean onlyFirstContext;
 
-    public SearcherManager searcherMgr;
-    protected final Object searcherMgrLock = new Object();
+    private final AtomicReference<SearcherHolder> searcherHolder = new AtomicReference<>();
+    private final AtomicLong searcherGeneration = new AtomicLong();
 
     private Similarity similarity;
 
-    private long docCount;
+    private final SearcherFactory searcherFactory = new SearcherFactory() {
+        @Override
+        public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+            return newSearcherView(reader);
+        }
+    };
+    /**
+     * Views of the external searchers, by reader, dropped when the reader is closed
+     */
+    private final Map<IndexReader.CacheKey, SearcherView> searcherViews = new ConcurrentHashMap<>();
+    /**
+     * View of the last searcher opened by the core (see {@link #newSearcher(IndexSearcher)}), the one its requests search
+     */
+    private volatile SearcherView coreView;
+
+    private final List<String> statsFields;
+
+    private final long refreshInterval;
+    private ScheduledExecutorService refresher;
+    private ExecutorService searchExecutor;
+
+    private final CompiledQueryCache queryCache;
+
+    private AutocompleteIndexBuilder indexBuilder;
+    private volatile IndexGenerations generations;
+    private volatile DirectoryLoader directoryLoader = DirectoryLoader.DEFAULT;
+    private volatile boolean sortByWeight;
+    private volatile WeightBlend weightBlend;
+    private volatile boolean weightTieBreak;
+    private volatile boolean suggestionStore;
+    /**
+     * Reader of the latest commit of the core index, reopened by {@link #postCommit(Directory)}
+     */
+    private DirectoryReader commitReader;
+    private final SegmentContexts.Cache contextCache = new SegmentContexts.Cache(SegmentContexts.DEFAULT_MAX_BYTES);
+    private final SegmentTexts.Cache textCache = new SegmentTexts.Cache(SegmentTexts.DEFAULT_MAX_BYTES);
 
     /**
      * Create a new instance, loading from a previously built
@@ -116,6 +173,36 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
     public AutocompleteSuggester(Directory dir, int minPrefixChars,
                                  boolean allTermsRequired, boolean highlight, Map<String, String> fields,
                                  float coeff, Integer nbWordsForPositionMatch, Similarity similarity, boolean onlyFirstContext) throws IOException {
+        this(dir, minPrefixChars, allTermsRequired, highlight, fields, coeff, nbWordsForPositionMatch, similarity, onlyFirstContext, 0L, 0);
+    }
+
+    /**
+     * Same as above, with a background refresh of the searcher and concurrent segment search.
+     *
+     * @param refreshInterval Delay in milliseconds between two {@link SearcherManager#maybeRefresh()}
+     *                        run by a background thread. When &lt;= 0, the searcher is refreshed
+     *                        on each lookup done without a provided searcher, when the index has changed.
+     * @param searchThreads   Number of threads searching the index slices of a lookup concurrently.
+     *                        When &lt;= 1, segments are searched one after another by the request thread.
+     */
+    public AutocompleteSuggester(Directory dir, int minPrefixChars,
+                                 boolean allTermsRequired, boolean highlight, Map<String, String> fields,
+                                 float coeff, Integer nbWordsForPositionMatch, Similarity similarity, boolean onlyFirstContext,
+                                 long refreshInterval, int searchThreads) throws IOException {
+        this(dir, minPrefixChars, allTermsRequired, highlight, fields, coeff, nbWordsForPositionMatch, similarity, onlyFirstContext,
+                refreshInterval, searchThreads, DEFAULT_QUERY_CACHE_SIZE);
+    }
+
+    /**
+     * Same as above, with the size of the cache of built queries.
+     *
+     * @param queryCacheSize Maximum number of query texts whose parsing and built query are kept,
+     *                       0 to parse and build the query on each lookup.
+     */
+    public AutocompleteSuggester(Directory dir, int minPrefixChars,
+                                 boolean allTermsRequired, boolean highlight, Map<String, String> fields,
+                                 float coeff, Integer nbWordsForPositionMatch, Similarity similarity, boolean onlyFirstContext,
+                                 long refreshInterval, int searchThreads, int queryCacheSize) throws IOException {
 
         if (minPrefixChars < 0) {
             throw new IllegalArgumentException("minPrefixChars must be >= 0; got: " + minPrefixChars);
@@ -126,29 +213,349 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
         this.highlight = highlight;
         this.fields = fields;
         this.coeff = coeff;
+        this.weightBlend = new WeightBlend(WeightBlend.Formula.ADDITIVE, coeff);
         this.nbWordsForPositionMatch = nbWordsForPositionMatch;
         this.similarity = similarity;
         this.onlyFirstContext = onlyFirstContext;
-
+        this.refreshInterval = refreshInterval;
+        this.queryCache = new CompiledQueryCache(queryCacheSize);
+        this.statsFields = new ArrayList<>();
+        for (String field : List.of(FIELD, FIELD_PAYLOAD, FIELD_NGRAM, FIELD_NGRAM_SECOND, FIELD_CONCAT_PAYLOAD, FIELD_CONCAT_NGRAM)) {
+            if (fields.get(field) != null) {
+                statsFields.add(fields.get(field));
+            }
+        }
+        if (searchThreads > 1) {
+            searchExecutor = ExecutorUtil.newMDCAwareFixedThreadPool(searchThreads, new SolrNamedThreadFactory("autocompleteSearch"));
+        }
         if (DirectoryReader.indexExists(dir)) {
-            searcherMgr = new SearcherManager(dir, null);
+            searcherHolder.set(newSearcherHolder());
+        }
+
+        if (refreshInterval > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(new SolrNamedThreadFactory("autocompleteSearcherRefresh"));
+            refresher.scheduleWithFixedDelay(this::refreshSearcher, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
         }
     }
 
+    /**
+     * Set the builder used by {@link #build(InputIterator)} when building aside (see {@link #setBuildAside(IndexGenerations)}),
+     * otherwise the index is only filled through the update chain of the core.
+     */
+    public void setIndexBuilder(AutocompleteIndexBuilder indexBuilder) {
+        this.indexBuilder = indexBuilder;
+    }
+
+    /**
+     * Collect the segments sorted by descending weight up to the point where no further document can enter
+     * the top hits, see {@link TopSuggestionsCollector}. Results are the same, segments which are not
+     * sorted are collected entirely.
+     */
+    public void setSortByWeight(boolean sortByWeight) {
+        this.sortByWeight = sortByWeight;
+        queryCache.clear();
+    }
+
+    /**
+     * Set how the weight is combined with the text score of the matched suggestions, additive by default
+     */
+    public void setWeightFormula(WeightBlend.Formula formula) {
+        this.weightBlend = new WeightBlend(formula, coeff);
+        queryCache.clear();
+    }
+
+    public WeightBlend getWeightBlend() {
+        return weightBlend;
+    }
+
+    /**
+     * Rank the suggestions of equal score by descending weight instead of index order
+     */
+    public void setWeightTieBreak(boolean weightTieBreak) {
+        this.weightTieBreak = weightTieBreak;
+    }
+
+    /**
+     * Read the display texts and contexts from the {@link SuggestionStore} of the segments, written by
+     * {@link #build(InputIterator)} and by {@link #postCommit(Directory)} for the index committed by the core.
+     * The segments without one are read from the doc values.
+     */
+    public void setSuggestionStore(boolean suggestionStore) {
+        this.suggestionStore = suggestionStore;
+    }
+
+    /**
+     * Write the missing suggestion stores of the segments of the commit just done in {@code indexDir}, if enabled
+     * and the suggester does not search its own generations. Called by the commit callback of the core, as the
+     * stores are written after its commit and before the new searcher is opened.
+     */
+    public synchronized void postCommit(Directory indexDir) throws IOException {
+        if (!suggestionStore || generations != null || fields.get(FIELD_TEXT) == null) {
+            return;
+        }
+        if (commitReader == null || commitReader.directory() != indexDir) {
+            IOUtils.close(commitReader);
+            commitReader = null;
+            commitReader = DirectoryReader.open(indexDir);
+        } else {
+            DirectoryReader newReader = DirectoryReader.openIfChanged(commitReader);
+            if (newReader == null) {
+                return;
+            }
+            commitReader.close();
+            commitReader = newReader;
+        }
+        SuggestionStore.writeMissing(commitReader, fields.get(FIELD_TEXT), fields.get(FIELD_CONTEXT));
+    }
+
+    /**
+     * Set the budget, in bytes, of the contexts kept by segment with the object parsed from them by the
+     * responses (see {@link SegmentContexts}), 0 to copy the context of each result. The budget is the one of
+     * this suggester, whatever the others.
+     */
+    public void setContextCacheSize(long contextCacheSize) {
+        contextCache.setMaxBytes(contextCacheSize);
+    }
+
+    /**
+     * Set the budget, in bytes, of the display texts kept by segment once decoded (see {@link SegmentTexts}),
+     * 0 to decode the text of each result. The budget is the one of this suggester, whatever the others.
+     */
+    public void setTextCacheSize(long textCacheSize) {
+        textCache.setMaxBytes(textCacheSize);
+    }
+
+    SegmentContexts.Cache getContextCache() {
+        return contextCache;
+    }
+
+    SegmentTexts.Cache getTextCache() {
+        return textCache;
+    }
+
+    /**
+     * Set how the generations built aside are opened, to call before {@link #setBuildAside(IndexGenerations)}
+     */
+    public void setDirectoryLoader(DirectoryLoader directoryLoader) {
+        this.directoryLoader = directoryLoader;
+    }
+
+    public DirectoryLoader getDirectoryLoader() {
+        return directoryLoader;
+    }
+
+    /**
+     * Build aside: {@link #build(InputIterator)} writes each new index into a new generation of {@code generations}
+     * and lookups only search the current generation, whatever the searcher given by the caller.
+     * The current generation, if any, is opened right away, else lookups find nothing until the first build.
+     */
+    public synchronized void setBuildAside(IndexGenerations generations) throws IOException {
+        this.generations = generations;
+        long current = generations.getCurrent();
+        SearcherHolder.swap(searcherHolder, current != IndexGenerations.NONE ? openGeneration(current) : null);
+    }
+
+    public IndexGenerations getBuildAside() {
+        return generations;
+    }
+
+    /**
+     * Replace the index by the suggestions of the iterator, then open a searcher on it.
+     * <p>
+     * When building aside, the new index is written and merged in a new generation while lookups keep
+     * searching the current one, then the searcher is swapped: lookups in flight finish on the previous
+     * generation, which is kept for {@link #rollback()}.
+     */
     @Override
-    public void build(InputIterator iter) throws IOException {
-        // Nothing to do
+    public synchronized void build(InputIterator iter) throws IOException {
+        IndexGenerations gens = generations;
+        if (indexBuilder == null || gens == null) {
+            log.warn("No index builder, the autocomplete index is filled through the update chain (set buildAsideDir to build it)");
+            return;
+        }
+        long generation = gens.create();
+        SearcherHolder holder;
+        try {
+            try (Directory target = FSDirectory.open(gens.getPath(generation))) {
+                indexBuilder.build(target, iter);
+            }
+            // the searcher and its statistics are ready before the generation is visible
+            holder = openGeneration(generation);
+        } catch (IOException | RuntimeException e) {
+            gens.discard(generation);
+            throw e;
+        }
+        try {
+            gens.publish(generation);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeWhileHandlingException(holder::retire);
+            gens.discard(generation);
+            throw e;
+        }
+        SearcherHolder.swap(searcherHolder, holder);
+        gens.purge();
+        log.info("Autocomplete index generation {} published in {}", generation, gens.getRoot());
+    }
+
+    /**
+     * Search the previous generation again. Rollbacks only go backward: a second one does nothing until
+     * the next build.
+     *
+     * @return false if not building aside or there is no previous generation
+     */
+    public synchronized boolean rollback() throws IOException {
+        IndexGenerations gens = generations;
+        if (gens == null || gens.getPrevious() == IndexGenerations.NONE) {
+            return false;
+        }
+        SearcherHolder holder = openGeneration(gens.getPrevious());
+        try {
+            gens.rollback();
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeWhileHandlingException(holder::retire);
+            throw e;
+        }
+        SearcherHolder.swap(searcherHolder, holder);
+        log.info("Autocomplete index rolled back to generation {} in {}", gens.getCurrent(), gens.getRoot());
+        return true;
+    }
+
+    private SearcherHolder newSearcherHolder() throws IOException {
+        return new SearcherHolder(new SearcherManager(dir, searcherFactory), searcherGeneration.incrementAndGet());
+    }
+
+    /**
+     * Open (and preload) a generation built aside and a searcher on it, the holder owns the directory
+     */
+    private SearcherHolder openGeneration(long generation) throws IOException {
+        Directory generationDir = directoryLoader.open(generations.getPath(generation));
+        try {
+            return new SearcherHolder(new SearcherManager(generationDir, searcherFactory),
+                    searcherGeneration.incrementAndGet(), generationDir);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeWhileHandlingException(generationDir);
+            throw e;
+        }
     }
 
     private void ensureOpen() throws IOException {
-        synchronized (searcherMgrLock) {
+        if (generations != null) {
+            // generations are never modified once published, the searcher is swapped by build and rollback
+            return;
+        }
+        if (searcherHolder.get() == null) {
             if (DirectoryReader.indexExists(dir)) {
-                SearcherManager oldSearcherMgr = searcherMgr;
-                searcherMgr = new SearcherManager(dir, null);
-                if (oldSearcherMgr != null) {
-                    oldSearcherMgr.close();
+                SearcherHolder holder = newSearcherHolder();
+                if (!searcherHolder.compareAndSet(null, holder)) {
+                    holder.getSearcherManager().close();
+                }
+            }
+            return;
+        }
+        // reopened only when the index has changed, the previous searcher is closed once its lookups are done.
+        // Never waits: while a lookup refreshes the searcher, the others search the current one
+        try (SearcherHolder.Lease lease = SearcherHolder.acquire(searcherHolder)) {
+            if (lease != null) {
+                lease.getSearcherManager().maybeRefresh();
+            }
+        }
+    }
+
+    /**
+     * Create the searcher used by the suggester on top of a reader: it carries the suggester {@link Similarity},
+     * no query cache, as autocomplete queries are built per keystroke and are not worth caching,
+     * and the {@link SearcherStats} of the reader.
+     */
+    private SearcherView newSearcherView(IndexReader reader) throws IOException {
+        SearcherView view = new SearcherView(reader, SearcherStats.compute(reader, statsFields), searchExecutor);
+        if (similarity != null) {
+            view.setSimilarity(similarity);
+        }
+        view.setQueryCache(null);
+        return view;
+    }
+
+    /**
+     * Get the view of an external searcher, created once per reader and kept until the reader is closed, so that
+     * requests still running on the previous searcher of a commit do not replace the view of the new one.
+     */
+    private SearcherView getSearcherView(IndexSearcher searcher) throws IOException {
+        IndexReader reader = searcher.getIndexReader();
+        IndexReader.CacheHelper helper = reader.getReaderCacheHelper();
+        if (helper == null) {
+            return newSearcherView(reader);
+        }
+        IndexReader.CacheKey key = helper.getKey();
+        SearcherView view = searcherViews.get(key);
+        if (view == null) {
+            // concurrent first requests on a new reader may build it twice, the first one wins
+            view = newSearcherView(reader);
+            SearcherView previous = searcherViews.putIfAbsent(key, view);
+            if (previous != null) {
+                return previous;
+            }
+            try {
+                helper.addClosedListener(searcherViews::remove);
+            } catch (AlreadyClosedException e) {
+                searcherViews.remove(key);
+                throw e;
+            }
+        }
+        return view;
+    }
+
+    /**
+     * To be called when a new external searcher is opened, before it serves requests:
+     * builds its view and statistics once, out of the request path. Its statistics are the ones reported
+     * from then on.
+     */
+    public void newSearcher(IndexSearcher searcher) throws IOException {
+        if (generations != null) {
+            // the searcher of the core is not searched when building aside
+            return;
+        }
+        coreView = getSearcherView(searcher);
+    }
+
+    /**
+     * @return the statistics of the searcher served: the current searcher of the core once one has been opened
+     * (see {@link #newSearcher(IndexSearcher)}), else the current searcher of the suggester
+     */
+    public SearcherStats getStats() throws IOException {
+        SearcherView view = generations == null ? coreView : null;
+        if (view != null) {
+            return view.stats;
+        }
+        try (SearcherHolder.Lease lease = SearcherHolder.acquire(searcherHolder)) {
+            return lease == null ? SearcherStats.EMPTY : ((SearcherView) lease.getSearcher()).stats;
+        }
+    }
+
+    /**
+     * Run by the background refresher: opens the {@link SearcherManager} once the index exists,
+     * then only reopens the reader when the index has changed.
+     */
+    private void refreshSearcher() {
+        if (generations != null) {
+            return;
+        }
+        try {
+            if (searcherHolder.get() == null && DirectoryReader.indexExists(dir)) {
+                SearcherHolder holder = newSearcherHolder();
+                if (!searcherHolder.compareAndSet(null, holder)) {
+                    holder.getSearcherManager().close();
                 }
             }
+            try (SearcherHolder.Lease lease = SearcherHolder.acquire(searcherHolder)) {
+                if (lease != null) {
+                    lease.getSearcherManager().maybeRefresh();
+                }
+            }
+        } catch (IOException | AlreadyClosedException e) {
+            log.warn("Autocomplete searcher refresh failed", e);
+        } catch (RuntimeException e) {
+            // never let the exception reach the executor, it would cancel the next refreshes
+            log.error("Autocomplete searcher refresh failed", e);
         }
     }
 
@@ -167,7 +574,8 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
     }
 
     public List<LookupResult> lookup(LocalSuggesterOptions options, boolean b) throws IOException {
-        return lookup(options.getSearcher(), options.getToken(), options.getCount(), allTermsRequired, options.isHighlight(), options.isFirstContextOnly());
+        LookupBudget budget = new LookupBudget(options.getTimeAllowed(), options.getMaxDocsScored());
+        return lookup(options.getSearcher(), options.getToken(), options.getCount(), allTermsRequired, options.isHighlight(), options.isFirstContextOnly(), budget);
     }
 
     /**
@@ -175,49 +583,100 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
      * arbitrary lucene query to be used to filter the result of the suggester
      */
     public List<LookupResult> lookup(IndexSearcher searcher, CharSequence key, int num, boolean allTermsRequired, boolean doHighlight, boolean firstContextOnly) throws IOException {
+        return lookup(searcher, key, num, allTermsRequired, doHighlight, firstContextOnly, LookupBudget.NONE);
+    }
 
-        SearcherManager mgr = null;
-        if (searcher == null) {
-            ensureOpen();
+    private List<LookupResult> lookup(IndexSearcher searcher, CharSequence key, int num, boolean allTermsRequired,
+                                      boolean doHighlight, boolean firstContextOnly, LookupBudget budget) throws IOException {
 
-            synchronized (searcherMgrLock) {
-                mgr = searcherMgr; // acquire & release on same SearcherManager, via local reference
-                searcher = mgr.acquire();
+        SearcherHolder.Lease lease = null;
+        SearcherView view;
+        if (searcher == null || generations != null) {
+            if (refreshInterval <= 0) {
+                ensureOpen();
             }
-        }
 
-        QueryInfos queryInfos = QueryInfos.parse(key, queryAnalyzer);
-
-        final Occur occur;
-        if (allTermsRequired) {
-            occur = Occur.MUST;
+            lease = SearcherHolder.acquire(searcherHolder);
+            if (lease == null) {
+                // no index yet
+                return Collections.emptyList();
+            }
+            view = (SearcherView) lease.getSearcher();
         } else {
-            occur = Occur.SHOULD;
+            // never mutate the shared (solr) searcher, work on our own view of its reader
+            view = getSearcherView(searcher);
         }
 
-        if (similarity != null) {
-            searcher.setSimilarity(similarity);
-        }
-        TopScoreDocCollector c = TopScoreDocCollector.create(num, 1);
+        try {
+            final Occur occur;
+            if (allTermsRequired) {
+                occur = Occur.MUST;
+            } else {
+                occur = Occur.SHOULD;
+            }
 
-        if (docCount == 0) {
-            docCount = searcher.collectionStatistics("id").docCount() / 1000;
-        }
+            long docCount = view.stats.getDocCount() / 1000;
 
-        try {
-            AutocompleteQueryBuilder builder = new AutocompleteQueryBuilder(nbWordsForPositionMatch, fields, coeff, docCount);
-            Query q = builder.getQuery(queryInfos, occur);
-            searcher.search(q, c);
-            TopDocs hits = c.topDocs();
+            CompiledQueryCache.CompiledQuery compiled = compile(key.toString(), occur, docCount);
+            QueryInfos queryInfos = compiled.queryInfos;
+            Query q = compiled.query;
+            if (budget.isLimited()) {
+                // fuzzy and prefix clauses expand the terms at rewrite time, which may already spend the budget
+                q = view.rewrite(q);
+                if (budget.checkTime()) {
+                    return new LookupResults(Collections.emptyList(), true);
+                }
+            }
 
-            return createResults(searcher, hits, doHighlight, queryInfos.getMatchedTokens(), queryInfos.getPrefixToken(), firstContextOnly);
+            String weightField = fields.get(FIELD_WEIGHT);
+            // stops the segments sorted by weight once the remaining documents cannot compete
+            float maxTextScore = sortByWeight ? compiled.maxTextScore : Float.POSITIVE_INFINITY;
+            TopSuggestions hits;
+            if (view.getExecutor() != null) {
+                // one collector per slice, merged by the manager
+                hits = view.search(q, budget.wrap(TopSuggestionsCollector.manager(num, weightTieBreak, weightField, compiled.blend, maxTextScore)));
+            } else {
+                TopSuggestionsCollector c = new TopSuggestionsCollector(TopSuggestions.forThread(num, weightTieBreak),
+                        weightField, compiled.blend, maxTextScore);
+                view.search(q, budget.wrap(c));
+                hits = c.getTop();
+            }
+            hits.sort();
+
+            List<LookupResult> results = createResults(view, hits, doHighlight, queryInfos.getMatchedTokens(), queryInfos.getPrefixToken(), firstContextOnly);
+            return budget.isLimited() ? new LookupResults(results, budget.isExceeded()) : results;
         } finally {
-            if (mgr != null) {
-                mgr.release(searcher);
+            if (lease != null) {
+                lease.close();
             }
         }
     }
 
+    private CompiledQueryCache.CompiledQuery compile(String text, Occur occur, long docCount) {
+        CompiledQueryCache.CompiledQuery compiled = queryCache.isEnabled() ? queryCache.get(text, occur, docCount) : null;
+        if (compiled == null) {
+            QueryInfos queryInfos = QueryInfos.parse(text, queryAnalyzer);
+            WeightBlend blend = weightBlend;
+            AutocompleteQueryBuilder builder = new AutocompleteQueryBuilder(nbWordsForPositionMatch, fields, blend, docCount);
+            Query query = builder.getQuery(queryInfos, occur);
+            float maxTextScore = sortByWeight
+                    ? TextScoreBound.of(query, TextScoreBound.maxTermScore(similarity))
+                    : Float.POSITIVE_INFINITY;
+            compiled = new CompiledQueryCache.CompiledQuery(queryInfos, query, blend, maxTextScore);
+            if (queryCache.isEnabled()) {
+                queryCache.put(text, occur, docCount, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * @return number of lookups which found their query in the cache of built queries
+     */
+    public long getQueryCacheHits() {
+        return queryCache.getHits();
+    }
+
     /**
      * Create the results based on the search hits.
      * Can be overridden by subclass to add particular behavior (e.g. weight transformation).
@@ -232,40 +691,40 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
                                                boolean doHighlight, Set<String> matchedTokens, String prefixToken,
                                                boolean firstContextOnly)
             throws IOException {
+        return createResults(searcher, TopSuggestions.of(hits), doHighlight, matchedTokens, prefixToken, firstContextOnly);
+    }
 
-        List<LookupResult> results = new ArrayList<>();
-        ScoreDoc fd;
-        BytesRef text;
-        BytesRef contexts = null;
-
-        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
-        LeafReaderContext readerContext = null;
-        int segment = -1;
-
-        for (int i = 0; i < hits.scoreDocs.length; i++) {
-            fd = hits.scoreDocs[i];
-
-            int seq = ReaderUtil.subIndex(fd.doc, leaves);
-            if (seq != segment) {
-                segment = seq;
-                readerContext = leaves.get(segment);
-            }
-
-            text = getText(readerContext, fd.doc, fields.get(FIELD_TEXT));
+    /**
+     * Same as above, from the sorted suggestions of a lookup.
+     * <p>
+     * The texts and contexts are read in one forward pass over the doc values of each segment, in doc id order,
+     * the results keeping the order of the suggestions. Display texts of hot suggestions are decoded once per
+     * segment while the budget of {@link SegmentTexts} allows, or read from the {@link SuggestionStore} of the segment when enabled. Contexts
+     * are shared by the results of the same suggestion while the budget of {@link SegmentContexts} allows, the
+     * others are copied in the blocks of the lookup.
+     */
+    protected List<LookupResult> createResults(IndexSearcher searcher, TopSuggestions hits,
+                                               boolean doHighlight, Set<String> matchedTokens, String prefixToken,
+                                               boolean firstContextOnly)
+            throws IOException {
 
-            if (!firstContextOnly || i == 0) {
-                contexts = getText(readerContext, fd.doc, fields.get(FIELD_CONTEXT));
-            }
+        int size = hits.size();
+        String[] texts = new String[size];
+        SegmentContexts.Context[] contexts = new SegmentContexts.Context[size];
+        readTexts(searcher.getIndexReader().leaves(), hits, firstContextOnly, texts, contexts);
 
-            float sc = hits.scoreDocs[i].score;
-            long score = (long) (sc * 1000000);
+        List<LookupResult> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // with firstContextOnly, all the results carry the contexts of the best one
+            SegmentContexts.Context context = firstContextOnly ? contexts[0] : contexts[i];
+            long score = (long) (hits.getScore(i) * 1000000);
 
             LookupResult result;
-            String t = text.utf8ToString();
+            String t = texts[i] == null ? "" : texts[i];
             if (doHighlight) {
-                result = new LookupResult(t, highlight(t, matchedTokens, prefixToken), score, null, contexts == null ? null : Set.of(contexts));
+                result = new LookupResult(t, highlight(t, matchedTokens, prefixToken), score, null, context);
             } else {
-                result = new LookupResult(t, score, null, contexts == null ? null : Set.of(contexts));
+                result = new LookupResult(t, score, null, context);
             }
             results.add(result);
         }
@@ -273,58 +732,138 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
         return results;
     }
 
-    BytesRef getText(LeafReaderContext readerContext, int docId, String fieldName) throws IOException {
-        if (fields.get(FIELD_TEXT) != null) {
-            BinaryDocValues textDV = readerContext.reader().getSortedDocValues(fieldName);
-            if (textDV != null) {
-                textDV.advance(docId - readerContext.docBase);
-                return textDV.binaryValue();
+    /**
+     * Read the display texts and the contexts of the suggestions, by doc id so that the doc values of each
+     * segment are opened once and only move forward
+     */
+    private void readTexts(List<LeafReaderContext> leaves, TopSuggestions hits, boolean firstContextOnly,
+                           String[] texts, SegmentContexts.Context[] contexts) throws IOException {
+        String textField = fields.get(FIELD_TEXT);
+        String contextField = fields.get(FIELD_CONTEXT);
+        if (textField == null) {
+            return;
+        }
+
+        boolean cacheContexts = contextCache.getMaxBytes() > 0;
+        boolean cacheTexts = textCache.getMaxBytes() > 0;
+        SegmentContexts.Copies copies = new SegmentContexts.Copies();
+        LeafReaderContext leaf = null;
+        SortedDocValues textValues = null;
+        SortedDocValues contextValues = null;
+        SegmentTexts segmentTexts = null;
+        SegmentContexts segmentContexts = null;
+        SuggestionStore.Cursor store = null;
+
+        for (int i : docOrder(hits)) {
+            int doc = hits.getDoc(i);
+            if (leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                store = suggestionStore ? SuggestionStore.cursor(leaf, textField, contextField) : null;
+                textValues = store == null ? leaf.reader().getSortedDocValues(textField) : null;
+                segmentTexts = textValues != null && cacheTexts ? textCache.get(leaf, textField) : null;
+                // the ords of the contexts key the cached ones, even when they are read from the store
+                contextValues = contextField != null && (store == null || cacheContexts)
+                        ? leaf.reader().getSortedDocValues(contextField)
+                        : null;
+                segmentContexts = contextValues != null && cacheContexts ? contextCache.get(leaf, contextField) : null;
+            }
+
+            int segmentDoc = doc - leaf.docBase;
+            if (store != null) {
+                texts[i] = store.text(segmentDoc);
+            } else if (textValues != null && textValues.advanceExact(segmentDoc)) {
+                texts[i] = segmentTexts != null
+                        ? segmentTexts.get(textValues)
+                        : textValues.binaryValue().utf8ToString();
+            }
+
+            if (contextField == null || (firstContextOnly && i != 0)) {
+                continue;
+            }
+            if (segmentContexts != null) {
+                if (contextValues.advanceExact(segmentDoc)) {
+                    SuggestionStore.Cursor from = store;
+                    SortedDocValues values = contextValues;
+                    contexts[i] = segmentContexts.get(values.ordValue(),
+                            from != null ? () -> from.context(segmentDoc) : values::binaryValue, copies);
+                }
+            } else if (store != null) {
+                BytesRef context = store.context(segmentDoc);
+                contexts[i] = context == null ? null : new SegmentContexts.Context(copies.copy(context));
+            } else if (contextValues != null && contextValues.advanceExact(segmentDoc)) {
+                // the bytes of the doc values are reused by the next document
+                contexts[i] = new SegmentContexts.Context(copies.copy(contextValues.binaryValue()));
             }
         }
-        return null;
     }
 
+    /**
+     * @return indexes of the suggestions, by ascending doc id
+     */
+    private static int[] docOrder(TopSuggestions hits) {
+        int[] order = new int[hits.size()];
+        for (int i = 0; i < order.length; i++) {
+            int doc = hits.getDoc(i);
+            int j = i;
+            for (; j > 0 && hits.getDoc(order[j - 1]) > doc; j--) {
+                order[j] = order[j - 1];
+            }
+            order[j] = i;
+        }
+        return order;
+    }
 
     /**
      * Override this method to customize the Object
      * representing a single highlighted suggestions; the
      * result is set on each {@link
      * LookupResult#highlightKey} member.
+     * <p>
+     * The query analyzer being the {@link FoldingLetterOrDigitTokenizer}, the tokens of the text are scanned in
+     * place with the same folding tables ({@link FoldingLetterOrDigitTokenizer.Scanner}) instead of running a
+     * token stream over each result: same tokens, same offsets, same fragments.
      */
     protected Object highlight(String text, Set<String> matchedTokens, String prefixToken) throws IOException {
-        try (TokenStream ts = queryAnalyzer.tokenStream("text", new StringReader(text))) {
-            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
-            OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
-            ts.reset();
-            StringBuilder sb = new StringBuilder();
-            int upto = 0;
-            while (ts.incrementToken()) {
-                String token = termAtt.toString();
-                int startOffset = offsetAtt.startOffset();
-                int endOffset = offsetAtt.endOffset();
-                if (upto < startOffset) {
-                    addNonMatch(sb, text.substring(upto, startOffset));
-                    upto = startOffset;
-                } else if (upto > startOffset) {
-                    continue;
-                }
+        FoldingLetterOrDigitTokenizer.Scanner tokens = new FoldingLetterOrDigitTokenizer.Scanner(text);
+        StringBuilder sb = new StringBuilder(text.length() + 8);
+        int upto = 0;
+        while (tokens.next()) {
+            int startOffset = tokens.start();
+            int endOffset = tokens.end();
+            if (upto < startOffset) {
+                addNonMatch(sb, text.substring(upto, startOffset));
+                upto = startOffset;
+            } else if (upto > startOffset) {
+                continue;
+            }
 
-                if (matchedTokens.contains(token)) {
-                    // Token matches.
-                    addWholeMatch(sb, text.substring(startOffset, endOffset), token);
-                    upto = endOffset;
-                } else if (prefixToken != null && token.startsWith(prefixToken)) {
-                    addPrefixMatch(sb, text.substring(startOffset, endOffset), token, prefixToken);
-                    upto = endOffset;
-                }
+            String token = matchedToken(tokens, matchedTokens);
+            if (token != null) {
+                // Token matches.
+                addWholeMatch(sb, text.substring(startOffset, endOffset), token);
+                upto = endOffset;
+            } else if (prefixToken != null && tokens.termStartsWith(prefixToken)) {
+                addPrefixMatch(sb, text.substring(startOffset, endOffset), tokens.termString(), prefixToken);
+                upto = endOffset;
             }
-            ts.end();
-            int endOffset = offsetAtt.endOffset();
-            if (upto < endOffset) {
-                addNonMatch(sb, text.substring(upto));
+        }
+        if (upto < text.length()) {
+            addNonMatch(sb, text.substring(upto));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the matched token equal to the current token, null if none; the few tokens of the query are compared
+     * to the folded chars rather than hashing a new string for each token of each result
+     */
+    private static String matchedToken(FoldingLetterOrDigitTokenizer.Scanner tokens, Set<String> matchedTokens) {
+        for (String matched : matchedTokens) {
+            if (tokens.termEquals(matched)) {
+                return matched;
             }
-            return sb.toString();
         }
+        return null;
     }
 
     /**
@@ -389,9 +928,21 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
 
     @Override
     public void close() throws IOException {
-        if (searcherMgr != null) {
-            searcherMgr.close();
-            searcherMgr = null;
+        if (refresher != null) {
+            ExecutorUtil.shutdownAndAwaitTermination(refresher);
+            refresher = null;
+        }
+        if (searchExecutor != null) {
+            ExecutorUtil.shutdownAndAwaitTermination(searchExecutor);
+            searchExecutor = null;
+        }
+        SearcherHolder.swap(searcherHolder, null);
+        searcherViews.clear();
+        coreView = null;
+        IOUtils.close(textCache, contextCache);
+        synchronized (this) {
+            IOUtils.close(commitReader);
+            commitReader = null;
         }
         if (dir != null) {
             dir.close();
@@ -400,77 +951,55 @@ public class AutocompleteSuggester extends Lookup implements Closeable {
 
     @Override
     public long ramBytesUsed() {
-        long mem = RamUsageEstimator.shallowSizeOf(this);
         try {
-            if (searcherMgr != null) {
-                SearcherManager mgr;
-                IndexSearcher searcher;
-                synchronized (searcherMgrLock) {
-                    mgr = searcherMgr; // acquire & release on same SearcherManager, via local reference
-                    searcher = mgr.acquire();
-                }
-                try {
-                    for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
-                        LeafReader reader = FilterLeafReader.unwrap(context.reader());
-                        if (reader instanceof SegmentReader) {
-                            mem += ((SegmentReader) context.reader()).ramBytesUsed();
-                        }
-                    }
-                } finally {
-                    mgr.release(searcher);
-                }
-            }
-            return mem;
-        } catch (IOException ioe) {
-            throw new AutocompleteLookupFactory.AutocompleteRuntimeException(ioe);
+            return RamUsageEstimator.shallowSizeOf(this) + getStats().getRamBytesUsed();
+        } catch (IOException e) {
+            throw new AutocompleteRuntimeException(e);
         }
     }
 
     @Override
     public Collection<Accountable> getChildResources() {
-        List<Accountable> resources = new ArrayList<>();
         try {
-            if (searcherMgr != null) {
-                SearcherManager mgr;
-                IndexSearcher searcher;
-                synchronized (searcherMgrLock) {
-                    mgr = searcherMgr; // acquire & release on same SearcherManager, via local reference
-                    searcher = mgr.acquire();
-                }
-                try {
-                    for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
-                        LeafReader reader = FilterLeafReader.unwrap(context.reader());
-                        if (reader instanceof SegmentReader) {
-                            resources.add(Accountables.namedAccountable("segment", (SegmentReader) reader));
-                        }
-                    }
-                } finally {
-                    mgr.release(searcher);
-                }
-            }
-            return Collections.unmodifiableList(resources);
-        } catch (IOException ioe) {
-            throw new AutocompleteLookupFactory.AutocompleteRuntimeException(ioe);
+            return getStats().getSegments();
+        } catch (IOException e) {
+            throw new AutocompleteRuntimeException(e);
         }
     }
 
     @Override
     public long getCount() throws IOException {
-        if (searcherMgr == null) {
-            return 0;
-        }
-        SearcherManager mgr;
-        IndexSearcher searcher;
-        synchronized (searcherMgrLock) {
-            mgr = searcherMgr; // acquire & release on same SearcherManager, via local reference
-            searcher = mgr.acquire();
+        return getStats().getNumDocs();
+    }
+
+    /**
+     * Results of a lookup run with a time or work budget
+     */
+    public static final class LookupResults extends ArrayList<LookupResult> {
+        private final boolean partial;
+
+        LookupResults(Collection<LookupResult> results, boolean partial) {
+            super(results);
+            this.partial = partial;
         }
-        try {
-            return searcher.getIndexReader().numDocs();
-        } finally {
-            mgr.release(searcher);
+
+        /**
+         * @return true if the budget was exceeded and only the top hits collected so far are returned
+         */
+        public boolean isPartial() {
+            return partial;
         }
     }
 
+    /**
+     * Suggester searcher of one reader generation, with its statistics
+     */
+    private static final class SearcherView extends IndexSearcher {
+        private final SearcherStats stats;
 
+        private SearcherView(IndexReader reader, SearcherStats stats, Executor executor) {
+            super(reader, executor);
+            this.stats = stats;
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.lucene.analysis.FoldingLetterOrDigitTokenizer;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.Query;
+
+import java.util.Objects;
+
+/**
+ * Bounded cache of the parsed and built (not rewritten) queries of a suggester, so that repeated
+ * keystrokes skip analysis and query construction. Lookups do not lock: the entries are kept in a
+ * concurrent Caffeine cache, evicted by frequency and recency.
+ * <p>
+ * Built queries depend on the field configuration of the suggester, fixed for its lifetime, and on
+ * the document count of the searcher which is part of the key. Texts are keyed by their folded
+ * tokens (see {@link #normalize(CharSequence)}), so "Apple", "apple" and "\u00c0PPLE" share an entry.
+ */
+final class CompiledQueryCache {
+
+    private final Cache<Key, CompiledQuery> cache;
+
+    CompiledQueryCache(int maxSize) {
+        this.cache = maxSize > 0
+                ? Caffeine.newBuilder().maximumSize(maxSize).executor(Runnable::run).recordStats().build()
+                : null;
+    }
+
+    boolean isEnabled() {
+        return cache != null;
+    }
+
+    CompiledQuery get(CharSequence text, Occur occur, long docCount) {
+        return cache.getIfPresent(new Key(normalize(text), occur, docCount));
+    }
+
+    void put(CharSequence text, Occur occur, long docCount, CompiledQuery compiled) {
+        cache.put(new Key(normalize(text), occur, docCount), compiled);
+    }
+
+    void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    long size() {
+        return cache == null ? 0 : cache.estimatedSize();
+    }
+
+    long getHits() {
+        return cache == null ? 0 : cache.stats().hitCount();
+    }
+
+    long getMisses() {
+        return cache == null ? 0 : cache.stats().missCount();
+    }
+
+    /**
+     * Key of a text: its tokens as folded by the query analyzer of the suggesters ({@link
+     * org.apache.lucene.analysis.NormalAnalyzer}), separated by a space, followed by how the text ends (on a token,
+     * on a space or on another char), i.e. everything {@link QueryInfos} is parsed from.
+     */
+    static String normalize(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length() + 1);
+        FoldingLetterOrDigitTokenizer.Scanner scanner = new FoldingLetterOrDigitTokenizer.Scanner(text);
+        int end = 0;
+        while (scanner.next()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(scanner.term(), 0, scanner.termLength());
+            end = scanner.end();
+        }
+        if (end < text.length()) {
+            sb.append(text.charAt(text.length() - 1) == ' ' ? ' ' : '\u0000');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Query infos and built query of a text, with how the weight is blended in and the bound of the score before
+     */
+    static final class CompiledQuery {
+        final QueryInfos queryInfos;
+        final Query query;
+        final WeightBlend blend;
+        final float maxTextScore;
+
+        CompiledQuery(QueryInfos queryInfos, Query query, WeightBlend blend, float maxTextScore) {
+            this.queryInfos = queryInfos;
+            this.query = query;
+            this.blend = blend;
+            this.maxTextScore = maxTextScore;
+        }
+    }
+
+    private static final class Key {
+        private final String text;
+        private final Occur occur;
+        private final long docCount;
+        private final int hash;
+
+        private Key(String text, Occur occur, long docCount) {
+            this.text = text;
+            this.occur = occur;
+            this.docCount = docCount;
+            this.hash = Objects.hash(text, occur, docCount);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return docCount == key.docCount && occur == key.occur && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
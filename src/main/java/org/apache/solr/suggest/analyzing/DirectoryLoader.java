@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FileSwitchDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens the directories read by a suggester with the configured implementation, and loads them
+ * before they serve lookups:
+ * <ul>
+ * <li>{@link Type#FS}: {@link FSDirectory#open(Path)}, the platform default</li>
+ * <li>{@link Type#MMAP}: {@link MMapDirectory}, the files with one of the preload extensions (by default the
+ * postings, where the ngram and payload fields are) are mapped with {@link MMapDirectory#setPreload(boolean)}
+ * and read once at open time, the others are left to the page cache</li>
+ * <li>{@link Type#NIO}: {@link NIOFSDirectory}</li>
+ * <li>{@link Type#HEAP}: a {@link ByteBuffersDirectory} copy of the index, for small dictionaries. The copy is a
+ * snapshot: only relevant for indexes which are not modified once opened, i.e. generations built aside</li>
+ * </ul>
+ * The bytes loaded and the time spent are logged and kept as the {@link Report} of the last opened directory.
+ */
+public final class DirectoryLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    /**
+     * Postings files: terms dictionary, terms index, doc ids, positions and payloads, and the compound
+     * files holding them in the small segments of a core index
+     */
+    public static final Set<String> DEFAULT_PRELOAD_EXTENSIONS = Set.of("tim", "tip", "doc", "pos", "pay", "cfs");
+
+    public static final DirectoryLoader DEFAULT = new DirectoryLoader(Type.FS, DEFAULT_PRELOAD_EXTENSIONS);
+
+    public enum Type {
+        FS, MMAP, NIO, HEAP;
+
+        public static Type fromString(String type) {
+            try {
+                return valueOf(type.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown directory type " + type + ", expected one of fs, mmap, nio, heap", e);
+            }
+        }
+    }
+
+    private final Type type;
+    private final Set<String> preloadExtensions;
+    private volatile Report lastReport;
+
+    public DirectoryLoader(Type type, Set<String> preloadExtensions) {
+        this.type = type;
+        this.preloadExtensions = preloadExtensions;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return report of the last directory opened, null if none
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    public Directory open(Path path) throws IOException {
+        long start = System.nanoTime();
+        Directory dir;
+        long bytes = 0;
+        int files = 0;
+        switch (type) {
+            case MMAP: {
+                MMapDirectory preloaded = new MMapDirectory(path);
+                preloaded.setPreload(true);
+                dir = new FileSwitchDirectory(preloadExtensions, preloaded, new MMapDirectory(path), true);
+                if (Files.isDirectory(path)) {
+                    for (String file : preloaded.listAll()) {
+                        if (preloadExtensions.contains(FileSwitchDirectory.getExtension(file))) {
+                            // mapping with preload reads the whole file, its pages stay in the page cache once unmapped
+                            try (IndexInput in = preloaded.openInput(file, IOContext.READ)) {
+                                bytes += in.length();
+                                files++;
+                            }
+                        }
+                    }
+                }
+                break;
+            }
+            case NIO:
+                dir = new NIOFSDirectory(path);
+                break;
+            case HEAP: {
+                ByteBuffersDirectory heap = new ByteBuffersDirectory();
+                if (Files.isDirectory(path)) {
+                    try (Directory source = FSDirectory.open(path)) {
+                        for (String file : source.listAll()) {
+                            // listAll also lists sub directories, which are not part of the index
+                            if (!IndexWriter.WRITE_LOCK_NAME.equals(file) && Files.isRegularFile(path.resolve(file))) {
+                                heap.copyFrom(source, file, file, IOContext.READONCE);
+                                bytes += heap.fileLength(file);
+                                files++;
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        IOUtils.closeWhileHandlingException(heap);
+                        throw e;
+                    }
+                }
+                dir = heap;
+                break;
+            }
+            default:
+                dir = FSDirectory.open(path);
+        }
+
+        Report report = new Report(path, type, files, bytes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        lastReport = report;
+        if (files > 0) {
+            log.info("{}", report);
+        }
+        return dir;
+    }
+
+    /**
+     * What was loaded when a directory was opened
+     */
+    public static final class Report {
+        private final Path path;
+        private final Type type;
+        private final int files;
+        private final long bytes;
+        private final long timeMs;
+
+        private Report(Path path, Type type, int files, long bytes, long timeMs) {
+            this.path = path;
+            this.type = type;
+            this.files = files;
+            this.bytes = bytes;
+            this.timeMs = timeMs;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return number of files preloaded or copied to the heap
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * @return number of bytes preloaded or copied to the heap
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getTimeMs() {
+            return timeMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Autocomplete directory " + path + " (" + type.name().toLowerCase(Locale.ROOT) + "): " + files
+                    + " files, " + bytes + " bytes loaded in " + timeMs + " ms";
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.util.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Generations of a suggester index built aside: each build writes a complete index into a new sibling
+ * directory {@code index.<generation>} of the root, which is published once committed by atomically
+ * replacing the {@value #POINTER} file naming the current and previous generations.
+ * <p>
+ * A published generation is never written again. The previous one is kept for rollback, older ones are
+ * deleted by {@link #purge()}. Rollbacks only go backward: the generation rolled back is never published again.
+ */
+public final class IndexGenerations {
+
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String PREFIX = "index.";
+    static final String POINTER = "generations.properties";
+
+    private static final String CURRENT = "current";
+    private static final String PREVIOUS = "previous";
+
+    /**
+     * No generation
+     */
+    public static final long NONE = -1L;
+
+    private final Path root;
+    private long current = NONE;
+    private long previous = NONE;
+
+    public IndexGenerations(Path root) throws IOException {
+        this.root = root;
+        Files.createDirectories(root);
+        Path pointer = root.resolve(POINTER);
+        if (Files.exists(pointer)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(pointer)) {
+                properties.load(in);
+            }
+            current = Long.parseLong(properties.getProperty(CURRENT, String.valueOf(NONE)));
+            previous = Long.parseLong(properties.getProperty(PREVIOUS, String.valueOf(NONE)));
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Path getPath(long generation) {
+        return root.resolve(PREFIX + generation);
+    }
+
+    /**
+     * @return the published generation, {@link #NONE} if nothing has been built yet
+     */
+    public synchronized long getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the generation published before the current one, {@link #NONE} if there is none
+     */
+    public synchronized long getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Create the empty directory of a new generation, to build and then {@link #publish} or {@link #discard}
+     */
+    public synchronized long create() throws IOException {
+        long generation = Math.max(0, Math.max(current, previous));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, PREFIX + "*")) {
+            for (Path path : stream) {
+                generation = Math.max(generation, parse(path));
+            }
+        }
+        generation++;
+        Files.createDirectory(getPath(generation));
+        return generation;
+    }
+
+    /**
+     * Make {@code generation} the current one, the current one becomes the previous one
+     */
+    public synchronized void publish(long generation) throws IOException {
+        write(generation, current);
+    }
+
+    /**
+     * Make the previous generation the current one again, without previous generation: a second rollback
+     * does nothing, the generation rolled back is deleted by the next {@link #purge()}.
+     *
+     * @return the new current generation, {@link #NONE} if there was no previous generation
+     */
+    public synchronized long rollback() throws IOException {
+        if (previous == NONE) {
+            return NONE;
+        }
+        write(previous, NONE);
+        return current;
+    }
+
+    /**
+     * Delete an unpublished generation (e.g. after a failed build)
+     */
+    public synchronized void discard(long generation) throws IOException {
+        if (generation == current || generation == previous) {
+            throw new IllegalArgumentException("Generation " + generation + " is published");
+        }
+        IOUtils.rm(getPath(generation));
+    }
+
+    /**
+     * Delete the generations other than the current and previous ones, including leftovers of
+     * interrupted builds. Failures are logged, the directory may still be open on some platforms.
+     */
+    public synchronized void purge() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, PREFIX + "*")) {
+            for (Path path : stream) {
+                long generation = parse(path);
+                if (generation != NONE && generation != current && generation != previous) {
+                    try {
+                        IOUtils.rm(path);
+                    } catch (IOException e) {
+                        log.warn("Could not delete the index generation {}", path, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(long newCurrent, long newPrevious) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(CURRENT, String.valueOf(newCurrent));
+        properties.setProperty(PREVIOUS, String.valueOf(newPrevious));
+        Path tmp = Files.createTempFile(root, POINTER, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, null);
+            }
+            // durable before and after the move, else a crash may leave an empty pointer behind
+            IOUtils.fsync(tmp, false);
+            // readers of the root, including a restarted core, see either the old or the new pointer
+            Files.move(tmp, root.resolve(POINTER), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            IOUtils.fsync(root, true);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        current = newCurrent;
+        previous = newPrevious;
+    }
+
+    private static long parse(Path path) {
+        try {
+            return Long.parseLong(path.getFileName().toString().substring(PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "IndexGenerations(" + root + ", current=" + current + ", previous=" + previous + ")";
+    }
+}
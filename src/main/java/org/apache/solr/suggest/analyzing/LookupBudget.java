@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.LeafCollector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time and work budget of one lookup.
+ * <p>
+ * Collectors wrapped by the budget stop collecting when a document arrives past the deadline or once the maximum
+ * number of scored documents has been collected: the current segment is terminated and the next ones are skipped,
+ * so that the top hits collected so far can be returned as partial results. A lookup matching exactly the maximum
+ * number of documents is complete.
+ */
+final class LookupBudget {
+
+    /**
+     * Number of collected documents between two checks of the clock
+     */
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    static final LookupBudget NONE = new LookupBudget(0, 0);
+
+    private final long deadline;
+    private final long maxDocsScored;
+    private final AtomicLong docsScored = new AtomicLong();
+    private volatile boolean exceeded;
+
+    /**
+     * @param timeAllowed   time allowed in milliseconds from now, &lt;= 0 for no limit
+     * @param maxDocsScored maximum number of documents scored, &lt;= 0 for no limit
+     */
+    LookupBudget(long timeAllowed, long maxDocsScored) {
+        this.deadline = timeAllowed > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeAllowed) : Long.MAX_VALUE;
+        this.maxDocsScored = maxDocsScored > 0 ? maxDocsScored : Long.MAX_VALUE;
+    }
+
+    boolean isLimited() {
+        return deadline != Long.MAX_VALUE || maxDocsScored != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the budget has been exceeded, results are then partial
+     */
+    boolean isExceeded() {
+        return exceeded;
+    }
+
+    /**
+     * Check the deadline out of the collection path (e.g. after rewriting the query)
+     */
+    boolean checkTime() {
+        if (!exceeded && System.nanoTime() - deadline > 0) {
+            exceeded = true;
+        }
+        return exceeded;
+    }
+
+    /**
+     * Count a document about to be collected
+     *
+     * @return false if the budget is spent and the document must not be collected
+     */
+    private boolean admit() {
+        long scored = docsScored.incrementAndGet();
+        if (scored > maxDocsScored || (scored % TIME_CHECK_INTERVAL == 0 && checkTime())) {
+            exceeded = true;
+        }
+        return !exceeded;
+    }
+
+    Collector wrap(Collector collector) {
+        if (!isLimited()) {
+            return collector;
+        }
+        return new FilterCollector(collector) {
+            @Override
+            public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+                if (exceeded || checkTime()) {
+                    // skip the segment
+                    throw new CollectionTerminatedException();
+                }
+                return new FilterLeafCollector(super.getLeafCollector(context)) {
+                    @Override
+                    public void collect(int doc) throws IOException {
+                        if (exceeded || !admit()) {
+                            throw new CollectionTerminatedException();
+                        }
+                        in.collect(doc);
+                    }
+                };
+            }
+        };
+    }
+
+    <C extends Collector, T> CollectorManager<Collector, T> wrap(CollectorManager<C, T> manager) {
+        return new CollectorManager<>() {
+            @Override
+            public Collector newCollector() throws IOException {
+                return new BudgetCollector<>(manager.newCollector());
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T reduce(Collection<Collector> collectors) throws IOException {
+                Collection<C> inner = new ArrayList<>(collectors.size());
+                for (Collector collector : collectors) {
+                    inner.add(((BudgetCollector<C>) collector).inner);
+                }
+                return manager.reduce(inner);
+            }
+        };
+    }
+
+    /**
+     * Wrapped collector keeping a typed reference to the collector of the manager
+     */
+    private final class BudgetCollector<C extends Collector> extends FilterCollector {
+        private final C inner;
+
+        private BudgetCollector(C inner) {
+            super(wrap(inner));
+            this.inner = inner;
+        }
+    }
+}
@@ -4,135 +4,183 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.util.ArrayUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
-public class QueryInfos {
+/**
+ * Tokens of a query, parsed once.
+ * <p>
+ * The terms are stored one after the other in a single char buffer, {@link #getTokenStart(int)} and
+ * {@link #getTokenEnd(int)} give the offsets of each term in {@link #getTokenChars()}. Parsing goes
+ * through per-thread growable buffers so that a keystroke allocates the final arrays and strings only.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class QueryInfos {
 
     private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-    public String prefixToken;
-    public Set<String> matchedTokens = new LinkedHashSet<>();
-    public List<String> matchedTokensConcat = new ArrayList<>();
+    private static final char[] NO_CHARS = new char[0];
+    private static final int[] NO_ENDS = new int[0];
 
-    public int nbLetters;
-    public int nbWords;
-    public boolean lastWordFinished;
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 
-    private QueryInfos() {
+    private final char[] tokenChars;
+    private final int[] tokenEnds;
+    private final String prefixToken;
+    private final Set<String> matchedTokens;
+    private final List<String> matchedTokensConcat;
+    private final int nbLetters;
+    private final boolean lastWordFinished;
+
+    private QueryInfos(char[] tokenChars, int[] tokenEnds, boolean lastIsPrefix, boolean lastWordFinished) {
+        this.tokenChars = tokenChars;
+        this.tokenEnds = tokenEnds;
+        this.lastWordFinished = lastWordFinished;
+        this.nbLetters = tokenEnds.length == 0 ? 0 : tokenEnds[tokenEnds.length - 1];
+
+        int nbMatched = lastIsPrefix ? tokenEnds.length - 1 : tokenEnds.length;
+        this.matchedTokens = buildMatched(nbMatched);
+        this.prefixToken = lastIsPrefix ? getToken(nbMatched) : null;
+        this.matchedTokensConcat = buildConcat(matchedTokens, prefixToken);
     }
 
-    public static QueryInfos parse(CharSequence text, Analyzer analyzer) {
-        QueryInfos queryInfos = new QueryInfos();
+    private String getToken(int i) {
+        return new String(tokenChars, getTokenStart(i), getTokenEnd(i) - getTokenStart(i));
+    }
 
-        queryInfos.setLastWordFinished(text.charAt(text.length() - 1) == ' ');
+    private Set<String> buildMatched(int nbMatched) {
+        // most keystrokes have zero or one finished word
+        if (nbMatched == 0) {
+            return Collections.emptySet();
+        } else if (nbMatched == 1) {
+            return Collections.singleton(getToken(0));
+        }
+        Set<String> matched = new LinkedHashSet<>();
+        for (int i = 0; i < nbMatched; i++) {
+            matched.add(getToken(i));
+        }
+        return Collections.unmodifiableSet(matched);
+    }
 
-        try (TokenStream ts = analyzer.tokenStream("", new StringReader(text.toString()))) {
+    public static QueryInfos parse(CharSequence text, Analyzer analyzer) {
+        boolean lastWordFinished = text.charAt(text.length() - 1) == ' ';
+        Scratch scratch = SCRATCH.get();
+        int nbTokens = 0;
+        int length = 0;
+        boolean lastIsPrefix = false;
+
+        // the analyzer reuses its own reader when given a string
+        try (TokenStream ts = analyzer.tokenStream("", text.toString())) {
             ts.reset();
 
             final CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
             final OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
 
-            String lastToken = null;
             int maxEndOffset = -1;
             while (ts.incrementToken()) {
-                if (lastToken != null) {
-                    queryInfos.addMatchedTokens(lastToken);
-                    queryInfos.addNbLetters(lastToken.length());
-                    queryInfos.addOneWord();
-                }
-                lastToken = termAtt.toString();
-                if (lastToken != null) {
-                    maxEndOffset = Math.max(maxEndOffset, offsetAtt.endOffset());
-                }
+                scratch.chars = ArrayUtil.grow(scratch.chars, length + termAtt.length());
+                System.arraycopy(termAtt.buffer(), 0, scratch.chars, length, termAtt.length());
+                length += termAtt.length();
+                scratch.ends = ArrayUtil.grow(scratch.ends, nbTokens + 1);
+                scratch.ends[nbTokens++] = length;
+                maxEndOffset = Math.max(maxEndOffset, offsetAtt.endOffset());
             }
             ts.end();
 
-            if (lastToken != null) {
-                if (maxEndOffset == offsetAtt.endOffset()) {
-                    queryInfos.setPrefixToken(lastToken);
-                } else {
-                    queryInfos.addMatchedTokens(lastToken);
-                }
-                queryInfos.addNbLetters(lastToken.length());
-                queryInfos.addOneWord();
-            }
+            // the last token is a prefix unless the query has trailing characters
+            lastIsPrefix = nbTokens > 0 && maxEndOffset == offsetAtt.endOffset();
         } catch (NullPointerException | IOException e) {
             log.warn("failed to parse : {} ", text);
         }
 
-        buildConcat(queryInfos);
-
-        return queryInfos;
+        char[] tokenChars = length == 0 ? NO_CHARS : Arrays.copyOf(scratch.chars, length);
+        int[] tokenEnds = nbTokens == 0 ? NO_ENDS : Arrays.copyOf(scratch.ends, nbTokens);
+        return new QueryInfos(tokenChars, tokenEnds, lastIsPrefix, lastWordFinished);
     }
 
-    private static void buildConcat(QueryInfos queryInfos) {
+    private static List<String> buildConcat(Set<String> matchedTokens, String prefixToken) {
+        boolean withPrefix = prefixToken != null && prefixToken.trim().length() > 0;
+        int size = Math.max(matchedTokens.size() - 1, 0) + (withPrefix ? 1 : 0);
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+
+        List<String> concat = new ArrayList<>(size);
         String lastWord = null;
-        for (String w : queryInfos.getMatchedTokens()) {
-            if(lastWord != null) {
-                queryInfos.addMatchedTokensConcat(lastWord+ w);
+        for (String w : matchedTokens) {
+            if (lastWord != null) {
+                concat.add(lastWord + w);
             }
             lastWord = w;
         }
 
-        if(queryInfos.getPrefixToken() != null && queryInfos.getPrefixToken().trim().length() > 0) {
-            queryInfos.addMatchedTokensConcat(lastWord+ queryInfos.getPrefixToken());
+        if (withPrefix) {
+            concat.add(lastWord + prefixToken);
         }
+        return size == 1 ? Collections.singletonList(concat.get(0)) : Collections.unmodifiableList(concat);
     }
 
-    public String getPrefixToken() {
-        return prefixToken;
+    /**
+     * @return the terms of the query, one after the other
+     */
+    public char[] getTokenChars() {
+        return tokenChars;
     }
 
-    public void setPrefixToken(String prefixToken) {
-        this.prefixToken = prefixToken;
+    /**
+     * @return number of terms, prefix included
+     */
+    public int getTokenCount() {
+        return tokenEnds.length;
     }
 
-    public Set<String> getMatchedTokens() {
-        return matchedTokens;
+    public int getTokenStart(int i) {
+        return i == 0 ? 0 : tokenEnds[i - 1];
     }
 
-    public void addMatchedTokens(String matchedToken) {
-        this.matchedTokens.add(matchedToken);
+    public int getTokenEnd(int i) {
+        return tokenEnds[i];
     }
 
-    public List<String> getMatchedTokensConcat() {
-        return matchedTokensConcat;
+    public String getPrefixToken() {
+        return prefixToken;
     }
 
-    public void addMatchedTokensConcat(String m) {
-        this.matchedTokensConcat.add(m);
+    public Set<String> getMatchedTokens() {
+        return matchedTokens;
     }
 
-    public int getNbLetters() {
-        return nbLetters;
+    public List<String> getMatchedTokensConcat() {
+        return matchedTokensConcat;
     }
 
-    public void addNbLetters(int nbLetter) {
-        this.nbLetters += nbLetter;
+    public int getNbLetters() {
+        return nbLetters;
     }
 
     public int getNbWords() {
-        return nbWords;
-    }
-
-    public void addOneWord() {
-        this.nbWords += 1;
+        return tokenEnds.length;
     }
 
     public boolean isLastWordFinished() {
         return lastWordFinished;
     }
 
-    public void setLastWordFinished(boolean lastWordFinished) {
-        this.lastWordFinished = lastWordFinished;
+    /**
+     * Growable buffers of a parsing thread
+     */
+    private static final class Scratch {
+        private char[] chars = new char[64];
+        private int[] ends = new int[8];
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.util.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reference counted holder of a {@link SearcherManager}, published through an {@link AtomicReference}
+ * so that readers never take a lock.
+ * <p>
+ * The holder owns one reference while it is the current one. Each {@link #acquire} takes another
+ * reference which is given back by {@link Lease#close()}. Once retired (replaced or closed), the
+ * {@link SearcherManager} is closed when the last in-flight lease is released, along with the resource
+ * it reads from when the holder owns it (e.g. the directory of an index generation).
+ */
+final class SearcherHolder {
+
+    private final SearcherManager searcherMgr;
+    private final long generation;
+    private final Closeable owned;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    SearcherHolder(SearcherManager searcherMgr, long generation) {
+        this(searcherMgr, generation, null);
+    }
+
+    /**
+     * @param owned closed after the {@link SearcherManager}, may be null
+     */
+    SearcherHolder(SearcherManager searcherMgr, long generation, Closeable owned) {
+        this.searcherMgr = searcherMgr;
+        this.generation = generation;
+        this.owned = owned;
+    }
+
+    SearcherManager getSearcherManager() {
+        return searcherMgr;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    private boolean tryIncRef() {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    private void decRef() throws IOException {
+        if (refCount.decrementAndGet() == 0) {
+            IOUtils.close(searcherMgr, owned);
+        }
+    }
+
+    /**
+     * Give back the reference of the holder, e.g. when it could not be published
+     */
+    void retire() throws IOException {
+        decRef();
+    }
+
+    /**
+     * Acquire a searcher on the current holder of {@code ref}, or null if there is none.
+     * Retries on the new holder when the one read has been retired meanwhile.
+     */
+    static Lease acquire(AtomicReference<SearcherHolder> ref) throws IOException {
+        while (true) {
+            SearcherHolder holder = ref.get();
+            if (holder == null) {
+                return null;
+            }
+            if (holder.tryIncRef()) {
+                try {
+                    return new Lease(holder, holder.searcherMgr.acquire());
+                } catch (IOException | RuntimeException e) {
+                    holder.decRef();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Publish {@code holder} (may be null) and retire the previous one.
+     */
+    static void swap(AtomicReference<SearcherHolder> ref, SearcherHolder holder) throws IOException {
+        SearcherHolder old = ref.getAndSet(holder);
+        if (old != null) {
+            old.decRef();
+        }
+    }
+
+    /**
+     * A searcher acquired on a holder, to release with try-with-resources.
+     */
+    static final class Lease implements Closeable {
+        private final SearcherHolder holder;
+        private final IndexSearcher searcher;
+
+        private Lease(SearcherHolder holder, IndexSearcher searcher) {
+            this.holder = holder;
+            this.searcher = searcher;
+        }
+
+        IndexSearcher getSearcher() {
+            return searcher;
+        }
+
+        SearcherManager getSearcherManager() {
+            return holder.searcherMgr;
+        }
+
+        long getGeneration() {
+            return holder.generation;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                holder.searcherMgr.release(searcher);
+            } finally {
+                holder.decRef();
+            }
+        }
+    }
+}
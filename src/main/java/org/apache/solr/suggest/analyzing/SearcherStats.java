@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of one searcher generation, computed once per reader when its searcher is opened
+ * and read by query building, rewrites and metrics instead of walking the index on each call.
+ * <p>
+ * The term statistics of a segment are computed the first time the segment is seen and kept until it is closed
+ * (see {@link SegmentCache}): a reopened reader only walks the term dictionaries of its new segments.
+ */
+public final class SearcherStats {
+
+    /**
+     * Field used to count the suggestions
+     */
+    public static final String ID_FIELD = "id";
+
+    /**
+     * Number of buckets of the docFreq histograms: bucket i counts the terms with a docFreq in [2^i, 2^(i+1))
+     */
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    private static final SegmentCache<SegmentTerms> TERMS = new SegmentCache<>(SegmentTerms::load);
+
+    static final SearcherStats EMPTY = new SearcherStats(0, 0, 0, Collections.emptyMap(), Collections.emptyMap(),
+            Collections.emptyList(), 0);
+
+    private final long docCount;
+    private final int numDocs;
+    private final int maxDoc;
+    private final Map<String, Long> termCounts;
+    private final Map<String, long[]> docFreqHistograms;
+    private final List<Accountable> segments;
+    private final long ramBytesUsed;
+
+    private SearcherStats(long docCount, int numDocs, int maxDoc, Map<String, Long> termCounts,
+                          Map<String, long[]> docFreqHistograms, List<Accountable> segments, long ramBytesUsed) {
+        this.docCount = docCount;
+        this.numDocs = numDocs;
+        this.maxDoc = maxDoc;
+        this.termCounts = termCounts;
+        this.docFreqHistograms = docFreqHistograms;
+        this.segments = segments;
+        this.ramBytesUsed = ramBytesUsed;
+    }
+
+    /**
+     * Compute the statistics of a reader.
+     *
+     * @param reader the reader of the new searcher
+     * @param fields the indexed fields to collect term statistics for
+     */
+    public static SearcherStats compute(IndexReader reader, Collection<String> fields) throws IOException {
+        Map<String, Long> termCounts = new HashMap<>();
+        Map<String, long[]> histograms = new HashMap<>();
+        List<Accountable> segments = new ArrayList<>();
+        long ram = 0;
+
+        for (LeafReaderContext context : reader.leaves()) {
+            LeafReader leaf = FilterLeafReader.unwrap(context.reader());
+            if (leaf instanceof SegmentReader) {
+                SegmentReader segment = (SegmentReader) leaf;
+                long segmentRam = segment.ramBytesUsed();
+                ram += segmentRam;
+                segments.add(Accountables.namedAccountable("segment " + segment.getSegmentName(), segmentRam));
+            }
+
+            for (String field : fields) {
+                SegmentTerms terms = TERMS.get(context, field);
+                if (terms == SegmentTerms.ABSENT) {
+                    continue;
+                }
+                // per segment counts: a term present in several segments is counted once per segment
+                termCounts.merge(field, terms.termCount, Long::sum);
+                long[] histogram = histograms.computeIfAbsent(field, f -> new long[HISTOGRAM_BUCKETS]);
+                for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                    histogram[i] += terms.histogram[i];
+                }
+            }
+        }
+
+        return new SearcherStats(reader.getDocCount(ID_FIELD), reader.numDocs(), reader.maxDoc(),
+                Collections.unmodifiableMap(termCounts), Collections.unmodifiableMap(histograms),
+                Collections.unmodifiableList(segments), ram);
+    }
+
+    /**
+     * @return number of documents having an {@link #ID_FIELD}
+     */
+    public long getDocCount() {
+        return docCount;
+    }
+
+    public int getNumDocs() {
+        return numDocs;
+    }
+
+    public int getMaxDoc() {
+        return maxDoc;
+    }
+
+    /**
+     * @return number of terms by field, summed over segments
+     */
+    public Map<String, Long> getTermCounts() {
+        return termCounts;
+    }
+
+    /**
+     * @return docFreq histogram by field, see {@link #HISTOGRAM_BUCKETS}
+     */
+    public Map<String, long[]> getDocFreqHistograms() {
+        return docFreqHistograms;
+    }
+
+    /**
+     * @return RAM used by each segment
+     */
+    public List<Accountable> getSegments() {
+        return segments;
+    }
+
+    public long getRamBytesUsed() {
+        return ramBytesUsed;
+    }
+
+    @Override
+    public String toString() {
+        return "SearcherStats(docCount=" + docCount +
+                ", numDocs=" + numDocs +
+                ", maxDoc=" + maxDoc +
+                ", termCounts=" + termCounts +
+                ", segments=" + segments.size() +
+                ", ramBytesUsed=" + ramBytesUsed +
+                ")";
+    }
+
+    /**
+     * Term statistics of one field of a segment
+     */
+    private static final class SegmentTerms {
+        /**
+         * Field not indexed in the segment
+         */
+        private static final SegmentTerms ABSENT = new SegmentTerms(0, new long[HISTOGRAM_BUCKETS]);
+
+        private final long termCount;
+        private final long[] histogram;
+
+        private SegmentTerms(long termCount, long[] histogram) {
+            this.termCount = termCount;
+            this.histogram = histogram;
+        }
+
+        private static SegmentTerms load(LeafReaderContext context, String field) throws IOException {
+            Terms terms = context.reader().terms(field);
+            if (terms == null) {
+                return ABSENT;
+            }
+            long[] histogram = new long[HISTOGRAM_BUCKETS];
+            TermsEnum termsEnum = terms.iterator();
+            while (termsEnum.next() != null) {
+                histogram[31 - Integer.numberOfLeadingZeros(termsEnum.docFreq())]++;
+            }
+            return new SegmentTerms(Math.max(terms.size(), 0L), histogram);
+        }
+    }
+}
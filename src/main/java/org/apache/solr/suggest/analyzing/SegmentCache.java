@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Values computed once per segment and field, kept until the segment is closed.
+ * <p>
+ * Entries are keyed by the core of the segment, or by the reader itself once the doc values of the field have
+ * been updated in place, like the query cache does. Values which are {@link Closeable} are closed with the segment.
+ */
+final class SegmentCache<T> {
+
+    interface Loader<T> {
+        T load(LeafReaderContext context, String field) throws IOException;
+    }
+
+    private final Map<IndexReader.CacheKey, Map<String, T>> cache = new ConcurrentHashMap<>();
+    private final Loader<T> loader;
+    private final T uncacheable;
+
+    SegmentCache(Loader<T> loader) {
+        this(loader, null);
+    }
+
+    /**
+     * @param uncacheable value of the segments which cannot be cached, null to load their value on each call:
+     *                    values which hold resources must not be loaded when they cannot be released
+     */
+    SegmentCache(Loader<T> loader, T uncacheable) {
+        this.loader = loader;
+        this.uncacheable = uncacheable;
+    }
+
+    T get(LeafReaderContext context, String field) throws IOException {
+        IndexReader.CacheHelper helper = DocValues.isCacheable(context, field)
+                ? context.reader().getCoreCacheHelper()
+                : context.reader().getReaderCacheHelper();
+        if (helper == null) {
+            return uncacheable != null ? uncacheable : loader.load(context, field);
+        }
+
+        IndexReader.CacheKey key = helper.getKey();
+        Map<String, T> byField = cache.get(key);
+        if (byField == null) {
+            byField = new ConcurrentHashMap<>();
+            Map<String, T> previous = cache.putIfAbsent(key, byField);
+            if (previous != null) {
+                byField = previous;
+            } else {
+                helper.addClosedListener(this::release);
+            }
+        }
+
+        T value = byField.get(field);
+        if (value == null) {
+            // concurrent loads of the same segment are identical, the first one wins
+            value = loader.load(context, field);
+            T previous = byField.putIfAbsent(field, value);
+            if (previous != null) {
+                value = previous;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Forget the value of a segment if it is still {@code value}, so that the next call loads it again
+     */
+    void remove(LeafReaderContext context, String field, T value) {
+        IndexReader.CacheHelper helper = DocValues.isCacheable(context, field)
+                ? context.reader().getCoreCacheHelper()
+                : context.reader().getReaderCacheHelper();
+        Map<String, T> byField = helper == null ? null : cache.get(helper.getKey());
+        if (byField != null) {
+            byField.remove(field, value);
+        }
+    }
+
+    private void release(IndexReader.CacheKey key) throws IOException {
+        Map<String, T> byField = cache.remove(key);
+        if (byField != null) {
+            List<Closeable> closeables = new ArrayList<>();
+            for (T value : byField.values()) {
+                if (value instanceof Closeable) {
+                    closeables.add((Closeable) value);
+                }
+            }
+            IOUtils.close(closeables);
+        }
+    }
+
+    /**
+     * Release the values of all the segments, as if they were closed: the next calls load them again
+     */
+    void clear() throws IOException {
+        for (IndexReader.CacheKey key : new ArrayList<>(cache.keySet())) {
+            release(key);
+        }
+    }
+
+    /**
+     * @return number of segments with cached values
+     */
+    int size() {
+        return cache.size();
+    }
+}
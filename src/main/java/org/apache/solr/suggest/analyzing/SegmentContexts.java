@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contexts of a segment by ord of the sorted doc values of the context field, kept until the segment is closed
+ * (see {@link SegmentCache}): all the results of a suggestion share the same {@link Context}, which holds the
+ * object parsed from it by the first response which needed it ({@link Context#getParsed()}) and, in its own
+ * slot, the validated json copied as is by the json responses ({@link Context#getRawJson()}), so that requests
+ * with and without raw json contexts do not replace each other's value.
+ * <p>
+ * Memory is bounded: a context is only cached while the cached contexts of all the segments of the suggester
+ * ({@link Cache}) take less than its budget, the hottest suggestions being the first ones returned. Each context
+ * counts its bytes {@link #HEAP_PER_BYTE} times, for the object parsed from it and its raw json chars. The other
+ * contexts are copied in the blocks of the lookup ({@link Copies}).
+ */
+public final class SegmentContexts implements Closeable {
+
+    /**
+     * Default budget of the cached contexts, in bytes
+     */
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    static final int HEAP_PER_BYTE = 6;
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /**
+     * Contexts of the segments which cannot be cached, only copied
+     */
+    private static final SegmentContexts UNCACHEABLE = new SegmentContexts(null);
+
+    /**
+     * Cache of the suggester, null when the contexts are not cached
+     */
+    private final Cache cache;
+    private final Map<Integer, Context> contexts = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private SegmentContexts(Cache cache) {
+        this.cache = cache;
+    }
+
+    interface Loader {
+        /**
+         * @return the context, null if the document has none
+         */
+        BytesRef load() throws IOException;
+    }
+
+    /**
+     * @param ord    ord of the context in the segment
+     * @param loader reads the context when it is not cached, its bytes may be reused afterwards
+     * @param copies blocks of the lookup, which hold the contexts not cached
+     * @return the cached context of the ord, or a copy of the loaded one once the budget is spent
+     */
+    Context get(int ord, Loader loader, Copies copies) throws IOException {
+        Context cached = contexts.get(ord);
+        if (cached != null) {
+            return cached;
+        }
+        BytesRef loaded = loader.load();
+        if (loaded == null) {
+            return null;
+        }
+        long maxBytes = cache == null ? 0 : cache.maxBytes;
+        if (maxBytes <= 0) {
+            return new Context(copies.copy(loaded));
+        }
+        long size = ENTRY_OVERHEAD + (long) HEAP_PER_BYTE * loaded.length;
+        if (cache.totalBytes.addAndGet(size) > maxBytes) {
+            cache.totalBytes.addAndGet(-size);
+            return new Context(copies.copy(loaded));
+        }
+        Context context = new Context(BytesRef.deepCopyOf(loaded));
+        Context previous = contexts.putIfAbsent(ord, context);
+        if (previous != null) {
+            cache.totalBytes.addAndGet(-size);
+            return previous;
+        }
+        bytes.addAndGet(size);
+        return context;
+    }
+
+    int size() {
+        return contexts.size();
+    }
+
+    /**
+     * Give the bytes of the segment back to the budget once it is closed
+     */
+    @Override
+    public void close() {
+        contexts.clear();
+        if (cache != null) {
+            cache.totalBytes.addAndGet(-bytes.getAndSet(0));
+        }
+    }
+
+    /**
+     * Contexts cached by the segments for one suggester, within its own budget
+     */
+    static final class Cache implements Closeable {
+        private final SegmentCache<SegmentContexts> segments = new SegmentCache<>((context, field) -> new SegmentContexts(this), UNCACHEABLE);
+        private final AtomicLong totalBytes = new AtomicLong();
+        private volatile long maxBytes;
+
+        /**
+         * @param maxBytes budget of the contexts cached by all segments, 0 to copy the context of each result
+         */
+        Cache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        long getMaxBytes() {
+            return maxBytes;
+        }
+
+        void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        SegmentContexts get(LeafReaderContext context, String field) throws IOException {
+            return segments.get(context, field);
+        }
+
+        /**
+         * @return bytes of the contexts cached by all segments
+         */
+        long totalBytes() {
+            return totalBytes.get();
+        }
+
+        /**
+         * Release the contexts of all the segments
+         */
+        @Override
+        public void close() throws IOException {
+            segments.clear();
+        }
+    }
+
+    /**
+     * Contexts of one lookup which are not cached, copied one after the other in shared blocks instead of an
+     * array per context. The blocks are never reused: they live as long as the results which hold them.
+     */
+    static final class Copies {
+        static final int BLOCK_SIZE = 4096;
+
+        private byte[] block = BytesRef.EMPTY_BYTES;
+        private int upto;
+
+        /**
+         * @return a copy of {@code context}, whose bytes may be reused afterwards
+         */
+        BytesRef copy(BytesRef context) {
+            if (context.length > BLOCK_SIZE / 4) {
+                // would waste the rest of a block
+                return BytesRef.deepCopyOf(context);
+            }
+            if (upto + context.length > block.length) {
+                block = new byte[BLOCK_SIZE];
+                upto = 0;
+            }
+            System.arraycopy(context.bytes, context.offset, block, upto, context.length);
+            BytesRef copy = new BytesRef(block, upto, context.length);
+            upto += context.length;
+            return copy;
+        }
+    }
+
+    /**
+     * Context of a result, set as its {@link org.apache.lucene.search.suggest.Lookup.LookupResult#contexts}:
+     * the bytes of the context, with the object parsed from them and their validated json, kept by the
+     * responses. The results of a suggestion whose context is cached share the same instance, the other ones
+     * have their own, dropped with the response.
+     */
+    public static final class Context extends AbstractSet<BytesRef> {
+        private final BytesRef bytes;
+        private volatile Object parsed;
+        private volatile Object rawJson;
+
+        Context(BytesRef bytes) {
+            this.bytes = bytes;
+        }
+
+        public BytesRef getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the object parsed from the context, null if it was not parsed yet
+         */
+        public Object getParsed() {
+            return parsed;
+        }
+
+        /**
+         * Keep the object parsed from the context. The object is shared by the next responses: it must not be
+         * modified. Concurrent responses may parse the same context twice, the last one is kept.
+         */
+        public void setParsed(Object parsed) {
+            this.parsed = parsed;
+        }
+
+        /**
+         * @return the validated json of the context, null if it was not validated yet
+         */
+        public Object getRawJson() {
+            return rawJson;
+        }
+
+        /**
+         * Keep the validated json of the context, next to the parsed object (see {@link #setParsed(Object)}).
+         * The value is shared by the next responses.
+         */
+        public void setRawJson(Object rawJson) {
+            this.rawJson = rawJson;
+        }
+
+        @Override
+        public Iterator<BytesRef> iterator() {
+            return Collections.singleton(bytes).iterator();
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Display texts of a segment, decoded from the sorted doc values of the text field the first time a document
+ * holding them is returned, and kept by ord until the segment is closed (see {@link SegmentCache}).
+ * <p>
+ * Memory is bounded like {@link SegmentContexts}: a text is only kept while the kept texts of all the segments
+ * of the suggester ({@link Cache}) take less than its budget, the hottest suggestions being the first ones
+ * returned. The other texts are decoded on each lookup.
+ */
+final class SegmentTexts implements Closeable {
+
+    /**
+     * Default budget of the kept texts, in bytes
+     */
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * Texts of the segments which cannot be cached, decoded on each lookup
+     */
+    private static final SegmentTexts UNCACHEABLE = new SegmentTexts(null);
+
+    /**
+     * Cache of the suggester, null when the texts are not kept
+     */
+    private final Cache cache;
+    private final Map<Integer, String> texts = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private SegmentTexts(Cache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @param values doc values of the field positioned on a document with a value
+     * @return text of the current document of {@code values}
+     */
+    String get(SortedDocValues values) throws IOException {
+        long maxBytes = cache == null ? 0 : cache.maxBytes;
+        if (maxBytes <= 0) {
+            return values.binaryValue().utf8ToString();
+        }
+        int ord = values.ordValue();
+        String text = texts.get(ord);
+        if (text != null) {
+            return text;
+        }
+        text = values.binaryValue().utf8ToString();
+        long size = ENTRY_OVERHEAD + (long) Character.BYTES * text.length();
+        if (cache.totalBytes.addAndGet(size) > maxBytes) {
+            cache.totalBytes.addAndGet(-size);
+            return text;
+        }
+        // a text decoded twice by concurrent lookups is the same, the first one is kept
+        String previous = texts.putIfAbsent(ord, text);
+        if (previous != null) {
+            cache.totalBytes.addAndGet(-size);
+            return previous;
+        }
+        bytes.addAndGet(size);
+        return text;
+    }
+
+    /**
+     * Give the bytes of the segment back to the budget once it is closed
+     */
+    @Override
+    public void close() {
+        texts.clear();
+        if (cache != null) {
+            cache.totalBytes.addAndGet(-bytes.getAndSet(0));
+        }
+    }
+
+    /**
+     * Texts kept by the segments for one suggester, within its own budget
+     */
+    static final class Cache implements Closeable {
+        private final SegmentCache<SegmentTexts> segments = new SegmentCache<>((context, field) -> new SegmentTexts(this), UNCACHEABLE);
+        private final AtomicLong totalBytes = new AtomicLong();
+        private volatile long maxBytes;
+
+        /**
+         * @param maxBytes budget of the texts kept by all segments, 0 to decode the text of each result
+         */
+        Cache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        long getMaxBytes() {
+            return maxBytes;
+        }
+
+        void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        SegmentTexts get(LeafReaderContext context, String field) throws IOException {
+            return segments.get(context, field);
+        }
+
+        /**
+         * @return number of segments with kept texts
+         */
+        int size() {
+            return segments.size();
+        }
+
+        /**
+         * @return bytes of the texts kept by all segments
+         */
+        long totalBytes() {
+            return totalBytes.get();
+        }
+
+        /**
+         * Release the texts of all the segments
+         */
+        @Override
+        public void close() throws IOException {
+            segments.clear();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+
+import java.io.IOException;
+
+/**
+ * Weights of the documents of a segment, read once from the float doc values of the weight field (missing
+ * weights are 0) and kept until the segment is closed (see {@link SegmentCache}).
+ */
+final class SegmentWeights {
+
+    private static final SegmentCache<SegmentWeights> CACHE = new SegmentCache<>(SegmentWeights::load);
+
+    private final float[] weights;
+    private final float minWeight;
+    private final float maxWeight;
+
+    private SegmentWeights(float[] weights, float minWeight, float maxWeight) {
+        this.weights = weights;
+        this.minWeight = minWeight;
+        this.maxWeight = maxWeight;
+    }
+
+    static SegmentWeights get(LeafReaderContext context, String field) throws IOException {
+        return CACHE.get(context, field);
+    }
+
+    private static SegmentWeights load(LeafReaderContext context, String field) throws IOException {
+        float[] weights = new float[context.reader().maxDoc()];
+        NumericDocValues values = DocValues.getNumeric(context.reader(), field);
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        int count = 0;
+        for (int doc = values.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = values.nextDoc()) {
+            float weight = Float.intBitsToFloat((int) values.longValue());
+            weights[doc] = weight;
+            min = Math.min(min, weight);
+            max = Math.max(max, weight);
+            count++;
+        }
+        if (count < weights.length || count == 0) {
+            // documents without weight count as 0
+            min = Math.min(min, 0f);
+            max = Math.max(max, 0f);
+        }
+        return new SegmentWeights(weights, min, max);
+    }
+
+    static int size() {
+        return CACHE.size();
+    }
+
+    float get(int doc) {
+        return weights[doc];
+    }
+
+    float getMinWeight() {
+        return minWeight;
+    }
+
+    float getMaxWeight() {
+        return maxWeight;
+    }
+}
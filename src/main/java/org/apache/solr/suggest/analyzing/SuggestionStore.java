@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.StringHelper;
+import org.apache.lucene.util.packed.DirectReader;
+import org.apache.lucene.util.packed.DirectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Display texts and contexts of the documents of a segment, stored aside in a file of the segment directory
+ * and read in place (memory mapped by {@link org.apache.lucene.store.MMapDirectory}), instead of looking them
+ * up in the terms dictionaries of the sorted doc values.
+ * <p>
+ * The file holds one record per document, in doc id order: the UTF-8 bytes of the text then of the context,
+ * each one prefixed by its length plus one (0 when the document has no value), followed by the packed start
+ * offsets of the records. Only the returned strings are copied onto the heap, contexts are read in a buffer of
+ * the cursor.
+ * <p>
+ * Files are named after the segment name and id and the text and context fields (two suggesters of the same index
+ * may display other fields), they are ignored by the {@link org.apache.lucene.index.IndexWriter} of the directory.
+ * They are written after a commit, by {@link #writeMissing(DirectoryReader, String, String)}, which also deletes
+ * the files whose segment is no longer in the latest commit. Segments without a file (not committed yet, or
+ * written by an older version) are read from the doc values, until a file is written for them.
+ */
+final class SuggestionStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    static final String PREFIX = "suggestions";
+    static final String EXTENSION = ".sgs";
+
+    private static final String CODEC = "AutocompleteSuggestionStore";
+    /**
+     * Version 1: field names after the header
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Number of stores written by this JVM: a segment found without store is looked for again once it changed
+     */
+    private static final AtomicLong WRITTEN = new AtomicLong();
+
+    private static final SuggestionStore UNCACHEABLE = new SuggestionStore(null, null, 0, 0, Long.MIN_VALUE);
+
+    /**
+     * Stores opened by segment and fields (see {@link #cacheKey(String, String)}), a store without data for the
+     * segments without one, {@link #UNCACHEABLE} for those which cannot be cached
+     */
+    private static final SegmentCache<SuggestionStore> CACHE = new SegmentCache<>(SuggestionStore::open, UNCACHEABLE);
+
+    private final IndexInput data;
+    private final LongValues offsets;
+    private final long dataStart;
+    private final int maxDoc;
+    /**
+     * Value of {@link #WRITTEN} when the store was found missing
+     */
+    private final long missingAt;
+
+    private SuggestionStore(IndexInput data, LongValues offsets, long dataStart, int maxDoc, long missingAt) {
+        this.data = data;
+        this.offsets = offsets;
+        this.dataStart = dataStart;
+        this.maxDoc = maxDoc;
+        this.missingAt = missingAt;
+    }
+
+    private static SuggestionStore missing() {
+        return new SuggestionStore(null, null, 0, 0, WRITTEN.get());
+    }
+
+    /**
+     * @return a cursor on the store of the segment for these fields, null if the segment has none
+     */
+    static Cursor cursor(LeafReaderContext context, String textField, String contextField) throws IOException {
+        String key = cacheKey(textField, contextField);
+        SuggestionStore store = CACHE.get(context, key);
+        if (store.data == null && store != UNCACHEABLE && store.missingAt != WRITTEN.get()) {
+            // written since, maybe for this segment
+            CACHE.remove(context, key, store);
+            store = CACHE.get(context, key);
+        }
+        return store.data == null ? null : store.new Cursor();
+    }
+
+    /**
+     * Key of the cached stores: both field names, a context field name cannot hold a line feed
+     */
+    private static String cacheKey(String textField, String contextField) {
+        return contextField == null ? textField : textField + "\n" + contextField;
+    }
+
+    /**
+     * @return the segment reader under {@code reader}, null if it is not a segment of a directory
+     */
+    private static SegmentReader segmentReader(LeafReader reader) {
+        LeafReader unwrapped = FilterLeafReader.unwrap(reader);
+        return unwrapped instanceof SegmentReader ? (SegmentReader) unwrapped : null;
+    }
+
+    static String fileName(SegmentInfo info, String textField, String contextField) {
+        return segmentPrefix(info) + "." + fieldsSuffix(textField, contextField) + EXTENSION;
+    }
+
+    /**
+     * @return start of the names of the stores of a segment, whatever their fields
+     */
+    private static String segmentPrefix(SegmentInfo info) {
+        return PREFIX + info.name + "_" + StringHelper.idToString(info.getId());
+    }
+
+    /**
+     * @return the fields in the file name and the codec header, as ascii letters, digits and underscores
+     * (the exact names are checked when the file is opened)
+     */
+    private static String fieldsSuffix(String textField, String contextField) {
+        String fields = contextField == null ? textField : textField + "." + contextField;
+        StringBuilder sb = new StringBuilder(fields.length());
+        for (int i = 0; i < fields.length(); i++) {
+            char c = fields.charAt(i);
+            boolean ascii = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '.';
+            sb.append(ascii ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    private static boolean exists(Directory dir, String name) throws IOException {
+        for (String file : dir.listAll()) {
+            if (file.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SuggestionStore open(LeafReaderContext context, String key) throws IOException {
+        SuggestionStore missing = missing();
+        SegmentReader segment = segmentReader(context.reader());
+        if (segment == null) {
+            return missing;
+        }
+        int separator = key.indexOf('\n');
+        String textField = separator < 0 ? key : key.substring(0, separator);
+        String contextField = separator < 0 ? null : key.substring(separator + 1);
+        SegmentInfo info = segment.getSegmentInfo().info;
+        String name = fileName(info, textField, contextField);
+        if (!exists(segment.directory(), name)) {
+            return missing;
+        }
+
+        IndexInput in = segment.directory().openInput(name, IOContext.READ);
+        try {
+            CodecUtil.checkIndexHeader(in, CODEC, VERSION, VERSION, info.getId(), fieldsSuffix(textField, contextField));
+            String storedText = in.readString();
+            String storedContext = in.readString();
+            if (!storedText.equals(textField) || !storedContext.equals(contextField == null ? "" : contextField)) {
+                log.warn("Ignoring suggestion store {} of the fields {} and {}", name, storedText, storedContext);
+                in.close();
+                return missing;
+            }
+            long dataStart = in.getFilePointer();
+            CodecUtil.retrieveChecksum(in);
+            long tail = in.length() - CodecUtil.footerLength() - Integer.BYTES - Long.BYTES - Byte.BYTES;
+            in.seek(tail);
+            int maxDoc = in.readInt();
+            long offsetsStart = in.readLong();
+            int bitsPerValue = in.readByte();
+            if (maxDoc != segment.maxDoc()) {
+                log.warn("Ignoring suggestion store {} of {} documents, the segment has {}", name, maxDoc, segment.maxDoc());
+                in.close();
+                return missing;
+            }
+            LongValues offsets = DirectReader.getInstance(in.randomAccessSlice(offsetsStart, tail - offsetsStart), bitsPerValue);
+            return new SuggestionStore(in, offsets, dataStart, maxDoc, 0);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeWhileHandlingException(in);
+            throw e;
+        }
+    }
+
+    /**
+     * Write the stores of the segments of the latest commit of {@code reader}'s directory which have none, then
+     * delete the stores, of any fields, of the segments which are no longer in that commit. To be called after a
+     * commit, with a reader opened on it: the segments of older readers still searched are left alone (their
+     * stores may be deleted, they are read from the doc values then), newer ones are never deleted.
+     *
+     * @return number of stores written
+     */
+    static int writeMissing(DirectoryReader reader, String textField, String contextField) throws IOException {
+        if (textField == null) {
+            return 0;
+        }
+        Directory dir = reader.directory();
+        Set<String> live = liveSegments(dir);
+        int written = 0;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            SegmentReader segment = segmentReader(leaf.reader());
+            if (segment == null || !live.contains(segmentPrefix(segment.getSegmentInfo().info))) {
+                continue;
+            }
+            String name = fileName(segment.getSegmentInfo().info, textField, contextField);
+            if (!exists(segment.directory(), name)) {
+                write(segment, name, textField, contextField);
+                written++;
+            }
+        }
+
+        // the commit read again, the reader may be older than the latest one
+        live = liveSegments(dir);
+        for (String file : dir.listAll()) {
+            if (file.startsWith(PREFIX) && file.endsWith(EXTENSION) && file.indexOf('.') > 0
+                    && !live.contains(file.substring(0, file.indexOf('.')))) {
+                try {
+                    dir.deleteFile(file);
+                } catch (IOException e) {
+                    // still open by a reader on some platforms, deleted by a next call
+                    log.debug("Could not delete suggestion store {}", file, e);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @return the prefixes of the store names of the segments of the latest commit
+     */
+    private static Set<String> liveSegments(Directory dir) throws IOException {
+        Set<String> live = new HashSet<>();
+        for (SegmentCommitInfo info : SegmentInfos.readLatestCommit(dir)) {
+            live.add(segmentPrefix(info.info));
+        }
+        return live;
+    }
+
+    /**
+     * Write the store of a segment under a temporary name, then rename it: readers never see a partial file
+     */
+    private static void write(SegmentReader segment, String name, String textField, String contextField) throws IOException {
+        long start = System.nanoTime();
+        Directory dir = segment.directory();
+        SortedDocValues texts = segment.getSortedDocValues(textField);
+        SortedDocValues contexts = contextField == null ? null : segment.getSortedDocValues(contextField);
+        int maxDoc = segment.maxDoc();
+        long[] offsets = new long[maxDoc];
+
+        String tempName;
+        try (IndexOutput out = dir.createTempOutput(PREFIX, "tmp", IOContext.DEFAULT)) {
+            tempName = out.getName();
+            try {
+                CodecUtil.writeIndexHeader(out, CODEC, VERSION, segment.getSegmentInfo().info.getId(),
+                        fieldsSuffix(textField, contextField));
+                out.writeString(textField);
+                out.writeString(contextField == null ? "" : contextField);
+                long dataStart = out.getFilePointer();
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    offsets[doc] = out.getFilePointer() - dataStart;
+                    writeValue(out, texts != null && texts.advanceExact(doc) ? texts.binaryValue() : null);
+                    writeValue(out, contexts != null && contexts.advanceExact(doc) ? contexts.binaryValue() : null);
+                }
+
+                long offsetsStart = out.getFilePointer();
+                int bitsPerValue = DirectWriter.unsignedBitsRequired(maxDoc == 0 ? 0 : offsets[maxDoc - 1]);
+                DirectWriter writer = DirectWriter.getInstance(out, maxDoc, bitsPerValue);
+                for (long offset : offsets) {
+                    writer.add(offset);
+                }
+                writer.finish();
+                // offsets are relative to the data, which starts right after the field names
+                out.writeInt(maxDoc);
+                out.writeLong(offsetsStart);
+                out.writeByte((byte) bitsPerValue);
+                CodecUtil.writeFooter(out);
+            } catch (IOException | RuntimeException e) {
+                IOUtils.closeWhileHandlingException(out);
+                IOUtils.deleteFilesIgnoringExceptions(dir, out.getName());
+                throw e;
+            }
+        }
+
+        try {
+            dir.sync(Set.of(tempName));
+            dir.rename(tempName, name);
+        } catch (IOException e) {
+            // written concurrently for the same segment, the other file is identical
+            IOUtils.deleteFilesIgnoringExceptions(dir, tempName);
+            if (!exists(dir, name)) {
+                throw e;
+            }
+        }
+        WRITTEN.incrementAndGet();
+        log.info("Suggestion store {} written for {} documents in {} ms", name, maxDoc, (System.nanoTime() - start) / 1000000);
+    }
+
+    private static void writeValue(IndexOutput out, BytesRef value) throws IOException {
+        if (value == null) {
+            out.writeVInt(0);
+        } else {
+            out.writeVInt(value.length + 1);
+            out.writeBytes(value.bytes, value.offset, value.length);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (data != null) {
+            data.close();
+        }
+    }
+
+    /**
+     * Reads the records of the store, not thread safe: one per lookup
+     */
+    final class Cursor {
+        private final IndexInput in = data.clone();
+        private byte[] buffer = new byte[64];
+        private final BytesRef context = new BytesRef(new byte[64]);
+
+        /**
+         * @return text of a document of the segment, null if it has none
+         */
+        String text(int doc) throws IOException {
+            seek(doc);
+            int length = in.readVInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (buffer.length < length) {
+                buffer = new byte[ArrayUtil.oversize(length, Byte.BYTES)];
+            }
+            in.readBytes(buffer, 0, length);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return context of a document of the segment, null if it has none: its bytes are reused by the next
+         * call, like the ones of the doc values
+         */
+        BytesRef context(int doc) throws IOException {
+            seek(doc);
+            int textLength = in.readVInt() - 1;
+            if (textLength > 0) {
+                in.seek(in.getFilePointer() + textLength);
+            }
+            int length = in.readVInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (context.bytes.length < length) {
+                context.bytes = new byte[ArrayUtil.oversize(length, Byte.BYTES)];
+            }
+            in.readBytes(context.bytes, 0, length);
+            context.length = length;
+            return context;
+        }
+
+        private void seek(int doc) throws IOException {
+            if (doc < 0 || doc >= maxDoc) {
+                throw new IllegalArgumentException("doc " + doc + " out of the segment of " + maxDoc + " documents");
+            }
+            in.seek(dataStart + offsets.get(doc));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.query.PositionSpanQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.similarities.AnotherCustomAutocompleteSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+
+/**
+ * Upper bound of the text part of the score of the queries built by {@link AutocompleteQueryBuilder}, i.e. of
+ * the score before the weight is blended in by {@link WeightBlendQuery}, computed from the structure of the query before it is rewritten.
+ * <p>
+ * Queries whose score is not bounded (fuzzy queries summing the scores of their expansions, other similarities,
+ * unknown queries) get {@link Float#POSITIVE_INFINITY}.
+ */
+final class TextScoreBound {
+
+    private TextScoreBound() {
+    }
+
+    /**
+     * @return the highest score a term query boosted by 1 gets with {@code similarity}
+     */
+    static float maxTermScore(Similarity similarity) {
+        // tf, idf and norms are all 1: the score of a term is its boost
+        return similarity instanceof AnotherCustomAutocompleteSimilarity ? 1f : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param maxTermScore see {@link #maxTermScore(Similarity)}
+     */
+    static float of(Query query, float maxTermScore) {
+        if (query instanceof WeightBlendQuery) {
+            return of(((WeightBlendQuery) query).getQuery(), maxTermScore);
+        } else if (query instanceof BooleanQuery) {
+            float sum = 0;
+            for (BooleanClause clause : (BooleanQuery) query) {
+                if (clause.isScoring()) {
+                    sum += of(clause.getQuery(), maxTermScore);
+                }
+            }
+            return sum;
+        } else if (query instanceof DisjunctionMaxQuery) {
+            DisjunctionMaxQuery disjunction = (DisjunctionMaxQuery) query;
+            float max = 0;
+            float sum = 0;
+            for (Query disjunct : disjunction) {
+                float bound = of(disjunct, maxTermScore);
+                max = Math.max(max, bound);
+                sum += bound;
+            }
+            float tieBreaker = disjunction.getTieBreakerMultiplier();
+            return tieBreaker == 0 || Float.isInfinite(max) ? max : max + tieBreaker * (sum - max);
+        } else if (query instanceof BoostQuery) {
+            return ((BoostQuery) query).getBoost() * of(((BoostQuery) query).getQuery(), maxTermScore);
+        } else if (query instanceof PositionSpanQuery) {
+            return ((PositionSpanQuery) query).getMaxScore();
+        } else if (query instanceof TermQuery) {
+            return maxTermScore;
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * Best suggestions of a lookup: a bounded heap of (doc, score, weight) held in parallel primitive arrays.
+ * <p>
+ * Suggestions are ordered by descending score, then by descending weight when the weight breaks ties, then by
+ * ascending doc id like {@link org.apache.lucene.search.TopScoreDocCollector}. While collecting, the worst
+ * suggestion is on top of the heap; {@link #sort()} then orders them from the best one.
+ * <p>
+ * The instances of {@link #forThread(int, boolean)} are reused by the lookups of a thread, they are only valid
+ * until the next lookup of the thread.
+ */
+public final class TopSuggestions {
+
+    private static final ThreadLocal<TopSuggestions> PER_THREAD = ThreadLocal.withInitial(() -> new TopSuggestions(10, false));
+
+    private int num;
+    private boolean tieBreakOnWeight;
+    private int[] docs;
+    private float[] scores;
+    private float[] weights;
+    private int size;
+    private boolean sorted;
+
+    TopSuggestions(int num, boolean tieBreakOnWeight) {
+        this.docs = new int[0];
+        this.scores = new float[0];
+        this.weights = new float[0];
+        reset(num, tieBreakOnWeight);
+    }
+
+    /**
+     * @return the emptied suggestions of the current thread
+     */
+    static TopSuggestions forThread(int num, boolean tieBreakOnWeight) {
+        return PER_THREAD.get().reset(num, tieBreakOnWeight);
+    }
+
+    /**
+     * @return suggestions holding the hits of {@code topDocs}, in their order
+     */
+    static TopSuggestions of(TopDocs topDocs) {
+        TopSuggestions top = new TopSuggestions(Math.max(1, topDocs.scoreDocs.length), false);
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            top.docs[top.size] = scoreDoc.doc;
+            top.scores[top.size] = scoreDoc.score;
+            top.size++;
+        }
+        top.sorted = true;
+        return top;
+    }
+
+    TopSuggestions reset(int num, boolean tieBreakOnWeight) {
+        if (num <= 0) {
+            throw new IllegalArgumentException("num must be > 0, got " + num);
+        }
+        if (docs.length < num) {
+            docs = new int[ArrayUtil.oversize(num, Integer.BYTES)];
+            scores = new float[docs.length];
+            weights = new float[docs.length];
+        }
+        this.num = num;
+        this.tieBreakOnWeight = tieBreakOnWeight;
+        this.size = 0;
+        this.sorted = false;
+        return this;
+    }
+
+    boolean isTieBreakOnWeight() {
+        return tieBreakOnWeight;
+    }
+
+    boolean isFull() {
+        return size == num;
+    }
+
+    /**
+     * @return score of the worst suggestion kept, meaningful once full
+     */
+    float minScore() {
+        return scores[0];
+    }
+
+    /**
+     * @return true if the suggestion has been kept
+     */
+    boolean offer(int doc, float score, float weight) {
+        assert !sorted;
+        if (size < num) {
+            docs[size] = doc;
+            scores[size] = score;
+            weights[size] = weight;
+            upHeap(size++);
+            return true;
+        } else if (worse(doc, score, weight, 0)) {
+            return false;
+        }
+        docs[0] = doc;
+        scores[0] = score;
+        weights[0] = weight;
+        downHeap(0, size);
+        return true;
+    }
+
+    /**
+     * Offer the suggestions of another heap, with the same ordering
+     */
+    void addAll(TopSuggestions other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.docs[i], other.scores[i], other.weights[i]);
+        }
+    }
+
+    /**
+     * Order the suggestions from the best one, no suggestion can be offered afterwards
+     */
+    void sort() {
+        if (sorted) {
+            return;
+        }
+        // heap sort: the worst suggestion goes to the end, one after the other
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            downHeap(0, end);
+        }
+        sorted = true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return doc id (in the top level reader) of the i-th suggestion, the best one first once sorted
+     */
+    public int getDoc(int i) {
+        return docs[i];
+    }
+
+    public float getScore(int i) {
+        return scores[i];
+    }
+
+    /**
+     * @return true if (doc, score, weight) ranks after the suggestion at {@code i}
+     */
+    private boolean worse(int doc, float score, float weight, int i) {
+        if (score != scores[i]) {
+            return score < scores[i];
+        }
+        if (tieBreakOnWeight && weight != weights[i]) {
+            return weight < weights[i];
+        }
+        return doc > docs[i];
+    }
+
+    private void upHeap(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(docs[i], scores[i], weights[i], parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void downHeap(int i, int end) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= end) {
+                break;
+            }
+            if (child + 1 < end && worse(docs[child + 1], scores[child + 1], weights[child + 1], child)) {
+                child++;
+            }
+            if (!worse(docs[child], scores[child], weights[child], i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int doc = docs[i];
+        docs[i] = docs[j];
+        docs[j] = doc;
+        float score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        float weight = weights[i];
+        weights[i] = weights[j];
+        weights[j] = weight;
+    }
+}
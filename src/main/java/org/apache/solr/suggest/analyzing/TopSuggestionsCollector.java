@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Collects the best suggestions of a lookup into {@link TopSuggestions}, without allocating per hit.
+ * <p>
+ * Segments sorted by weight (descending) are stopped once no further document can compete: the score of a
+ * document is at most the blend of {@code maxTextScore} and its weight (see {@link WeightBlend#maxScore(float, float)}),
+ * which does not decrease with the weight for a positive coefficient. Once the heap is full and its lowest score
+ * is above the bound computed with the weight of the current document, the next documents of the segment, which
+ * weigh no more, cannot enter it. Segments which are not sorted by weight are collected entirely, as well as all
+ * segments when {@code maxTextScore} is infinite.
+ */
+final class TopSuggestionsCollector implements Collector {
+
+    /**
+     * Relative margin on the bound, scores are float sums computed in another order
+     */
+    private static final float BOUND_SLACK = 1e-6f;
+
+    private final TopSuggestions top;
+    private final String weightField;
+    private final WeightBlend blend;
+    private final float maxTextScore;
+    private int totalHits;
+    private boolean terminated;
+
+    /**
+     * @param top          suggestions to fill, with their size and ordering
+     * @param weightField  field of the weight, sorted on and blended with the text score by {@code blend}, null if none
+     * @param maxTextScore bound of the score before the weight is blended in (see {@link TextScoreBound}),
+     *                     {@link Float#POSITIVE_INFINITY} to collect all segments entirely
+     */
+    TopSuggestionsCollector(TopSuggestions top, String weightField, WeightBlend blend, float maxTextScore) {
+        this.top = top;
+        this.weightField = weightField;
+        this.blend = blend;
+        this.maxTextScore = canTerminate(weightField, blend, maxTextScore) ? maxTextScore : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return true if early termination can apply to a query with this bound
+     */
+    static boolean canTerminate(String weightField, WeightBlend blend, float maxTextScore) {
+        return weightField != null && blend != null && blend.getCoeff() > 0 && Float.isFinite(maxTextScore);
+    }
+
+    /**
+     * Collectors of the slices of a concurrent search, merged into the suggestions of the reducing thread
+     */
+    static CollectorManager<TopSuggestionsCollector, TopSuggestions> manager(int num, boolean tieBreakOnWeight,
+                                                                             String weightField, WeightBlend blend, float maxTextScore) {
+        return new CollectorManager<>() {
+            @Override
+            public TopSuggestionsCollector newCollector() {
+                // slices of the same search may run one after the other on a thread, their heaps are not shared
+                return new TopSuggestionsCollector(new TopSuggestions(num, tieBreakOnWeight), weightField, blend, maxTextScore);
+            }
+
+            @Override
+            public TopSuggestions reduce(Collection<TopSuggestionsCollector> collectors) {
+                TopSuggestions merged = TopSuggestions.forThread(num, tieBreakOnWeight);
+                for (TopSuggestionsCollector collector : collectors) {
+                    merged.addAll(collector.top);
+                }
+                return merged;
+            }
+        };
+    }
+
+    /**
+     * @return true if the documents of the segment are sorted by descending weight, missing weights counting as 0
+     * like in {@link SegmentWeights}
+     */
+    static boolean isSortedByWeight(LeafReader reader, String weightField) {
+        Sort sort = reader.getMetaData().getSort();
+        if (sort == null) {
+            return false;
+        }
+        SortField first = sort.getSort()[0];
+        Object missing = first.getMissingValue();
+        return weightField.equals(first.getField()) && first.getType() == SortField.Type.FLOAT && first.getReverse()
+                && (missing == null || ((Float) missing) == 0f);
+    }
+
+    TopSuggestions getTop() {
+        return top;
+    }
+
+    /**
+     * @return number of collected documents, a lower bound of the hit count when terminated or when
+     * non-competitive documents were skipped
+     */
+    int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * @return true if at least one segment was not collected entirely
+     */
+    boolean isTerminated() {
+        return terminated;
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.TOP_SCORES;
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        final int docBase = context.docBase;
+        final boolean terminate = Float.isFinite(maxTextScore) && isSortedByWeight(context.reader(), weightField);
+        final SegmentWeights weights = weightField != null && (terminate || top.isTieBreakOnWeight())
+                ? SegmentWeights.get(context, weightField)
+                : null;
+
+        return new LeafCollector() {
+            private Scorable scorer;
+
+            @Override
+            public void setScorer(Scorable scorer) throws IOException {
+                this.scorer = scorer;
+                if (top.isFull()) {
+                    updateMinCompetitiveScore();
+                }
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                float score = scorer.score();
+                float weight = weights == null ? 0f : weights.get(doc);
+                totalHits++;
+                if (top.offer(docBase + doc, score, weight) && top.isFull()) {
+                    updateMinCompetitiveScore();
+                }
+
+                if (terminate && top.isFull()) {
+                    float bound = blend.maxScore(maxTextScore, weight);
+                    if (top.minScore() > bound + Math.abs(bound) * BOUND_SLACK) {
+                        terminated = true;
+                        throw new CollectionTerminatedException();
+                    }
+                }
+            }
+
+            private void updateMinCompetitiveScore() throws IOException {
+                // a later document with the same score only wins on a higher weight
+                float minScore = top.minScore();
+                scorer.setMinCompetitiveScore(top.isTieBreakOnWeight() ? minScore : Math.nextUp(minScore));
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * How the weight of a suggestion is combined with the score of its text, see {@link WeightBlendQuery}:
+ * <ul>
+ * <li>{@link Formula#ADDITIVE}: {@code text + coeff * weight}, the score of the former weight clause</li>
+ * <li>{@link Formula#MULTIPLICATIVE}: {@code text * (1 + coeff * weight)}, the weight scales the text score
+ * instead of shifting it, so that heavy suggestions do not hide better matches</li>
+ * </ul>
+ */
+public final class WeightBlend {
+
+    public enum Formula {
+        ADDITIVE, MULTIPLICATIVE;
+
+        public static Formula fromString(String formula) {
+            try {
+                return valueOf(formula.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown weight formula " + formula + ", expected additive or multiplicative", e);
+            }
+        }
+    }
+
+    private final Formula formula;
+    private final float coeff;
+
+    public WeightBlend(Formula formula, float coeff) {
+        this.formula = Objects.requireNonNull(formula);
+        this.coeff = coeff;
+    }
+
+    public Formula getFormula() {
+        return formula;
+    }
+
+    public float getCoeff() {
+        return coeff;
+    }
+
+    float combine(float textScore, float weight) {
+        return formula == Formula.ADDITIVE
+                ? textScore + coeff * weight
+                : textScore * (1 + coeff * weight);
+    }
+
+    /**
+     * @return the highest score of a document of this weight whose text score is between 0 and {@code maxTextScore}
+     */
+    float maxScore(float maxTextScore, float weight) {
+        if (formula == Formula.ADDITIVE) {
+            return maxTextScore + coeff * weight;
+        }
+        float factor = 1 + coeff * weight;
+        return factor > 0 ? maxTextScore * factor : 0f;
+    }
+
+    /**
+     * @return the lowest text score a document weighing between {@code minWeight} and {@code maxWeight} needs to
+     * reach {@code minScore}, a lower bound (0 when unknown)
+     */
+    float minTextScore(float minScore, float minWeight, float maxWeight) {
+        float min;
+        if (formula == Formula.ADDITIVE) {
+            min = minScore - Math.max(coeff * minWeight, coeff * maxWeight);
+        } else {
+            float factor = Math.max(1 + coeff * minWeight, 1 + coeff * maxWeight);
+            min = factor > 0 ? minScore / factor : 0f;
+        }
+        // the blended score is rounded, keep a margin
+        return Float.isFinite(min) && min > 0 ? min - min * 1e-6f : 0f;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WeightBlend)) {
+            return false;
+        }
+        WeightBlend that = (WeightBlend) o;
+        return formula == that.formula && Float.compare(coeff, that.coeff) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(formula, coeff);
+    }
+
+    @Override
+    public String toString() {
+        return formula.name().toLowerCase(Locale.ROOT) + "(coeff=" + coeff + ")";
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.FilterScorer;
+import org.apache.lucene.search.FilterWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Matches the documents of the text query and combines their score with their weight, see {@link WeightBlend}.
+ * <p>
+ * Only the documents matched by the text query are scored, the weights are read from the arrays loaded once
+ * per segment by {@link SegmentWeights}. The maximum scores of the text scorer are blended with the weight
+ * range of the segment, and the minimum competitive score is passed down to it converted to a text score,
+ * so that it can still skip non-competitive documents.
+ */
+public final class WeightBlendQuery extends Query {
+
+    private final Query query;
+    private final String weightField;
+    private final WeightBlend blend;
+
+    public WeightBlendQuery(Query query, String weightField, WeightBlend blend) {
+        this.query = Objects.requireNonNull(query);
+        this.weightField = Objects.requireNonNull(weightField);
+        this.blend = Objects.requireNonNull(blend);
+    }
+
+    /**
+     * @return the text query
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+    public String getWeightField() {
+        return weightField;
+    }
+
+    public WeightBlend getBlend() {
+        return blend;
+    }
+
+    @Override
+    public Query rewrite(IndexReader reader) throws IOException {
+        Query rewritten = query.rewrite(reader);
+        return rewritten != query ? new WeightBlendQuery(rewritten, weightField, blend) : this;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+        Weight inner = query.createWeight(searcher, scoreMode, boost);
+        if (!scoreMode.needsScores()) {
+            return inner;
+        }
+        return new FilterWeight(this, inner) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                Scorer scorer = in.scorer(context);
+                return scorer == null ? null : new WeightBlendScorer(scorer, this, SegmentWeights.get(context, weightField));
+            }
+
+            @Override
+            public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+                Explanation text = in.explain(context, doc);
+                if (!text.isMatch()) {
+                    return text;
+                }
+                float weight = SegmentWeights.get(context, weightField).get(doc);
+                return Explanation.match(blend.combine(text.getValue().floatValue(), weight), "weight blend " + blend + ", with:",
+                        text, Explanation.match(weight, "weight(" + weightField + ")"));
+            }
+
+            @Override
+            public boolean isCacheable(LeafReaderContext context) {
+                return in.isCacheable(context) && DocValues.isCacheable(context, weightField);
+            }
+        };
+    }
+
+    @Override
+    public void visit(QueryVisitor visitor) {
+        query.visit(visitor.getSubVisitor(BooleanClause.Occur.MUST, this));
+    }
+
+    @Override
+    public String toString(String field) {
+        return "weightBlend(" + query.toString(field) + ", " + weightField + ", " + blend + ")";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!sameClassAs(other)) {
+            return false;
+        }
+        WeightBlendQuery that = (WeightBlendQuery) other;
+        return query.equals(that.query) && weightField.equals(that.weightField) && blend.equals(that.blend);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(classHash(), query, weightField, blend);
+    }
+
+    private final class WeightBlendScorer extends FilterScorer {
+        private final SegmentWeights weights;
+
+        private WeightBlendScorer(Scorer in, Weight weight, SegmentWeights weights) {
+            super(in, weight);
+            this.weights = weights;
+        }
+
+        @Override
+        public float score() throws IOException {
+            return blend.combine(in.score(), weights.get(docID()));
+        }
+
+        @Override
+        public int advanceShallow(int target) throws IOException {
+            return in.advanceShallow(target);
+        }
+
+        @Override
+        public float getMaxScore(int upTo) throws IOException {
+            float maxTextScore = in.getMaxScore(upTo);
+            return Math.max(blend.maxScore(maxTextScore, weights.getMinWeight()), blend.maxScore(maxTextScore, weights.getMaxWeight()));
+        }
+
+        @Override
+        public void setMinCompetitiveScore(float minScore) throws IOException {
+            float minTextScore = blend.minTextScore(minScore, weights.getMinWeight(), weights.getMaxWeight());
+            if (minTextScore > 0) {
+                in.setMinCompetitiveScore(minTextScore);
+            }
+        }
+    }
+}
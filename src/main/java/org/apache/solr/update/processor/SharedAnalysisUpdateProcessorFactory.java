@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CustomAnalyzer;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.CloseHook;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.FieldType;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.SharedAnalysisTextField;
+import org.apache.solr.schema.SharedTokens;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.util.plugin.SolrCoreAware;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.solr.schema.SharedAnalysisTextField.sharedValue;
+
+/**
+ * Clone a source field into derived fields, tokenizing each text once for all of them.
+ * <p>
+ * Replaces a chain of {@link CloneFieldUpdateProcessorFactory} followed by {@link WordConcatFieldUpdateProcessorFactory}:
+ * <ul>
+ * <li><code>dest</code> fields receive the source text,</li>
+ * <li><code>concatDest</code> fields receive the source text with the concatenations of its consecutive words,
+ * computed once.</li>
+ * </ul>
+ * For the source and every derived field of type {@link SharedAnalysisTextField}, the value is a {@link SharedTokens}:
+ * the text is tokenized once per tokenizer and each field replays the tokens through its own filters.
+ * Fields of other types receive the text as is. The analyzers reused per thread, of the factory and of the
+ * {@link SharedAnalysisTextField} types of the schema, are closed with the core.
+ * <pre class="prettyprint">
+ * &lt;processor class="org.apache.solr.update.processor.SharedAnalysisUpdateProcessorFactory"&gt;
+ *   &lt;str name="source"&gt;search&lt;/str&gt;
+ *   &lt;str name="dest"&gt;search_payload&lt;/str&gt;
+ *   &lt;str name="dest"&gt;search_ngram&lt;/str&gt;
+ *   &lt;str name="dest"&gt;search_text&lt;/str&gt;
+ *   &lt;str name="concatDest"&gt;search_payload_concat&lt;/str&gt;
+ *   &lt;str name="concatDest"&gt;search_ngram_concat&lt;/str&gt;
+ * &lt;/processor&gt;
+ * </pre>
+ */
+public final class SharedAnalysisUpdateProcessorFactory extends UpdateRequestProcessorFactory implements SolrCoreAware {
+
+    public static final String SOURCE_PARAM = "source";
+    public static final String DEST_PARAM = "dest";
+    public static final String CONCAT_DEST_PARAM = "concatDest";
+
+    private final Analyzer concatAnalyzer = new CustomAnalyzer();
+
+    private String source;
+    private List<String> dests;
+    private List<String> concatDests;
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void init(NamedList args) {
+        Object sourceArg = args.remove(SOURCE_PARAM);
+        if (!(sourceArg instanceof CharSequence)) {
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "'" + SOURCE_PARAM + "' must be a string");
+        }
+        source = sourceArg.toString();
+        dests = new ArrayList<>(args.removeConfigArgs(DEST_PARAM));
+        concatDests = new ArrayList<>(args.removeConfigArgs(CONCAT_DEST_PARAM));
+        if (dests.isEmpty() && concatDests.isEmpty()) {
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+                    "at least one '" + DEST_PARAM + "' or '" + CONCAT_DEST_PARAM + "' must be specified");
+        }
+        if (args.size() > 0) {
+            throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Unexpected init param(s): " + args);
+        }
+        super.init(args);
+    }
+
+    @Override
+    public void inform(SolrCore core) {
+        core.addCloseHook(new CloseHook() {
+            @Override
+            public void preClose(SolrCore core) {
+                // Nothing to do
+            }
+
+            @Override
+            public void postClose(SolrCore core) {
+                for (FieldType type : core.getLatestSchema().getFieldTypes().values()) {
+                    if (type instanceof SharedAnalysisTextField) {
+                        ((SharedAnalysisTextField) type).close();
+                    }
+                }
+                concatAnalyzer.close();
+            }
+        });
+    }
+
+    @Override
+    public UpdateRequestProcessor getInstance(SolrQueryRequest req, SolrQueryResponse rsp, UpdateRequestProcessor next) {
+        final IndexSchema schema = req.getSchema();
+        final WordConcatenator concatenator = new WordConcatenator(concatAnalyzer);
+        return new UpdateRequestProcessor(next) {
+            @Override
+            public void processAdd(AddUpdateCommand cmd) throws IOException {
+                SolrInputDocument doc = cmd.getSolrInputDocument();
+                SolrInputField sourceField = doc.getField(source);
+                if (sourceField != null) {
+                    Collection<Object> values = sourceField.getValues();
+                    List<Object> sourceValues = new ArrayList<>(values.size());
+                    Map<String, SharedTokens> shared = new HashMap<>(2);
+                    for (Object value : values) {
+                        if (value instanceof CharSequence) {
+                            String text = value.toString();
+                            shared.clear();
+                            sourceValues.add(sharedValue(schema, source, text, shared));
+                            for (String dest : dests) {
+                                doc.addField(dest, sharedValue(schema, dest, text, shared));
+                            }
+
+                            if (!concatDests.isEmpty()) {
+                                String concat = concatenator.concat(text);
+                                shared.clear();
+                                for (String dest : concatDests) {
+                                    doc.addField(dest, sharedValue(schema, dest, concat, shared));
+                                }
+                            }
+                        } else {
+                            sourceValues.add(value);
+                            for (String dest : dests) {
+                                doc.addField(dest, value);
+                            }
+                            for (String dest : concatDests) {
+                                doc.addField(dest, value);
+                            }
+                        }
+                    }
+                    sourceField.setValue(sourceValues);
+                }
+                super.processAdd(cmd);
+            }
+        };
+    }
+}
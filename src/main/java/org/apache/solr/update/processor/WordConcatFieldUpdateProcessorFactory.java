@@ -16,19 +16,27 @@
  */
 package org.apache.solr.update.processor;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.CustomAnalyzer;
-import org.apache.lucene.analysis.WordsParser;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 
+import java.io.IOException;
+
 import static org.apache.solr.update.processor.FieldValueMutatingUpdateProcessor.valueMutator;
 
 /**
- *
+ * Replace the text of the selected fields by the concatenations of its consecutive words, see {@link WordConcatenator}.
+ * <p>
+ * The analyzer splitting the words is shared by the processors of the factory, each processor reuses its buffers
+ * from one value to the next.
  */
 public final class WordConcatFieldUpdateProcessorFactory extends FieldMutatingUpdateProcessorFactory {
 
+    private final Analyzer analyzer = new CustomAnalyzer();
+
     @Override
     public FieldMutatingUpdateProcessor.FieldNameSelector
     getDefaultSelector(final SolrCore core) {
@@ -39,14 +47,14 @@ public final class WordConcatFieldUpdateProcessorFactory extends FieldMutatingUp
     public UpdateRequestProcessor getInstance(SolrQueryRequest req,
                                               SolrQueryResponse rsp,
                                               UpdateRequestProcessor next) {
+        WordConcatenator concatenator = new WordConcatenator(analyzer);
         return valueMutator(getSelector(), next, src -> {
             if (src instanceof CharSequence) {
-                CharSequence s = (CharSequence) src;
-                return WordsParser.recomposeText(
-                        WordsParser.concatWords(
-                                WordsParser.decomposeText(new CustomAnalyzer(), "", s.toString()),
-                                2, true, true),
-                        " ", true);
+                try {
+                    return concatenator.concat(src.toString());
+                } catch (IOException e) {
+                    throw new SolrException(SolrException.ErrorCode.SERVER_ERROR, "Can't concat words of " + src, e);
+                }
             }
 
             return src;
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.ArrayUtil;
+
+import java.io.IOException;
+
+/**
+ * Concatenations of the consecutive words of a text, same output as
+ * {@code WordsParser.recomposeText(WordsParser.concatWords(WordsParser.decomposeText(analyzer, "", text), 2, true, true), " ", true)}:
+ * for the words {@code a b c}, {@code "ab ba bc cb  bc cb ab ba"}, and {@code "a  a"} for a single word.
+ * <p>
+ * The words are kept as slices of a single char buffer and the result is written into a single string builder,
+ * both reused from one text to the next: an instance is not thread safe, use one per processor.
+ */
+public final class WordConcatenator {
+
+    private final Analyzer analyzer;
+    private final StringBuilder sb = new StringBuilder();
+    private char[] chars = new char[128];
+    private int[] ends = new int[16];
+
+    /**
+     * @param analyzer analyzer splitting the words, shared between processors
+     */
+    public WordConcatenator(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    public String concat(String text) throws IOException {
+        int count = 0;
+        int length = 0;
+        try (TokenStream ts = analyzer.tokenStream("", text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                chars = ArrayUtil.grow(chars, length + termAtt.length());
+                System.arraycopy(termAtt.buffer(), 0, chars, length, termAtt.length());
+                length += termAtt.length();
+                ends = ArrayUtil.grow(ends, count + 1);
+                ends[count++] = length;
+            }
+            ts.end();
+        }
+
+        if (count == 0) {
+            return "";
+        }
+        sb.setLength(0);
+        if (count == 1) {
+            sb.append(chars, 0, length).append("  ").append(chars, 0, length);
+            return sb.toString();
+        }
+
+        for (int i = 0; i < count - 1; i++) {
+            appendPair(i).append(' ');
+        }
+        sb.append(' ');
+        for (int i = count - 2; i >= 0; i--) {
+            appendPair(i).append(' ');
+        }
+        sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * Append the word i followed by the word i + 1, a space, then the word i + 1 followed by the word i
+     */
+    private StringBuilder appendPair(int i) {
+        int start = i == 0 ? 0 : ends[i - 1];
+        int middle = ends[i];
+        int end = ends[i + 1];
+        return sb.append(chars, start, end - start).append(' ')
+                .append(chars, middle, end - middle).append(chars, start, middle - start);
+    }
+}
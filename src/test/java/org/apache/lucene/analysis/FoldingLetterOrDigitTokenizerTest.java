@@ -0,0 +1,145 @@
+package org.apache.lucene.analysis;
+
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FoldingLetterOrDigitTokenizerTest {
+
+    /**
+     * The chain replaced by the fused tokenizer
+     */
+    static final Analyzer CHAIN = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer source = new LetterOrDigitTokenizer();
+            TokenStream filter = new LowerCaseFilter(source);
+            filter = new ASCIIFoldingFilter(filter);
+            return new TokenStreamComponents(source, filter);
+        }
+    };
+
+    static final Analyzer FUSED = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer source = new FoldingLetterOrDigitTokenizer();
+            return new TokenStreamComponents(source, source);
+        }
+    };
+
+    @Test
+    public void testTokens() throws IOException {
+        assertEquals("[ceci|0-4, est|5-8, un|9-11, test|12-16, end 20]", tokens(FUSED, "Ceci est un test.. !"));
+        assertEquals("[creme|0-5, brulee|6-12, oeuf|13-16, a|pipe|17-23, end 23]", tokens(FUSED, "Cr\u00e8me Br\u00fbl\u00e9e \u0152uf A|PIPE"));
+    }
+
+    /**
+     * Same tokens, offsets and positions as the chain on random text from the whole unicode range
+     */
+    @Test
+    public void testSameAsChain() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, i % 50 == 0 ? 10000 : 1 + random.nextInt(300));
+            assertEquals(tokens(CHAIN, text), tokens(FUSED, text));
+        }
+    }
+
+    /**
+     * Every char of the BMP, alone and in a token
+     */
+    @Test
+    public void testEveryBmpChar() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            sb.append((char) c).append("a").append((char) c).append(' ');
+        }
+        String text = sb.toString();
+        assertEquals(tokens(CHAIN, text), tokens(FUSED, text));
+    }
+
+    /**
+     * The scanner of texts in memory finds the tokens of the tokenizer
+     */
+    @Test
+    public void testScannerSameAsTokenizer() throws IOException {
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, i % 50 == 0 ? 10000 : 1 + random.nextInt(300));
+            String expected = tokens(FUSED, text);
+            assertEquals(expected.substring(0, expected.lastIndexOf("end")), scan(text));
+        }
+        assertEquals("[creme|0-5, brulee|6-12, oeuf|13-16, a|pipe|17-23, ", scan("Cr\u00e8me Br\u00fbl\u00e9e \u0152uf A|PIPE"));
+        assertEquals("[", scan(" .. "));
+    }
+
+    /**
+     * Same format as {@link #tokens(Analyzer, String)}, without the end offset
+     */
+    private static String scan(String text) {
+        StringBuilder sb = new StringBuilder("[");
+        FoldingLetterOrDigitTokenizer.Scanner scanner = new FoldingLetterOrDigitTokenizer.Scanner(text);
+        while (scanner.next()) {
+            String term = scanner.termString();
+            assertEquals(true, scanner.termEquals(term) && scanner.termStartsWith(term.substring(0, term.length() / 2)));
+            sb.append(term).append('|').append(scanner.start()).append('-').append(scanner.end()).append(", ");
+        }
+        return sb.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    sb.append((char) (' ' + random.nextInt(95)));
+                    break;
+                case 1:
+                    // latin supplement and extended
+                    sb.append((char) (0xC0 + random.nextInt(0x250 - 0xC0)));
+                    break;
+                case 2:
+                    sb.append((char) random.nextInt(Character.MAX_VALUE + 1));
+                    break;
+                case 3:
+                    sb.appendCodePoint(Character.MIN_SUPPLEMENTARY_CODE_POINT + random.nextInt(Character.MAX_CODE_POINT - Character.MIN_SUPPLEMENTARY_CODE_POINT));
+                    break;
+                case 4:
+                    // long token
+                    for (int i = random.nextInt(400); i > 0; i--) {
+                        sb.append(random.nextBoolean() ? '\u00c6' : 'a');
+                    }
+                    break;
+                default:
+                    sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String tokens(Analyzer analyzer, String text) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try (TokenStream ts = analyzer.tokenStream("", text)) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
+            PositionIncrementAttribute posAtt = ts.addAttribute(PositionIncrementAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                tokens.add(termAtt + "|" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset()
+                        + (posAtt.getPositionIncrement() == 1 ? "" : "+" + posAtt.getPositionIncrement()));
+            }
+            ts.end();
+            tokens.add("end " + offsetAtt.endOffset());
+        }
+        return tokens.toString();
+    }
+}
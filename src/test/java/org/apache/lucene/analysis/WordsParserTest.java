@@ -0,0 +1,53 @@
+package org.apache.lucene.analysis;
+
+import org.apache.solr.suggest.analysis.Allocations;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class WordsParserTest {
+
+    private static final int[] ALPHABET = "aab \u00e9\n\r \uD83D\uDE00\uD83D\uDE01".codePoints().toArray();
+
+    @Test
+    public void testCleanRepetitionText() {
+        assertEquals("thermomix", WordsParser.cleanRepetitionText("thermomix"));
+        assertEquals("aa", WordsParser.cleanRepetitionText("aaaa"));
+        assertEquals("aaa", WordsParser.cleanRepetitionText("aaa"));
+        assertEquals("coucouu !!", WordsParser.cleanRepetitionText("coucouuuuuuu !!!!!!"));
+        assertEquals("\n\n\n\n", WordsParser.cleanRepetitionText("\n\n\n\n"));
+
+        String clean = "apple iphone";
+        assertSame(clean, WordsParser.cleanRepetitionText(clean));
+    }
+
+    @Test
+    public void testCleanRepetitionTextSameAsPattern() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                int cp = ALPHABET[random.nextInt(ALPHABET.length)];
+                int repeat = 1 + random.nextInt(6);
+                for (int k = 0; k < repeat; k++) {
+                    sb.appendCodePoint(cp);
+                }
+            }
+            String text = sb.toString();
+            assertEquals(text, text.replaceAll(WordsParser.CLEANER, "$1$1"), WordsParser.cleanRepetitionText(text));
+        }
+    }
+
+    /**
+     * The scanner allocates less by keystroke than the pattern, when there is nothing to clean
+     */
+    @Test
+    public void testCleanRepetitionTextAllocations() {
+        Allocations.assertAllocatesLess("pattern", keystroke -> keystroke.replaceAll(WordsParser.CLEANER, "$1$1"),
+                "scanner", WordsParser::cleanRepetitionText);
+    }
+}
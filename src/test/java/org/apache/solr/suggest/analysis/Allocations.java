@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bytes allocated by the current thread per call of two implementations of the same operation, read from the
+ * {@link com.sun.management.ThreadMXBean}: both are warmed up together, then measured one after the other over
+ * the same inputs.
+ */
+public final class Allocations {
+
+    /**
+     * Query typed one keystroke after the other
+     */
+    public static final String[] KEYSTROKES = {"a", "ap", "app", "appl", "apple", "apple ", "apple i", "apple ip",
+            "apple iph", "apple ipho"};
+
+    private static final int ROUNDS = 2000;
+
+    private Allocations() {
+    }
+
+    /**
+     * Assert that {@code candidate} allocates less than {@code reference} per call over {@link #KEYSTROKES}
+     */
+    public static void assertAllocatesLess(String referenceName, Consumer<String> reference,
+                                           String candidateName, Consumer<String> candidate) {
+        for (int i = 0; i < ROUNDS; i++) {
+            for (String keystroke : KEYSTROKES) {
+                reference.accept(keystroke);
+                candidate.accept(keystroke);
+            }
+        }
+
+        long referenceBytes = perCall(reference);
+        long candidateBytes = perCall(candidate);
+        assertTrue("bytes/keystroke: " + referenceName + "=" + referenceBytes + " " + candidateName + "=" + candidateBytes,
+                candidateBytes < referenceBytes);
+    }
+
+    private static long perCall(Consumer<String> operation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < ROUNDS; i++) {
+            for (String keystroke : KEYSTROKES) {
+                operation.accept(keystroke);
+            }
+        }
+        return (threads.getThreadAllocatedBytes(id) - start) / ((long) ROUNDS * KEYSTROKES.length);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory;
+import org.apache.solr.suggest.analyzing.AutocompleteIndexBuilder;
+import org.apache.solr.suggest.analyzing.AutocompleteIndexBuilderTool;
+import org.apache.solr.suggest.analyzing.AutocompleteSuggester;
+import org.apache.solr.suggest.analyzing.DirectoryLoader;
+import org.apache.solr.suggest.analyzing.IndexGenerations;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AutocompleteBuildAsideTest extends SolrTestCaseJ4 {
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        System.setProperty("enable.update.log", "false");
+        initCore("solrconfig.xml", "schema.xml");
+    }
+
+    private static AutocompleteSuggester suggester(IndexGenerations generations) throws IOException {
+        return suggester(generations, DirectoryLoader.DEFAULT);
+    }
+
+    private static AutocompleteSuggester suggester(IndexGenerations generations, DirectoryLoader loader) throws IOException {
+        Map<String, String> fields = AutocompleteLookupFactory.getFields(
+                AutocompleteIndexBuilderTool.findSuggester(h.getCore().getSolrConfig(), null));
+        AutocompleteSuggester suggester = new AutocompleteSuggester(new ByteBuffersDirectory(), 0, true, true, fields,
+                0.00003f, null, h.getCore().getLatestSchema().getSimilarity(), false);
+        suggester.setIndexBuilder(new AutocompleteIndexBuilder(h.getCore().getLatestSchema(), fields, 2));
+        suggester.setDirectoryLoader(loader);
+        suggester.setBuildAside(generations);
+        return suggester;
+    }
+
+    /**
+     * The directory option only applies to the generations built aside, the core index is searched through solr
+     */
+    @Test
+    public void testDirectoryNeedsBuildAside() {
+        for (String type : new String[]{"mmap", "nio", "heap"}) {
+            NamedList<Object> params = new NamedList<>();
+            params.add(AutocompleteLookupFactory.DIRECTORY, type);
+            SolrException e = expectThrows(SolrException.class,
+                    () -> new AutocompleteLookupFactory().create(params, h.getCore()));
+            assertTrue(e.getMessage(), e.getMessage().contains(AutocompleteLookupFactory.BUILD_ASIDE_DIR));
+        }
+    }
+
+    @Test
+    public void testSwapAndRollback() throws Exception {
+        Path root = createTempDir("generations");
+        try (AutocompleteSuggester suggester = suggester(new IndexGenerations(root))) {
+            assertTrue(suggester.lookup2("apple", 10, true, true).isEmpty());
+            assertFalse(suggester.rollback());
+
+            suggester.build(inputIterator(List.of("apple iphone", "apple ipad")));
+            assertEquals(List.of("apple ipad", "apple iphone"), keys(suggester.lookup2("apple", 10, true, true)));
+
+            suggester.build(inputIterator(List.of("apple watch")));
+            assertEquals(List.of("apple watch"), keys(suggester.lookup2("apple", 10, true, true)));
+            assertTrue(Files.isDirectory(root.resolve("index.1")));
+
+            // back to the first build, a second rollback does not go forward again
+            assertTrue(suggester.rollback());
+            assertEquals(List.of("apple ipad", "apple iphone"), keys(suggester.lookup2("apple", 10, true, true)));
+            assertEquals(2, suggester.getCount());
+            assertFalse(suggester.rollback());
+            assertEquals(List.of("apple ipad", "apple iphone"), keys(suggester.lookup2("apple", 10, true, true)));
+
+            // only the current and previous generations are kept, the generation rolled back is deleted
+            suggester.build(inputIterator(List.of("apple tv")));
+            assertTrue(Files.isDirectory(root.resolve("index.1")));
+            assertFalse(Files.exists(root.resolve("index.2")));
+            assertTrue(Files.isDirectory(root.resolve("index.3")));
+
+            // the searcher of the core is not searched
+            RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+            try {
+                assertEquals(List.of("apple tv"), keys(suggester.lookup(ref.get(), "apple", 10, true, true, false)));
+            } finally {
+                ref.decref();
+            }
+        }
+
+        // a restarted suggester opens the current generation
+        IndexGenerations generations = new IndexGenerations(root);
+        assertEquals(3, generations.getCurrent());
+        assertEquals(1, generations.getPrevious());
+        try (AutocompleteSuggester suggester = suggester(generations)) {
+            assertEquals(List.of("apple tv"), keys(suggester.lookup2("apple", 10, true, true)));
+        }
+    }
+
+    @Test
+    public void testFailedBuildKeepsCurrentGeneration() throws Exception {
+        Path root = createTempDir("generations");
+        try (AutocompleteSuggester suggester = suggester(new IndexGenerations(root))) {
+            suggester.build(inputIterator(List.of("apple iphone")));
+
+            List<String> texts = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                texts.add("apple " + i);
+            }
+            texts.add(null);
+            expectThrows(NullPointerException.class, () -> suggester.build(inputIterator(texts)));
+
+            assertEquals(List.of("apple iphone"), keys(suggester.lookup2("apple", 10, true, true)));
+            assertEquals(1, suggester.getBuildAside().getCurrent());
+            assertFalse(Files.exists(root.resolve("index.2")));
+        }
+    }
+
+    @Test
+    public void testPreloadedGenerations() throws Exception {
+        Path root = createTempDir("generations");
+        for (DirectoryLoader.Type type : DirectoryLoader.Type.values()) {
+            DirectoryLoader loader = new DirectoryLoader(type, DirectoryLoader.DEFAULT_PRELOAD_EXTENSIONS);
+            try (AutocompleteSuggester suggester = suggester(new IndexGenerations(root), loader)) {
+                suggester.build(inputIterator(List.of("apple iphone", "apple ipad")));
+                assertEquals(type.name(), List.of("apple ipad", "apple iphone"), keys(suggester.lookup2("apple", 10, true, true)));
+                DirectoryLoader.Report report = loader.getLastReport();
+                assertEquals(type, report.getType());
+                assertEquals(type.name(), type == DirectoryLoader.Type.MMAP || type == DirectoryLoader.Type.HEAP,
+                        report.getBytes() > 0);
+            }
+        }
+    }
+
+    /**
+     * Lookups running during builds always see a complete generation
+     */
+    /**
+     * Without build aside the suggester searches the core index: suggest.build leaves it to the update chain
+     */
+    @Test
+    public void testNoBuildInTheCoreIndex() throws Exception {
+        clearIndex();
+        assertU(adoc("id", "1", "search", "apple iphone", "weight", "100"));
+        assertU(adoc("id", "2", "search", "apple ipad", "weight", "200"));
+        assertU(commit());
+
+        String numFound = "//lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='2']";
+        assertQ(req("qt", "/autocomplete", "q", "apple", "suggest.build", "true"), numFound);
+        assertQ(req("q", "*:*", "defType", "lucene"), "//result[@numFound='2']");
+        assertQ(req("qt", "/autocomplete", "q", "apple"), numFound);
+        clearIndex();
+        assertU(commit());
+    }
+
+    /**
+     * A rollback request is a command, the lookup is not run
+     */
+    @Test
+    public void testRollbackRequestReturnsNoSuggestions() throws Exception {
+        clearIndex();
+        assertU(adoc("id", "1", "search", "apple iphone", "weight", "100"));
+        assertU(commit());
+
+        assertQ(req("qt", "/autocomplete", "q", "apple", "suggest.rollback", "true"),
+                "//str[@name='command' and text()='rollback']", "count(//lst[@name='suggest'])=0");
+        assertQ(req("qt", "/autocomplete", "q", "apple"),
+                "//lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='1']");
+        clearIndex();
+        assertU(commit());
+    }
+
+    @Test
+    public void testLookupsDuringBuilds() throws Exception {
+        List<String> small = List.of("apple iphone", "apple ipad");
+        List<String> large = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            large.add("apple model " + i);
+        }
+
+        try (AutocompleteSuggester suggester = suggester(new IndexGenerations(createTempDir("generations")))) {
+            suggester.build(inputIterator(small));
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        while (running.get()) {
+                            List<String> keys = keys(suggester.lookup2("apple", 5, true, false));
+                            if (keys.size() != (keys.get(0).startsWith("apple model") ? 5 : 2)) {
+                                throw new AssertionError("Partial generation: " + keys);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+
+            for (int i = 0; i < 3; i++) {
+                suggester.build(inputIterator(large));
+                suggester.build(inputIterator(small));
+                suggester.rollback();
+            }
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            if (failure.get() != null) {
+                throw new AssertionError(failure.get());
+            }
+        }
+    }
+
+    private static List<String> keys(List<LookupResult> results) {
+        List<String> keys = new ArrayList<>();
+        for (LookupResult result : results) {
+            keys.add(result.key.toString());
+        }
+        return keys;
+    }
+
+    private static InputIterator inputIterator(List<String> texts) {
+        Iterator<String> iterator = texts.iterator();
+        return new InputIterator() {
+            private String current;
+
+            @Override
+            public BytesRef next() {
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                current = iterator.next();
+                return new BytesRef(current);
+            }
+
+            @Override
+            public long weight() {
+                return 100 - current.length();
+            }
+
+            @Override
+            public BytesRef payload() {
+                return null;
+            }
+
+            @Override
+            public boolean hasPayloads() {
+                return false;
+            }
+
+            @Override
+            public Set<BytesRef> contexts() {
+                return null;
+            }
+
+            @Override
+            public boolean hasContexts() {
+                return false;
+            }
+        };
+    }
+}
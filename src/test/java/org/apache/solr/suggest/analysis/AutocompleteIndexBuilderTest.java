@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.suggest.analyzing.AutocompleteIndexBuilder;
+import org.apache.solr.suggest.analyzing.AutocompleteIndexBuilderTool;
+import org.apache.solr.suggest.analyzing.AutocompleteSuggester;
+import org.apache.solr.suggest.analyzing.IndexGenerations;
+import org.apache.solr.suggest.analyzing.SuggesterTestCase;
+import org.apache.solr.util.RefCounted;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+public class AutocompleteIndexBuilderTest extends SuggesterTestCase {
+
+    private static final String[][] SUGGESTIONS = {
+            {"apple iphone", "100", "phone"},
+            {"apple iphone 11", "200", "phone"},
+            {"apple iphone 12", "300", "phone"},
+            {"apple iphone 13", "100", "phone"},
+            {"apple ipad", "500", "tablet"},
+            {"thermomix", "100", "kitchen"},
+            {"thermo mix", "500", "kitchen"},
+            {"red bike", "100", "bike"},
+            {"bike red", "600", "bike"}};
+
+    private static final List<String> QUERIES = Arrays.asList("apple", "app", "apple iphone 1", "ipad", "thermomix",
+            "thermo", "red bi", "bikered", "iphone apple");
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        System.setProperty("solr.directoryFactory", "solr.StandardDirectoryFactory");
+        initSuggesterCore();
+    }
+
+    /**
+     * The same suggestions indexed through the update chain and by the command line builder give the same results
+     */
+    @Test
+    public void testSameResultsAsUpdateChain() throws Exception {
+        clearIndex();
+        StringBuilder jsonl = new StringBuilder();
+        for (String[] suggestion : SUGGESTIONS) {
+            assertU(adoc("id", suggestion[0], "search", suggestion[0], "weight", suggestion[1], "categories", suggestion[2]));
+            jsonl.append("{\"search\": \"").append(suggestion[0]).append("\", \"weight\": ").append(suggestion[1])
+                    .append(", \"categories\": \"").append(suggestion[2]).append("\"}\n");
+        }
+        assertU(commit());
+        assertU(optimize());
+
+        Path input = createTempFile("suggestions", ".jsonl");
+        Files.write(input, jsonl.toString().getBytes(StandardCharsets.UTF_8));
+        Path index = createTempDir("built");
+        AutocompleteIndexBuilderTool.main(new String[]{
+                "-conf", getFile("solr/collection1").getAbsolutePath(),
+                "-index", index.toString(),
+                "-input", input.toString(),
+                "-threads", "3"});
+
+        RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+        try (AutocompleteSuggester live = suggester(new ByteBuffersDirectory());
+             AutocompleteSuggester built = suggester(FSDirectory.open(index))) {
+            for (String query : QUERIES) {
+                List<String> expected = results(live.lookup(ref.get(), query, 10, true, true, false));
+                assertFalse(query, expected.isEmpty());
+                assertEquals(query, expected, results(built.lookup2(query, 10, true, true)));
+            }
+        } finally {
+            ref.decref();
+        }
+    }
+
+    @Test
+    public void testTsv() throws Exception {
+        Path input = createTempFile("suggestions", ".tsv");
+        Files.write(input, "apple iphone\t100\tphone\n\napple ipad\t500\n".getBytes(StandardCharsets.UTF_8));
+        Path index = createTempDir("built");
+        AutocompleteIndexBuilderTool.main(new String[]{
+                "-conf", getFile("solr/collection1").getAbsolutePath(),
+                "-index", index.toString(),
+                "-input", input.toString()});
+
+        try (AutocompleteSuggester built = suggester(FSDirectory.open(index))) {
+            List<LookupResult> results = built.lookup2("apple", 10, true, true);
+            assertEquals(2, results.size());
+            assertEquals("apple ipad", results.get(0).key.toString());
+            assertEquals("apple iphone", results.get(1).key.toString());
+            assertEquals(Set.of(new BytesRef("phone")), results.get(1).contexts);
+        }
+    }
+
+    /**
+     * Lines without a text or with a weight which is not a number are rejected with their line number
+     */
+    @Test
+    public void testInvalidLines() throws Exception {
+        String valid = "{\"search\": \"apple iphone\", \"weight\": 100}\n\n";
+        for (String[] invalid : new String[][]{
+                {".jsonl", "{\"weight\": 100}", "Line 3: no text in search"},
+                {".jsonl", "{\"search\": \"apple ipad\", \"weight\": \"high\"}", "Line 3: weight is not a number: high"},
+                {".jsonl", "[\"apple ipad\"]", "Line 3: not a json object"},
+                {".tsv", "apple ipad\thigh", "Line 3: weight is not a number: high"}}) {
+            String first = ".tsv".equals(invalid[0]) ? "apple iphone\t100\n\n" : valid;
+            Path input = createTempFile("suggestions", invalid[0]);
+            Files.write(input, (first + invalid[1] + "\n").getBytes(StandardCharsets.UTF_8));
+            IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () ->
+                    AutocompleteIndexBuilderTool.main(new String[]{
+                            "-conf", getFile("solr/collection1").getAbsolutePath(),
+                            "-index", createTempDir("built").toString(),
+                            "-input", input.toString()}));
+            assertEquals(e.getMessage(), invalid[2], e.getMessage());
+        }
+    }
+
+    /**
+     * Build through {@link AutocompleteSuggester#build(InputIterator)}: many batches on several threads,
+     * merged into a single segment and searchable right away
+     */
+    @Test
+    public void testBuildFromInputIterator() throws Exception {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            texts.add("product " + i + " model " + (i % 7));
+        }
+
+        IndexSchema schema = h.getCore().getLatestSchema();
+        IndexGenerations generations = new IndexGenerations(createTempDir("generations"));
+        try (AutocompleteSuggester suggester = suggester(new ByteBuffersDirectory())) {
+            suggester.setIndexBuilder(new AutocompleteIndexBuilder(schema, fields(), 4));
+            suggester.setBuildAside(generations);
+            suggester.build(inputIterator(texts));
+
+            assertEquals(texts.size(), suggester.getCount());
+            try (Directory dir = FSDirectory.open(generations.getPath(generations.getCurrent()));
+                 DirectoryReader reader = DirectoryReader.open(dir)) {
+                assertEquals(1, reader.leaves().size());
+            }
+            List<LookupResult> results = suggester.lookup2("product 2999", 10, true, true);
+            assertEquals("product 2999 model 3", results.get(0).key.toString());
+
+            // a new build replaces the index
+            suggester.build(inputIterator(texts.subList(0, 10)));
+            assertEquals(10, suggester.getCount());
+        }
+    }
+
+    private static InputIterator inputIterator(List<String> texts) {
+        Iterator<String> iterator = texts.iterator();
+        return new InputIterator() {
+            private String current;
+
+            @Override
+            public BytesRef next() {
+                current = iterator.hasNext() ? iterator.next() : null;
+                return current == null ? null : new BytesRef(current);
+            }
+
+            @Override
+            public long weight() {
+                return current.length();
+            }
+
+            @Override
+            public BytesRef payload() {
+                return null;
+            }
+
+            @Override
+            public boolean hasPayloads() {
+                return false;
+            }
+
+            @Override
+            public Set<BytesRef> contexts() {
+                return null;
+            }
+
+            @Override
+            public boolean hasContexts() {
+                return false;
+            }
+        };
+    }
+
+    private static List<String> results(List<LookupResult> results) {
+        List<String> keys = new ArrayList<>();
+        for (LookupResult result : results) {
+            keys.add(result.key + "|" + result.highlightKey + "|" + result.value + "|" + result.contexts);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.util.Utils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Json contexts copied as they are stored into json responses, parsed for the other response writers
+ */
+public class AutocompleteRawJsonContextTest extends SolrTestCaseJ4 {
+    private static final String HANDLER = "/autocomplete";
+
+    private static final String NESTED = "{\"category\" : \"phone\", \"ids\":[1, 2.5e3, -0.5],"
+            + " \"brand\": {\"name\": \"App\\u006ce \\\"inc\\\"\", \"new\": true, \"logo\": null}}";
+    private static final String ARRAY = "[\"tablet\", {\"size\": 11}]";
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        System.setProperty("enable.update.log", "false");
+        initCore("solrconfig.xml", "schema.xml");
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        clearIndex();
+        assertU(adoc("id", "1", "search", "apple iphone", "weight", "300", "categories", NESTED));
+        assertU(adoc("id", "2", "search", "apple ipad", "weight", "200", "categories", ARRAY));
+        assertU(adoc("id", "3", "search", "apple watch", "weight", "100", "categories", "{\"category\": watch}"));
+        assertU(adoc("id", "4", "search", "apple tv", "weight", "50"));
+        assertU(commit());
+    }
+
+    private static String query(String wt, boolean raw) throws Exception {
+        return h.query(HANDLER, req("q", "apple", "wt", wt, "suggest.firstContextOnly", "false",
+                "suggest.contextRawJson", String.valueOf(raw)));
+    }
+
+    /**
+     * @return the suggestions of a response, after the echoed params
+     */
+    private static String suggest(String response) {
+        return response.substring(response.lastIndexOf("suggest"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> hits(String json) {
+        Map<String, Object> response = (Map<String, Object>) Utils.fromJSONString(json);
+        Map<String, Object> suggest = (Map<String, Object>) ((Map<String, Object>) response.get("suggest")).get("default");
+        return (List<Map<String, Object>>) ((Map<String, Object>) suggest.get("response")).get("hits");
+    }
+
+    @Test
+    public void testJsonWrittenAsStored() throws Exception {
+        String raw = query("json", true);
+        assertTrue(raw, raw.contains("\"categories\":" + NESTED));
+        assertTrue(raw, raw.contains("\"categories\":" + ARRAY));
+
+        List<Map<String, Object>> hits = hits(raw);
+        assertEquals(4, hits.size());
+        assertEquals(hits(query("json", false)), hits);
+        assertEquals("Apple \"inc\"", ((Map<?, ?>) ((Map<?, ?>) hits.get(0).get("categories")).get("brand")).get("name"));
+        // invalid and missing contexts are left out
+        assertNull(hits.get(2).get("categories"));
+        assertNull(hits.get(3).get("categories"));
+    }
+
+    @Test
+    public void testParsedForTheOtherWriters() throws Exception {
+        for (String wt : new String[]{"xml", "python"}) {
+            String raw = query(wt, true);
+            String parsed = query(wt, false);
+            assertEquals(suggest(parsed), suggest(raw));
+        }
+    }
+
+    @Test
+    public void testSharedContextWrittenAgain() throws Exception {
+        String first = query("json", true);
+        String second = query("json", true);
+        assertEquals(suggest(first), suggest(second));
+    }
+
+    /**
+     * Requests with and without raw json keep their own value of the shared contexts
+     */
+    @Test
+    public void testRawAndParsedAlternate() throws Exception {
+        String raw = query("json", true);
+        String parsed = query("json", false);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(suggest(raw), suggest(query("json", true)));
+            assertEquals(suggest(parsed), suggest(query("json", false)));
+        }
+    }
+}
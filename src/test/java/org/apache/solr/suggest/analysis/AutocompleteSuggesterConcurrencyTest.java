@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.NormalAnalyzer;
+import org.apache.lucene.analysis.PositionAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.similarities.AnotherCustomAutocompleteSimilarity;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.solr.suggest.analyzing.AutocompleteSuggester;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers a suggester with 64 concurrent lookups mixed with metrics calls, while its searcher is refreshed
+ * by the lookups themselves when the index changes (reopen mode) or in background, and checks that the threads
+ * almost never block on a monitor.
+ */
+public class AutocompleteSuggesterConcurrencyTest {
+
+    private static final int THREADS = 64;
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void testReopenOnEachLookup() throws Exception {
+        stress(0L);
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        stress(1L);
+    }
+
+    private void stress(long refreshInterval) throws Exception {
+        Directory dir = new ByteBuffersDirectory();
+        Map<String, Analyzer> analyzers = new HashMap<>();
+        analyzers.put("search_payload", new PositionAnalyzer());
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new PerFieldAnalyzerWrapper(new NormalAnalyzer(), analyzers)));
+        AutocompleteSuggesterRefreshTest.addDoc(writer, "1", "apple iphone");
+        AutocompleteSuggesterRefreshTest.addDoc(writer, "2", "apple ipad");
+        writer.commit();
+
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(dir, 0, true, true,
+                AutocompleteSuggesterRefreshTest.fields(), 1f, null, new AnotherCustomAutocompleteSimilarity(), false, refreshInterval, 0)) {
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            AtomicInteger lookups = new AtomicInteger();
+            AtomicLong blocked = new AtomicLong();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        // first uses (class loading, per thread analyzers) are not measured
+                        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                            run(suggester, thread);
+                        }
+                        long blockedBefore = threads.getThreadInfo(Thread.currentThread().getId()).getBlockedCount();
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            if (run(suggester, thread)) {
+                                lookups.incrementAndGet();
+                            }
+                        }
+                        blocked.addAndGet(threads.getThreadInfo(Thread.currentThread().getId()).getBlockedCount() - blockedBefore);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+            assertNull(String.valueOf(failure.get()), failure.get());
+            assertEquals(THREADS / 8 * 7 * ITERATIONS, lookups.get());
+            // a lock shared by the lookups or the metrics would block most of the calls of 64 threads
+            int calls = THREADS * ITERATIONS;
+            assertTrue(blocked.get() + " monitor blocks for " + calls + " calls", blocked.get() < calls / 100);
+            writer.close();
+        }
+    }
+
+    /**
+     * @return true if the call was a lookup, false for metrics
+     */
+    private static boolean run(AutocompleteSuggester suggester, int thread) throws Exception {
+        if (thread % 8 == 0) {
+            assertEquals(2, suggester.getCount());
+            assertTrue(suggester.ramBytesUsed() > 0);
+            suggester.getChildResources();
+            return false;
+        }
+        assertEquals(2, suggester.lookup2("apple", 5, true, false).size());
+        return true;
+    }
+
+    @Test
+    public void testConcurrentSegmentSearch() throws Exception {
+        Directory dir = new ByteBuffersDirectory();
+        Map<String, Analyzer> analyzers = new HashMap<>();
+        analyzers.put("search_payload", new PositionAnalyzer());
+        IndexWriterConfig config = new IndexWriterConfig(new PerFieldAnalyzerWrapper(new NormalAnalyzer(), analyzers));
+        config.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter writer = new IndexWriter(dir, config);
+        // enough segments for several slices
+        for (int i = 0; i < 24; i++) {
+            AutocompleteSuggesterRefreshTest.addDoc(writer, "" + i, i % 2 == 0 ? "apple iphone " + i : "red bike " + i);
+            writer.commit();
+        }
+
+        try (AutocompleteSuggester serial = new AutocompleteSuggester(dir, 0, true, true,
+                AutocompleteSuggesterRefreshTest.fields(), 1f, null, new AnotherCustomAutocompleteSimilarity(), false, 0L, 0);
+             AutocompleteSuggester concurrent = new AutocompleteSuggester(new FilterDirectory(dir) {
+                 @Override
+                 public void close() {
+                     // closed by the serial suggester
+                 }
+             }, 0, true, true, AutocompleteSuggesterRefreshTest.fields(), 1f, null, new AnotherCustomAutocompleteSimilarity(), false, 0L, 4)) {
+
+            List<LookupResult> expected = serial.lookup2("apple", 5, true, false);
+            List<LookupResult> results = concurrent.lookup2("apple", 5, true, false);
+
+            assertEquals(5, results.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).key.toString(), results.get(i).key.toString());
+                assertEquals(expected.get(i).value, results.get(i).value);
+            }
+            writer.close();
+        }
+    }
+}
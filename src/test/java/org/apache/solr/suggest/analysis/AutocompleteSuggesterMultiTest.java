@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.SolrCache;
+import org.apache.solr.spelling.suggest.SuggesterResult;
+import org.apache.solr.util.BaseTestHarness;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.xpath.XPathExpressionException;
+import java.lang.invoke.MethodHandles;
+
+public class AutocompleteSuggesterMultiTest extends SolrTestCaseJ4 {
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    public static final String HANDLER = "/autocomplete";
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        System.setProperty("enable.update.log", "false");
+        System.setProperty("solr.directoryFactory", "solr.StandardDirectoryFactory");
+        initCore("solrconfig4.xml", "schema.xml");
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        clearIndex();
+        AutocompleteSuggesterTest.index();
+        assertU(commit());
+        assertU(optimize());
+    }
+
+    @Test
+    public void testFanOut() {
+        SolrQueryRequest request = req("q", "apple", "suggest.dictionary", "second", "suggest.dictionary", "default");
+
+        String order1 = "//response/lst[@name='suggest']/lst[1][@name='second']";
+        String order2 = "//response/lst[@name='suggest']/lst[2][@name='default']";
+        String tests1 = "//response/lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='5']";
+        String tests2 = "//response/lst[@name='suggest']/lst[@name='second']/lst[@name='response']/int[@name='numFound' and text()='5']";
+        String test1 = "//response/lst[@name='suggest']/lst[@name='second']/lst[@name='response']/arr[@name='hits']//*[1]/str[@name='searchHighlight' and text()='[apple] ipad']";
+
+        assertQ("", HANDLER, request, order1, order2, tests1, tests2, test1);
+
+        request = req("q", "apple", "suggest.dictionary", "default", "suggest.dictionary", "second");
+        order1 = "//response/lst[@name='suggest']/lst[1][@name='default']";
+        order2 = "//response/lst[@name='suggest']/lst[2][@name='second']";
+
+        assertQ("", HANDLER, request, order1, order2, tests1, tests2, test1);
+    }
+
+    @Test
+    public void testMinSizeQuery() {
+        SolrQueryRequest request = req("q", "ap", "suggest.minSizeQuery", "3");
+        String tests = "count(//response/lst[@name='suggest']/*)=0";
+        assertQ("", HANDLER, request, tests);
+
+        // not kept by the next request
+        request = req("q", "ap");
+        tests = "//response/lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='5']";
+        assertQ("", HANDLER, request, tests);
+    }
+
+    @Test
+    public void testMaxDocsScored() {
+        SolrQueryRequest request = req("q", "apple", "suggest.maxDocsScored", "1");
+        String partial = "//response/lst[@name='responseHeader']/bool[@name='partialResults' and text()='true']";
+        String tests = "//response/lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='1']";
+        assertQ("", HANDLER, request, partial, tests);
+
+        // partial results are not cached
+        request = req("q", "apple");
+        String complete = "count(//response/lst[@name='responseHeader']/bool[@name='partialResults'])=0";
+        tests = "//response/lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='5']";
+        assertQ("", HANDLER, request, complete, tests);
+    }
+
+    /**
+     * A lookup matching exactly maxDocsScored documents is not cut off
+     */
+    @Test
+    public void testExactlyMaxDocsScored() {
+        SolrQueryRequest request = req("q", "apple", "suggest.maxDocsScored", "5");
+        String complete = "count(//response/lst[@name='responseHeader']/bool[@name='partialResults'])=0";
+        String tests = "//response/lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='5']";
+        assertQ("", HANDLER, request, complete, tests);
+
+        request = req("q", "apple", "suggest.maxDocsScored", "4");
+        String partial = "//response/lst[@name='responseHeader']/bool[@name='partialResults' and text()='true']";
+        tests = "//response/lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='4']";
+        assertQ("", HANDLER, request, partial, tests);
+    }
+
+    @Test
+    public void testTimeAllowed() {
+        SolrQueryRequest request = req("q", "apple", "suggest.timeAllowed", "60000");
+        String complete = "count(//response/lst[@name='responseHeader']/bool[@name='partialResults'])=0";
+        String tests = "//response/lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='5']";
+        assertQ("", HANDLER, request, complete, tests);
+    }
+    @Test
+    public void testWarmupQueries() throws Exception {
+        // replayed by the new searcher listener of the last commit
+        assertNotNull(getCached("default_ap_null_7_true_true"));
+        assertNotNull(getCached("second_bi_null_7_true_true"));
+
+        String gauge = h.getCore().getCoreMetricManager().getRegistry().getMetrics().keySet().stream()
+                .filter(name -> name.contains("autocomplete") && name.endsWith("warmupTime"))
+                .findFirst().orElse(null);
+        assertNotNull(gauge);
+    }
+
+    @Test
+    public void testCacheRegeneration() throws Exception {
+        assertQ("", HANDLER, req("q", "t"),
+                "//response/lst[@name='suggest']/lst[@name='default']/lst[@name='response']/int[@name='numFound' and text()='2']");
+        assertNotNull(getCached("default_t_null_7_true_true"));
+
+        assertU(adoc("id", "10", "search", "tablet", "weight", "100"));
+        assertU(commit());
+
+        // hot key computed again on the new searcher, not copied
+        SuggesterResult result = getCached("default_t_null_7_true_true");
+        assertNotNull(result);
+        assertEquals(3, result.getLookupResult("default", "t").size());
+    }
+
+    private static SuggesterResult getCached(String key) throws Exception {
+        return h.getCore().withSearcher(searcher -> {
+            SolrCache<String, SuggesterResult> cache = searcher.getCache("autocompleteCache");
+            return cache.get(key);
+        });
+    }
+
+    private static void assertQ(String message, String handler, SolrQueryRequest req, String... tests) {
+        try {
+            ModifiableSolrParams xmlWriterTypeParams = new ModifiableSolrParams(req.getParams());
+            xmlWriterTypeParams.set("wt", new String[]{"xml"});
+            xmlWriterTypeParams.set("indent", new String[]{xmlWriterTypeParams.get("indent", "off")});
+            req.setParams(xmlWriterTypeParams);
+            String response = h.query(handler, req);
+
+            String results = BaseTestHarness.validateXPath(response, tests);
+            if (null != results) {
+                String msg = "REQUEST FAILED: xpath=" + results + "\n\txml response was: " + response + "\n\trequest was:" + req.getParamString();
+                log.error(msg);
+                throw new RuntimeException(msg);
+            }
+        } catch (XPathExpressionException var8) {
+            throw new RuntimeException("XPath is invalid", var8);
+        } catch (Exception var9) {
+            SolrException.log(log, "REQUEST FAILED: " + req.getParamString(), var9);
+            throw new RuntimeException("Exception during query", var9);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.NormalAnalyzer;
+import org.apache.lucene.analysis.PositionAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.similarities.AnotherCustomAutocompleteSimilarity;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.solr.suggest.analyzing.AutocompleteSuggester;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.solr.suggest.analysis.AutocompleteSuggesterRefreshTest.addDoc;
+import static org.apache.solr.suggest.analysis.AutocompleteSuggesterRefreshTest.fields;
+import static org.junit.Assert.assertEquals;
+
+public class AutocompleteSuggesterQueryCacheTest {
+
+    private static Directory newIndex() throws IOException {
+        Directory dir = new ByteBuffersDirectory();
+        Map<String, Analyzer> analyzers = new HashMap<>();
+        analyzers.put("search_payload", new PositionAnalyzer());
+        try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new PerFieldAnalyzerWrapper(new NormalAnalyzer(), analyzers)))) {
+            addDoc(writer, "1", "apple iphone");
+            addDoc(writer, "2", "apple ipad");
+            addDoc(writer, "3", "bike red");
+        }
+        return dir;
+    }
+
+    @Test
+    public void testRepeatedKeystrokes() throws Exception {
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(newIndex(), 0, true, true, fields(), 1f, null,
+                new AnotherCustomAutocompleteSimilarity(), false, 0L, 0, 16)) {
+            List<LookupResult> first = suggester.lookup2("apple", 5, true, true);
+            assertEquals(0, suggester.getQueryCacheHits());
+
+            List<LookupResult> second = suggester.lookup2("apple", 5, true, true);
+            assertEquals(1, suggester.getQueryCacheHits());
+            assertEquals(2, second.size());
+            for (int i = 0; i < first.size(); i++) {
+                assertEquals(first.get(i).key, second.get(i).key);
+                assertEquals(first.get(i).highlightKey, second.get(i).highlightKey);
+                assertEquals(first.get(i).value, second.get(i).value);
+            }
+
+            // other occur, other query
+            suggester.lookup2("apple", 5, false, true);
+            assertEquals(1, suggester.getQueryCacheHits());
+        }
+    }
+
+    @Test
+    public void testCaseVariantsShareAnEntry() throws Exception {
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(newIndex(), 0, true, true, fields(), 1f, null,
+                new AnotherCustomAutocompleteSimilarity(), false, 0L, 0, 16)) {
+            List<LookupResult> lower = suggester.lookup2("apple", 5, true, true);
+            List<LookupResult> upper = suggester.lookup2("  APPLE", 5, true, true);
+            assertEquals(1, suggester.getQueryCacheHits());
+            assertEquals(2, upper.size());
+            for (int i = 0; i < lower.size(); i++) {
+                assertEquals(lower.get(i).key, upper.get(i).key);
+            }
+
+            // a finished word is not a prefix
+            suggester.lookup2("apple ", 5, true, true);
+            assertEquals(1, suggester.getQueryCacheHits());
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(newIndex(), 0, true, true, fields(), 1f, null,
+                new AnotherCustomAutocompleteSimilarity(), false, 0L, 0, 0)) {
+            suggester.lookup2("bike", 5, true, true);
+            assertEquals(1, suggester.lookup2("bike", 5, true, true).size());
+            assertEquals(0, suggester.getQueryCacheHits());
+        }
+    }
+}
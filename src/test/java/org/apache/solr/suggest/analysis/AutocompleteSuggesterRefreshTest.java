@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.NormalAnalyzer;
+import org.apache.lucene.analysis.PositionAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.similarities.AnotherCustomAutocompleteSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.suggest.analyzing.AutocompleteSuggester;
+import org.apache.solr.suggest.analyzing.SearcherStats;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_PAYLOAD;
+import static org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory.FIELD_TEXT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class AutocompleteSuggesterRefreshTest {
+
+    private Directory dir;
+    private IndexWriter writer;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = new ByteBuffersDirectory();
+        Map<String, Analyzer> analyzers = new HashMap<>();
+        analyzers.put("search_payload", new PositionAnalyzer());
+        writer = new IndexWriter(dir, new IndexWriterConfig(new PerFieldAnalyzerWrapper(new NormalAnalyzer(), analyzers)));
+    }
+
+    static Map<String, String> fields() {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD, "search");
+        fields.put(FIELD_PAYLOAD, "search_payload");
+        fields.put(FIELD_TEXT, "search_text");
+        return fields;
+    }
+
+    static void addDoc(IndexWriter writer, String id, String text) throws IOException {
+        FieldType payloadType = new FieldType(TextField.TYPE_NOT_STORED);
+        payloadType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        Document doc = new Document();
+        doc.add(new StringField("id", id, Field.Store.NO));
+        doc.add(new TextField("search", text, Field.Store.NO));
+        doc.add(new Field("search_payload", text, payloadType));
+        doc.add(new SortedDocValuesField("search_text", new BytesRef(text)));
+        writer.addDocument(doc);
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        addDoc(writer, "1", "apple iphone");
+        writer.commit();
+
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(dir, 0, true, true, fields(), 1f, null,
+                new AnotherCustomAutocompleteSimilarity(), false, 10L, 0)) {
+            assertEquals(1, suggester.lookup2("apple", 5, true, false).size());
+
+            addDoc(writer, "2", "apple ipad");
+            writer.commit();
+
+            List<LookupResult> results = suggester.lookup2("apple", 5, true, false);
+            for (int i = 0; i < 100 && results.size() < 2; i++) {
+                Thread.sleep(20);
+                results = suggester.lookup2("apple", 5, true, false);
+            }
+            assertEquals(2, results.size());
+            assertEquals(2, suggester.getCount());
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testNoIndexYet() throws Exception {
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(dir, 0, true, true, fields(), 1f, null,
+                new AnotherCustomAutocompleteSimilarity(), false, 10L, 0)) {
+            assertEquals(0, suggester.lookup2("apple", 5, true, false).size());
+
+            addDoc(writer, "1", "apple iphone");
+            writer.commit();
+
+            List<LookupResult> results = suggester.lookup2("apple", 5, true, false);
+            for (int i = 0; i < 100 && results.isEmpty(); i++) {
+                Thread.sleep(20);
+                results = suggester.lookup2("apple", 5, true, false);
+            }
+            assertEquals(1, results.size());
+            assertEquals("apple iphone", results.get(0).key.toString());
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testExternalSearcherNotMutated() throws Exception {
+        addDoc(writer, "1", "apple iphone");
+        writer.commit();
+
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(dir, 0, true, true, fields(), 1f, null,
+                new AnotherCustomAutocompleteSimilarity(), false, 0L, 0);
+             DirectoryReader reader = DirectoryReader.open(dir)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            Similarity before = searcher.getSimilarity();
+
+            assertEquals(1, suggester.lookup(searcher, "apple", 5, true, false, false).size());
+            assertSame(before, searcher.getSimilarity());
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testReopenedOnlyWhenChanged() throws Exception {
+        addDoc(writer, "1", "apple iphone");
+        writer.commit();
+
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(dir, 0, true, true, fields(), 1f, null,
+                new AnotherCustomAutocompleteSimilarity(), false, 0L, 0)) {
+            assertEquals(1, suggester.lookup2("apple", 5, true, false).size());
+            SearcherStats stats = suggester.getStats();
+            assertEquals(1, suggester.lookup2("apple", 5, true, false).size());
+            assertSame(stats, suggester.getStats());
+
+            addDoc(writer, "2", "apple ipad");
+            writer.commit();
+
+            assertEquals(2, suggester.lookup2("apple", 5, true, false).size());
+            assertNotSame(stats, suggester.getStats());
+            assertEquals(2, suggester.getStats().getNumDocs());
+            writer.close();
+        }
+    }
+
+    /**
+     * Requests still running on the previous searcher of a commit do not replace the view of the new one,
+     * the statistics reported are the ones of the searcher opened last by the core
+     */
+    @Test
+    public void testViewPerExternalReader() throws Exception {
+        addDoc(writer, "1", "apple iphone");
+        writer.commit();
+
+        try (AutocompleteSuggester suggester = new AutocompleteSuggester(dir, 0, true, true, fields(), 1f, null,
+                new AnotherCustomAutocompleteSimilarity(), false, 0L, 0);
+             DirectoryReader oldReader = DirectoryReader.open(dir)) {
+            IndexSearcher oldSearcher = new IndexSearcher(oldReader);
+            suggester.newSearcher(oldSearcher);
+            assertEquals(1, suggester.lookup(oldSearcher, "apple", 5, true, false, false).size());
+
+            addDoc(writer, "2", "apple ipad");
+            addDoc(writer, "3", "red bike");
+            writer.commit();
+            try (DirectoryReader newReader = DirectoryReader.open(dir)) {
+                IndexSearcher newSearcher = new IndexSearcher(newReader);
+                suggester.newSearcher(newSearcher);
+                SearcherStats stats = suggester.getStats();
+                assertEquals(3, stats.getNumDocs());
+
+                assertEquals(1, suggester.lookup(oldSearcher, "apple", 5, true, false, false).size());
+                assertEquals(2, suggester.lookup(newSearcher, "apple", 5, true, false, false).size());
+                assertSame(stats, suggester.getStats());
+                assertEquals(3, suggester.getCount());
+            }
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FileSwitchDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.solr.suggest.analyzing.DirectoryLoader;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+public class DirectoryLoaderTest extends LuceneTestCase {
+
+    private static Path buildIndex() throws Exception {
+        Path path = createTempDir("index");
+        try (Directory dir = FSDirectory.open(path);
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()))) {
+            for (int i = 0; i < 100; i++) {
+                Document doc = new Document();
+                doc.add(new StringField("id", String.valueOf(i), Field.Store.YES));
+                doc.add(new TextField("search", "apple iphone " + i, Field.Store.YES));
+                writer.addDocument(doc);
+            }
+            writer.forceMerge(1);
+        }
+        return path;
+    }
+
+    private static void assertSearchable(Directory dir) throws Exception {
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            assertEquals(100, reader.numDocs());
+            assertEquals(100, new IndexSearcher(reader).count(new TermQuery(new Term("search", "apple"))));
+        }
+    }
+
+    @Test
+    public void testMMapPreloadsPostings() throws Exception {
+        Path path = buildIndex();
+        long postingBytes = 0;
+        int postingFiles = 0;
+        try (Directory fs = FSDirectory.open(path)) {
+            for (String file : fs.listAll()) {
+                if (DirectoryLoader.DEFAULT_PRELOAD_EXTENSIONS.contains(FileSwitchDirectory.getExtension(file))) {
+                    postingBytes += fs.fileLength(file);
+                    postingFiles++;
+                }
+            }
+        }
+        assertTrue(postingFiles > 0);
+
+        DirectoryLoader loader = new DirectoryLoader(DirectoryLoader.Type.MMAP, DirectoryLoader.DEFAULT_PRELOAD_EXTENSIONS);
+        try (Directory dir = loader.open(path)) {
+            assertTrue(dir instanceof FileSwitchDirectory);
+            assertSearchable(dir);
+        }
+        DirectoryLoader.Report report = loader.getLastReport();
+        assertEquals(postingFiles, report.getFiles());
+        assertEquals(postingBytes, report.getBytes());
+    }
+
+    @Test
+    public void testHeapCopy() throws Exception {
+        Path path = buildIndex();
+        DirectoryLoader loader = new DirectoryLoader(DirectoryLoader.Type.HEAP, Set.of());
+        try (Directory dir = loader.open(path)) {
+            assertTrue(dir instanceof ByteBuffersDirectory);
+            // the copy does not depend on the files anymore
+            try (Directory fs = FSDirectory.open(path)) {
+                for (String file : fs.listAll()) {
+                    fs.deleteFile(file);
+                }
+            }
+            assertSearchable(dir);
+        }
+        assertTrue(loader.getLastReport().getBytes() > 0);
+    }
+
+    @Test
+    public void testNio() throws Exception {
+        Path path = buildIndex();
+        DirectoryLoader loader = new DirectoryLoader(DirectoryLoader.Type.fromString("nio"), DirectoryLoader.DEFAULT_PRELOAD_EXTENSIONS);
+        try (Directory dir = loader.open(path)) {
+            assertTrue(dir instanceof NIOFSDirectory);
+            assertSearchable(dir);
+        }
+        assertEquals(0, loader.getLastReport().getBytes());
+    }
+
+    @Test
+    public void testMissingDirectory() throws Exception {
+        Path path = createTempDir("missing").resolve("index");
+        for (DirectoryLoader.Type type : DirectoryLoader.Type.values()) {
+            try (Directory dir = new DirectoryLoader(type, DirectoryLoader.DEFAULT_PRELOAD_EXTENSIONS).open(path)) {
+                assertFalse(DirectoryReader.indexExists(dir));
+            }
+        }
+        expectThrows(IllegalArgumentException.class, () -> DirectoryLoader.Type.fromString("ram"));
+    }
+}
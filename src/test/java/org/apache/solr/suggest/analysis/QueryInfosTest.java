@@ -0,0 +1,141 @@
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.NormalAnalyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.solr.suggest.analyzing.QueryInfos;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QueryInfosTest {
+
+    private static final String[] WORDS = {"apple", "iphone", "12", "Thermo", "mix", "v\u00e9lo", "l'arbre", "a", "-", "!", " "};
+
+    @Test
+    public void testParse() {
+        QueryInfos queryInfos = QueryInfos.parse("apple iphone 1", new NormalAnalyzer());
+        assertEquals("[apple, iphone]", queryInfos.getMatchedTokens().toString());
+        assertEquals("1", queryInfos.getPrefixToken());
+        assertEquals("[appleiphone, iphone1]", queryInfos.getMatchedTokensConcat().toString());
+        assertEquals(3, queryInfos.getNbWords());
+        assertEquals(12, queryInfos.getNbLetters());
+        assertEquals("iphone", new String(queryInfos.getTokenChars(), queryInfos.getTokenStart(1),
+                queryInfos.getTokenEnd(1) - queryInfos.getTokenStart(1)));
+
+        queryInfos = QueryInfos.parse("apple apple ", new NormalAnalyzer());
+        assertEquals("[apple]", queryInfos.getMatchedTokens().toString());
+        assertNull(queryInfos.getPrefixToken());
+        assertEquals(2, queryInfos.getNbWords());
+    }
+
+    /**
+     * Same tokens, prefix and concatenations as the previous implementation
+     */
+    @Test
+    public void testSameAsLegacy() {
+        Analyzer analyzer = new NormalAnalyzer();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int nbWords = 1 + random.nextInt(6);
+            for (int j = 0; j < nbWords; j++) {
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+                if (random.nextBoolean()) {
+                    sb.append(' ');
+                }
+            }
+            String text = sb.toString();
+            Legacy legacy = Legacy.parse(text, analyzer);
+            QueryInfos queryInfos = QueryInfos.parse(text, analyzer);
+
+            assertEquals(text, legacy.prefixToken, queryInfos.getPrefixToken());
+            assertEquals(text, new ArrayList<>(legacy.matchedTokens), new ArrayList<>(queryInfos.getMatchedTokens()));
+            assertEquals(text, legacy.matchedTokensConcat, queryInfos.getMatchedTokensConcat());
+            assertEquals(text, legacy.nbLetters, queryInfos.getNbLetters());
+            assertEquals(text, legacy.nbWords, queryInfos.getNbWords());
+            assertEquals(text, legacy.lastWordFinished, queryInfos.isLastWordFinished());
+        }
+    }
+
+    /**
+     * The current parsing allocates less by keystroke than the previous one
+     */
+    @Test
+    public void testAllocations() {
+        Analyzer analyzer = new NormalAnalyzer();
+        Allocations.assertAllocatesLess("legacy", keystroke -> Legacy.parse(keystroke, analyzer),
+                "current", keystroke -> QueryInfos.parse(keystroke, analyzer));
+    }
+
+    /**
+     * The previous implementation, reference of the tests
+     */
+    static final class Legacy {
+        String prefixToken;
+        Set<String> matchedTokens = new LinkedHashSet<>();
+        List<String> matchedTokensConcat = new ArrayList<>();
+        int nbLetters;
+        int nbWords;
+        boolean lastWordFinished;
+
+        static Legacy parse(String text, Analyzer analyzer) {
+            Legacy queryInfos = new Legacy();
+            queryInfos.lastWordFinished = text.charAt(text.length() - 1) == ' ';
+
+            try (TokenStream ts = analyzer.tokenStream("", new StringReader(text))) {
+                ts.reset();
+                final CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+                final OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
+
+                String lastToken = null;
+                int maxEndOffset = -1;
+                while (ts.incrementToken()) {
+                    if (lastToken != null) {
+                        queryInfos.matchedTokens.add(lastToken);
+                        queryInfos.nbLetters += lastToken.length();
+                        queryInfos.nbWords++;
+                    }
+                    lastToken = termAtt.toString();
+                    maxEndOffset = Math.max(maxEndOffset, offsetAtt.endOffset());
+                }
+                ts.end();
+
+                if (lastToken != null) {
+                    if (maxEndOffset == offsetAtt.endOffset()) {
+                        queryInfos.prefixToken = lastToken;
+                    } else {
+                        queryInfos.matchedTokens.add(lastToken);
+                    }
+                    queryInfos.nbLetters += lastToken.length();
+                    queryInfos.nbWords++;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+
+            String lastWord = null;
+            for (String w : queryInfos.matchedTokens) {
+                if (lastWord != null) {
+                    queryInfos.matchedTokensConcat.add(lastWord + w);
+                }
+                lastWord = w;
+            }
+            if (queryInfos.prefixToken != null && queryInfos.prefixToken.trim().length() > 0) {
+                queryInfos.matchedTokensConcat.add(lastWord + queryInfos.prefixToken);
+            }
+            return queryInfos;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.NormalAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.solr.suggest.analyzing.SearcherStats;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearcherStatsTest {
+
+    @Test
+    public void testCompute() throws Exception {
+        try (Directory dir = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new NormalAnalyzer()))) {
+            AutocompleteSuggesterRefreshTest.addDoc(writer, "1", "apple iphone");
+            AutocompleteSuggesterRefreshTest.addDoc(writer, "2", "apple ipad");
+            writer.commit();
+            AutocompleteSuggesterRefreshTest.addDoc(writer, "3", "red bike");
+            writer.commit();
+
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                SearcherStats stats = SearcherStats.compute(reader, List.of("search", "unknown"));
+
+                assertEquals(3, stats.getDocCount());
+                assertEquals(3, stats.getNumDocs());
+                assertEquals(2, stats.getSegments().size());
+                assertTrue(stats.getRamBytesUsed() > 0);
+
+                // apple iphone ipad + red bike
+                assertEquals(5L, (long) stats.getTermCounts().get("search"));
+                long[] histogram = stats.getDocFreqHistograms().get("search");
+                assertEquals(4, histogram[0]); // docFreq 1
+                assertEquals(1, histogram[1]); // apple, docFreq 2
+                assertFalse(stats.getTermCounts().containsKey("unknown"));
+
+                // the reopened reader shares the statistics of its unchanged segments
+                AutocompleteSuggesterRefreshTest.addDoc(writer, "4", "apple watch");
+                writer.commit();
+                try (DirectoryReader reopened = DirectoryReader.openIfChanged(reader)) {
+                    SearcherStats newStats = SearcherStats.compute(reopened, List.of("search"));
+                    assertEquals(4, newStats.getNumDocs());
+                    assertEquals(7L, (long) newStats.getTermCounts().get("search"));
+                    histogram = newStats.getDocFreqHistograms().get("search");
+                    assertEquals(6, histogram[0]); // apple watch counted in the new segment
+                    assertEquals(1, histogram[1]);
+                }
+            }
+        }
+    }
+}
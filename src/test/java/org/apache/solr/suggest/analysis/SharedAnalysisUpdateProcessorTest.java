@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analysis;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.response.SolrQueryResponse;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.schema.SharedAnalysisTextField;
+import org.apache.solr.schema.SharedTokens;
+import org.apache.solr.search.SolrIndexSearcher;
+import org.apache.solr.update.AddUpdateCommand;
+import org.apache.solr.update.processor.UpdateRequestProcessor;
+import org.apache.solr.util.RefCounted;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The default chain tokenizes the source text once, the reference chain "clone_autocomplete" clones it
+ * into each field before analysis: both must index the same terms, positions and payloads.
+ */
+public class SharedAnalysisUpdateProcessorTest extends SolrTestCaseJ4 {
+
+    static final String REFERENCE_CHAIN = "clone_autocomplete";
+    static final String SHARED_CHAIN = "concat_autocomplete";
+
+    private static final List<String> DERIVED_FIELDS = Arrays.asList(
+            "search_payload", "search_ngram", "search_payload_concat", "search_ngram_concat");
+
+    static final String[] WORDS = {"Apple", "iPhone", "12", "Cr\u00e8me", "br\u00fbl\u00e9e", "\u0152uf",
+            "v\u00e9lo", "THERMOMIX", "l'arbre", "a|b", "pro", "max", "apple", "256go", "noir", "d'occasion"};
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        System.setProperty("enable.update.log", "false");
+        System.setProperty("solr.directoryFactory", "solr.StandardDirectoryFactory");
+        initCore("solrconfig.xml", "schema.xml");
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        clearIndex();
+        assertU(commit());
+    }
+
+    /**
+     * Replayed shared tokens go through the filters of each field type like the text through its analyzer
+     */
+    @Test
+    public void testSameTokensAsAnalyzer() throws IOException {
+        Random random = new Random(42);
+        for (String fieldName : Arrays.asList("search", "search_payload", "search_ngram", "search_ngram_concat")) {
+            SchemaField field = h.getCore().getLatestSchema().getField(fieldName);
+            SharedAnalysisTextField type = (SharedAnalysisTextField) field.getType();
+            for (int i = 0; i < 200; i++) {
+                String text = randomTitle(random);
+                SharedTokens tokens = type.tokenize(text);
+                assertEquals(text, tokens.toString());
+                assertEquals(tokens(type.getIndexAnalyzer().tokenStream(fieldName, text)),
+                        tokens(type.createField(field, tokens).tokenStream(null, null)));
+            }
+        }
+    }
+
+    /**
+     * Closing the type releases its per thread chains, they are created again on next use
+     */
+    @Test
+    public void testUsableAfterClose() throws IOException {
+        SchemaField field = h.getCore().getLatestSchema().getField("search_ngram");
+        SharedAnalysisTextField type = (SharedAnalysisTextField) field.getType();
+        String text = "Cr\u00e8me br\u00fbl\u00e9e l'arbre";
+        List<String> expected = tokens(type.getIndexAnalyzer().tokenStream("search_ngram", text));
+        assertEquals(expected, tokens(type.createField(field, type.tokenize(text)).tokenStream(null, null)));
+
+        type.close();
+        assertEquals(expected, tokens(type.createField(field, type.tokenize(text)).tokenStream(null, null)));
+    }
+
+    @Test
+    public void testSameIndexAsReferenceChain() throws Exception {
+        Random random = new Random(7);
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            titles.add(randomTitle(random));
+        }
+        titles.add("l'arbre l'arbre Apple apple");
+        titles.add("");
+
+        for (int i = 0; i < titles.size(); i++) {
+            add(REFERENCE_CHAIN, Arrays.asList(new Object[]{"reference" + i, titles.get(i)}));
+            add(SHARED_CHAIN, Arrays.asList(new Object[]{"shared" + i, titles.get(i)}));
+        }
+        assertU(commit());
+
+        RefCounted<SolrIndexSearcher> ref = h.getCore().getSearcher();
+        try {
+            SolrIndexSearcher searcher = ref.get();
+            for (int i = 0; i < titles.size(); i++) {
+                int reference = docId(searcher, "reference" + i);
+                int shared = docId(searcher, "shared" + i);
+                for (String field : DERIVED_FIELDS) {
+                    assertEquals(titles.get(i) + " " + field,
+                            termVector(searcher.getIndexReader(), reference, field),
+                            termVector(searcher.getIndexReader(), shared, field));
+                    assertEquals(Arrays.asList(searcher.doc(reference).getValues(field)),
+                            Arrays.asList(searcher.doc(shared).getValues(field)));
+                }
+                assertEquals(Arrays.asList(searcher.doc(reference).getValues("search")),
+                        Arrays.asList(searcher.doc(shared).getValues("search")));
+            }
+        } finally {
+            ref.decref();
+        }
+    }
+
+    /**
+     * Add documents through a chain
+     *
+     * @param idsAndTitles id and search text of each document
+     */
+    private static void add(String chain, List<Object> idsAndTitles) throws IOException {
+        try (SolrQueryRequest req = req()) {
+            UpdateRequestProcessor processor = h.getCore().getUpdateProcessingChain(chain)
+                    .createProcessor(req, new SolrQueryResponse());
+            try {
+                for (int i = 0; i < idsAndTitles.size(); i += 2) {
+                    AddUpdateCommand cmd = new AddUpdateCommand(req);
+                    cmd.solrDoc = sdoc("id", idsAndTitles.get(i), "search", idsAndTitles.get(i + 1));
+                    processor.processAdd(cmd);
+                }
+                processor.finish();
+            } finally {
+                processor.close();
+            }
+        }
+    }
+
+    private static int docId(SolrIndexSearcher searcher, String id) throws IOException {
+        TopDocs hits = searcher.search(new TermQuery(new Term("id", id)), 1);
+        assertEquals(1, hits.totalHits.value);
+        return hits.scoreDocs[0].doc;
+    }
+
+    private static String termVector(IndexReader reader, int doc, String field) throws IOException {
+        Terms terms = reader.getTermVector(doc, field);
+        if (terms == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        TermsEnum termsEnum = terms.iterator();
+        BytesRef term;
+        while ((term = termsEnum.next()) != null) {
+            sb.append(term.utf8ToString()).append(':');
+            PostingsEnum postings = termsEnum.postings(null, PostingsEnum.ALL);
+            postings.nextDoc();
+            for (int i = 0; i < postings.freq(); i++) {
+                sb.append(postings.nextPosition()).append('/').append(postings.getPayload()).append(' ');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static List<String> tokens(TokenStream ts) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        try {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
+            PositionIncrementAttribute posIncAtt = ts.addAttribute(PositionIncrementAttribute.class);
+            PositionLengthAttribute posLenAtt = ts.addAttribute(PositionLengthAttribute.class);
+            TypeAttribute typeAtt = ts.addAttribute(TypeAttribute.class);
+            PayloadAttribute payloadAtt = ts.addAttribute(PayloadAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                tokens.add(termAtt + "|" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset()
+                        + "|" + posIncAtt.getPositionIncrement() + "|" + posLenAtt.getPositionLength()
+                        + "|" + typeAtt.type() + "|" + payloadAtt.getPayload());
+            }
+            ts.end();
+            tokens.add("end " + offsetAtt.endOffset() + "|" + posIncAtt.getPositionIncrement());
+        } finally {
+            ts.close();
+        }
+        return tokens;
+    }
+
+    private static String randomTitle(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < random.nextInt(12); j++) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(5) == 0 ? " - " : " ");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Highlighting scanned with the folding tables, against the token stream of the query analyzer it replaces
+ */
+public class HighlightTest extends SuggesterTestCase {
+
+    private static final String[] WORDS = {"Apple", "iPhone", "12", "Cr\u00e8me", "br\u00fbl\u00e9e", "\u0152uf",
+            "v\u00e9lo", "THERMOMIX", "l'arbre", "a|b", "Stra\u00dfe", "\u00c6ther", "\ud835\udc00pple", "x--y", "\u2474"};
+
+    private static AutocompleteSuggester suggester;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        initSuggesterCore();
+        suggester = suggester(build(List.of(new AutocompleteIndexBuilder.Suggestion("1", "apple", 1, null)), false));
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        if (suggester != null) {
+            suggester.close();
+            suggester = null;
+        }
+    }
+
+    /**
+     * Highlighting before the scan: the query analyzer run over the text
+     */
+    static String analyzed(AutocompleteSuggester suggester, String text, Set<String> matchedTokens, String prefixToken)
+            throws IOException {
+        try (TokenStream ts = suggester.queryAnalyzer.tokenStream("text", new StringReader(text))) {
+            CharTermAttribute termAtt = ts.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = ts.addAttribute(OffsetAttribute.class);
+            ts.reset();
+            StringBuilder sb = new StringBuilder();
+            int upto = 0;
+            while (ts.incrementToken()) {
+                String token = termAtt.toString();
+                int startOffset = offsetAtt.startOffset();
+                int endOffset = offsetAtt.endOffset();
+                if (upto < startOffset) {
+                    suggester.addNonMatch(sb, text.substring(upto, startOffset));
+                    upto = startOffset;
+                } else if (upto > startOffset) {
+                    continue;
+                }
+                if (matchedTokens.contains(token)) {
+                    suggester.addWholeMatch(sb, text.substring(startOffset, endOffset), token);
+                    upto = endOffset;
+                } else if (prefixToken != null && token.startsWith(prefixToken)) {
+                    suggester.addPrefixMatch(sb, text.substring(startOffset, endOffset), token, prefixToken);
+                    upto = endOffset;
+                }
+            }
+            ts.end();
+            int endOffset = offsetAtt.endOffset();
+            if (upto < endOffset) {
+                suggester.addNonMatch(sb, text.substring(upto));
+            }
+            return sb.toString();
+        }
+    }
+
+    static String text(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1 + random.nextInt(6); i > 0; i--) {
+            switch (random.nextInt(10)) {
+                case 0:
+                    sb.append(" .,-");
+                    break;
+                case 1:
+                    sb.append("a".repeat(250 + random.nextInt(20)));
+                    break;
+                default:
+                    sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            sb.append(random.nextBoolean() ? " " : "  ");
+        }
+        return random.nextBoolean() ? sb.toString().trim() : sb.toString();
+    }
+
+    /**
+     * Query typed over the words of the suggestions, with its last word cut
+     */
+    private static QueryInfos query(Random random) {
+        String query = text(random);
+        if (random.nextBoolean()) {
+            query = query.substring(0, 1 + random.nextInt(query.length()));
+        }
+        return QueryInfos.parse(query, suggester.queryAnalyzer);
+    }
+
+    @Test
+    public void testSameFragments() throws Exception {
+        assertEquals("[apple] [i]phone 12", suggester.highlight("apple iphone 12", Set.of("apple"), "i"));
+        assertEquals("[Cr\u00e8me] [br\u00fb]l\u00e9e !", suggester.highlight("Cr\u00e8me br\u00fbl\u00e9e !", Set.of("creme"), "bru"));
+        assertEquals("", suggester.highlight("", Set.of("apple"), "a"));
+        assertEquals(" .. ", suggester.highlight(" .. ", Set.of("apple"), null));
+
+        Random random = new Random(random().nextLong());
+        for (int i = 0; i < 5000; i++) {
+            String text = text(random);
+            QueryInfos query = query(random);
+            Set<String> matched = new HashSet<>(query.getMatchedTokens());
+            String prefix = query.getPrefixToken();
+            assertEquals(text + " / " + matched + " / " + prefix,
+                    analyzed(suggester, text, matched, prefix), suggester.highlight(text, matched, prefix));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.analysis.NormalAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Maximum scores of the position span scorers: sound bounds, and pruning of the top hits
+ */
+public class PositionSpanMaxScoreTest extends SuggesterTestCase {
+
+    private static final String[] WORDS = {"apple", "iphone", "ipad", "samsung", "galaxy", "tablet", "red", "bike",
+            "coffee", "machine", "black", "blue"};
+
+    private static final List<String> QUERIES = List.of("a", "i", "ip", "bl", "apple", "apple i", "iphon", "blak",
+            "samsung galaxi", "red bik", "coffe machine bl");
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        initSuggesterCore();
+    }
+
+    private static Directory build(int size, long seed) throws IOException {
+        return build(randomSuggestions(new Random(seed), size, WORDS, 4, false, random -> random.nextInt(100000)), false);
+    }
+
+    private static IndexSearcher searcher(DirectoryReader reader) {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        searcher.setSimilarity(h.getCore().getLatestSchema().getSimilarity());
+        searcher.setQueryCache(null);
+        return searcher;
+    }
+
+    /**
+     * Text clauses only, without the weight
+     */
+    private static Query textQuery(String text, BooleanClause.Occur occur, long docCount) {
+        QueryInfos queryInfos = QueryInfos.parse(text, new NormalAnalyzer());
+        Query query = new AutocompleteQueryBuilder(null, fields(), 0.00003f, docCount / 1000).getQuery(queryInfos, occur);
+        return ((WeightBlendQuery) query).getQuery();
+    }
+
+    @Test
+    public void testMaxScoresBoundScores() throws Exception {
+        try (DirectoryReader reader = DirectoryReader.open(build(2000, random().nextLong()))) {
+            IndexSearcher searcher = searcher(reader);
+            for (String text : QUERIES) {
+                for (BooleanClause.Occur occur : List.of(BooleanClause.Occur.MUST, BooleanClause.Occur.SHOULD)) {
+                    Query query = searcher.rewrite(textQuery(text, occur, reader.numDocs()));
+                    Weight weight = searcher.createWeight(query, ScoreMode.TOP_SCORES, 1f);
+                    for (LeafReaderContext leaf : reader.leaves()) {
+                        Scorer scorer = weight.scorer(leaf);
+                        if (scorer == null) {
+                            continue;
+                        }
+                        float maxScore = scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS);
+                        assertTrue(text, Float.isFinite(maxScore));
+                        for (int doc = scorer.iterator().nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.iterator().nextDoc()) {
+                            float score = scorer.score();
+                            assertTrue(text + ": " + score + " > " + maxScore, score <= maxScore);
+                            scorer.advanceShallow(doc);
+                            float windowMax = scorer.getMaxScore(doc);
+                            assertTrue(text + ": " + score + " > " + windowMax + " on doc " + doc, score <= windowMax);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Top hits collected with and without skipping the non-competitive documents are the same
+     */
+    @Test
+    public void testPruningKeepsTopHits() throws Exception {
+        try (DirectoryReader reader = DirectoryReader.open(build(3000, 13L))) {
+            IndexSearcher searcher = searcher(reader);
+            int pruned = 0;
+            for (String text : QUERIES) {
+                for (BooleanClause.Occur occur : List.of(BooleanClause.Occur.MUST, BooleanClause.Occur.SHOULD)) {
+                    Query query = textQuery(text, occur, reader.numDocs());
+                    TopScoreDocCollector complete = TopScoreDocCollector.create(10, Integer.MAX_VALUE);
+                    searcher.search(query, complete);
+                    TopScoreDocCollector topScores = TopScoreDocCollector.create(10, 1);
+                    searcher.search(query, topScores);
+
+                    TopDocs expected = complete.topDocs();
+                    TopDocs actual = topScores.topDocs();
+                    assertEquals(text, expected.scoreDocs.length, actual.scoreDocs.length);
+                    for (int i = 0; i < expected.scoreDocs.length; i++) {
+                        // equal scores may come in another order once documents are skipped
+                        assertEquals(text, expected.scoreDocs[i].score, actual.scoreDocs[i].score, 0f);
+                    }
+                    if (actual.totalHits.relation == TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO
+                            && actual.totalHits.value < expected.totalHits.value) {
+                        pruned++;
+                    }
+                }
+            }
+            assertTrue("no query skipped documents", pruned > 0);
+        }
+    }
+}
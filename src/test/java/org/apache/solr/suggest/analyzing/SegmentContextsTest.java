@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contexts shared by the results of the same suggestion, with the object parsed from them
+ */
+public class SegmentContextsTest extends SuggesterTestCase {
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        initSuggesterCore();
+    }
+
+    private static String context(int i) {
+        return "{\"category\": \"c" + (i % 7) + "\", \"padding\": \"" + "x".repeat(100) + "\"}";
+    }
+
+    private static Directory build(int size, boolean suggestionStore) throws IOException {
+        List<AutocompleteIndexBuilder.Suggestion> suggestions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            suggestions.add(new AutocompleteIndexBuilder.Suggestion(String.valueOf(i), "apple iphone " + i, i, context(i)));
+        }
+        Directory dir = new ByteBuffersDirectory();
+        build(dir, suggestions, 1, false, suggestionStore);
+        return dir;
+    }
+
+    /**
+     * Suggester keeping its searcher open, so that lookups share the segments
+     */
+    private static AutocompleteSuggester suggester(Directory dir, boolean suggestionStore, long contextCacheSize) throws IOException {
+        AutocompleteSuggester suggester = suggester(dir, 3600000L);
+        suggester.setSuggestionStore(suggestionStore);
+        suggester.setContextCacheSize(contextCacheSize);
+        return suggester;
+    }
+
+    private static BytesRef context(LookupResult result) {
+        assertEquals(1, result.contexts.size());
+        return result.contexts.iterator().next();
+    }
+
+    private static SegmentContexts.Context shared(LookupResult result) {
+        assertTrue(result.contexts instanceof SegmentContexts.Context);
+        return (SegmentContexts.Context) result.contexts;
+    }
+
+    @Test
+    public void testParsedOncePerSegment() throws Exception {
+        for (boolean suggestionStore : new boolean[]{false, true}) {
+            SegmentContexts.Cache cache;
+            try (AutocompleteSuggester suggester = suggester(build(200, suggestionStore), suggestionStore,
+                    SegmentContexts.DEFAULT_MAX_BYTES)) {
+                cache = suggester.getContextCache();
+                List<LookupResult> first = suggester.lookup2("apple", 20, true, true);
+                assertEquals(20, first.size());
+                for (LookupResult result : first) {
+                    int i = Integer.parseInt(result.key.toString().substring("apple iphone ".length()));
+                    assertEquals(context(i), context(result).utf8ToString());
+                    assertNull(shared(result).getParsed());
+                }
+
+                Object parsed = new Object();
+                shared(first.get(0)).setParsed(parsed);
+                List<LookupResult> second = suggester.lookup2("apple", 20, true, true);
+                assertSame(shared(first.get(0)), shared(second.get(0)));
+                assertSame(context(first.get(0)), context(second.get(0)));
+                assertSame(parsed, shared(second.get(0)).getParsed());
+                // the raw json has its own slot
+                assertNull(shared(second.get(0)).getRawJson());
+                Object rawJson = new Object();
+                shared(second.get(0)).setRawJson(rawJson);
+                assertSame(rawJson, shared(second.get(0)).getRawJson());
+                assertSame(parsed, shared(second.get(0)).getParsed());
+                // suggestions with an equal context share it as well
+                for (LookupResult result : second) {
+                    if (result != second.get(0) && context(result).equals(context(second.get(0)))) {
+                        assertSame(shared(second.get(0)), shared(result));
+                    }
+                }
+                assertTrue(cache.totalBytes() > 0);
+            }
+            // released with the suggester
+            assertEquals(0, cache.totalBytes());
+        }
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        // room for about three contexts
+        long budget = 3L * SegmentContexts.HEAP_PER_BYTE * context(0).length() + 1000;
+        SegmentContexts.Cache cache;
+        try (AutocompleteSuggester suggester = suggester(build(100, false), false, budget)) {
+            cache = suggester.getContextCache();
+            List<LookupResult> first = suggester.lookup2("apple", 20, true, true);
+            List<LookupResult> second = suggester.lookup2("apple", 20, true, true);
+            int shared = 0;
+            for (int i = 0; i < first.size(); i++) {
+                assertEquals(context(first.get(i)), context(second.get(i)));
+                if (context(first.get(i)) == context(second.get(i))) {
+                    shared++;
+                }
+            }
+            assertTrue(String.valueOf(shared), shared > 0 && shared < first.size());
+            assertTrue(cache.totalBytes() <= budget);
+
+            // contexts out of the budget keep their parsed object for the response only
+            for (LookupResult result : second) {
+                shared(result).setParsed("parsed");
+            }
+            int parsed = 0;
+            for (LookupResult result : suggester.lookup2("apple", 20, true, true)) {
+                parsed += shared(result).getParsed() != null ? 1 : 0;
+            }
+            assertEquals(shared, parsed);
+        }
+        assertEquals(0, cache.totalBytes());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        try (AutocompleteSuggester suggester = suggester(build(50, false), false, 0)) {
+            LookupResult first = suggester.lookup2("apple", 1, true, true).get(0);
+            shared(first).setParsed("parsed");
+            LookupResult second = suggester.lookup2("apple", 1, true, true).get(0);
+            assertEquals(context(first), context(second));
+            assertNotSame(context(first), context(second));
+            assertNull(shared(second).getParsed());
+        }
+    }
+
+    @Test
+    public void testCopiesShareBlocks() {
+        SegmentContexts.Copies copies = new SegmentContexts.Copies();
+        BytesRef scratch = new BytesRef(context(1));
+        BytesRef first = copies.copy(scratch);
+        scratch.bytes[scratch.offset] = 'x';
+        BytesRef second = copies.copy(new BytesRef(context(2)));
+        assertEquals(context(1), first.utf8ToString());
+        assertEquals(context(2), second.utf8ToString());
+        assertSame(first.bytes, second.bytes);
+        assertEquals(first.offset + first.length, second.offset);
+        // large contexts get their own bytes
+        BytesRef large = copies.copy(new BytesRef("x".repeat(SegmentContexts.Copies.BLOCK_SIZE)));
+        assertNotSame(first.bytes, large.bytes);
+        assertEquals(SegmentContexts.Copies.BLOCK_SIZE, large.length);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.Directory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Results read in doc id order, with the display texts decoded once per segment
+ */
+public class SegmentTextsTest extends SuggesterTestCase {
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        initSuggesterCore();
+    }
+
+    private static Directory build(String prefix, int size) throws IOException {
+        List<AutocompleteIndexBuilder.Suggestion> suggestions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            suggestions.add(new AutocompleteIndexBuilder.Suggestion(prefix + i, prefix + " suggestion " + i, i, null));
+        }
+        return build(suggestions, false);
+    }
+
+    /**
+     * Text of a document, read on its own
+     */
+    private static String text(IndexReader reader, int doc) throws IOException {
+        LeafReaderContext leaf = reader.leaves().get(ReaderUtil.subIndex(doc, reader.leaves()));
+        SortedDocValues values = leaf.reader().getSortedDocValues("search_text");
+        assertTrue(values.advanceExact(doc - leaf.docBase));
+        return values.binaryValue().utf8ToString();
+    }
+
+    @Test
+    public void testResultsAcrossSegments() throws Exception {
+        Directory first = build("first", 300);
+        Directory second = build("second", 200);
+        try (AutocompleteSuggester suggester = suggester(first);
+             MultiReader reader = new MultiReader(DirectoryReader.open(first), DirectoryReader.open(second))) {
+            assertTrue(reader.leaves().size() > 1);
+            IndexSearcher searcher = new IndexSearcher(reader);
+
+            // suggestions picked from all segments, scores unrelated to the doc ids
+            Random random = new Random(random().nextLong());
+            List<Integer> docs = new ArrayList<>();
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                docs.add(doc);
+            }
+            Collections.shuffle(docs, random);
+            TopSuggestions top = new TopSuggestions(20, false);
+            for (int doc : docs.subList(0, 50)) {
+                top.offer(doc, random.nextFloat(), 0f);
+            }
+            top.sort();
+
+            List<LookupResult> results = suggester.createResults(searcher, top, false, Collections.emptySet(), null, false);
+            assertEquals(20, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(text(reader, top.getDoc(i)), results.get(i).key.toString());
+                assertEquals((long) (top.getScore(i) * 1000000), results.get(i).value);
+            }
+
+            // decoded once: the next lookups return the same strings
+            List<LookupResult> again = suggester.createResults(searcher, top, true, Collections.emptySet(), "suggestion", false);
+            for (int i = 0; i < results.size(); i++) {
+                assertSame(results.get(i).key, again.get(i).key);
+            }
+        }
+    }
+
+    @Test
+    public void testReleasedOnClose() throws Exception {
+        Directory dir = build("single", 100);
+        SegmentTexts.Cache cache = new SegmentTexts.Cache(SegmentTexts.DEFAULT_MAX_BYTES);
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            LeafReaderContext leaf = reader.leaves().get(0);
+            SegmentTexts texts = cache.get(leaf, "search_text");
+            assertSame(texts, cache.get(leaf, "search_text"));
+
+            SortedDocValues values = leaf.reader().getSortedDocValues("search_text");
+            assertTrue(values.advanceExact(0));
+            assertEquals(text(reader, leaf.docBase), texts.get(values));
+            assertEquals(1, cache.size());
+            assertTrue(cache.totalBytes() > 0);
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.totalBytes());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        Directory dir = build("budget", 100);
+        // room for a few texts only
+        long budget = 1000;
+        SegmentTexts.Cache cache = new SegmentTexts.Cache(budget);
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            LeafReaderContext leaf = reader.leaves().get(0);
+            SegmentTexts texts = cache.get(leaf, "search_text");
+            int kept = 0;
+            for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                SortedDocValues values = leaf.reader().getSortedDocValues("search_text");
+                assertTrue(values.advanceExact(doc));
+                String first = texts.get(values);
+                String second = texts.get(values);
+                assertEquals(text(reader, leaf.docBase + doc), first);
+                assertEquals(first, second);
+                kept += first == second ? 1 : 0;
+            }
+            assertTrue(String.valueOf(kept), kept > 0 && kept < leaf.reader().maxDoc());
+            assertTrue(cache.totalBytes() <= budget);
+        }
+        // released with the segment
+        assertEquals(0, cache.totalBytes());
+    }
+
+    @Test
+    public void testBudgetPerSuggester() throws Exception {
+        Directory dir = build("shared", 100);
+        try (AutocompleteSuggester full = suggester(dir);
+             AutocompleteSuggester other = suggester(dir);
+             DirectoryReader reader = DirectoryReader.open(dir)) {
+            full.setTextCacheSize(1000);
+            IndexSearcher searcher = new IndexSearcher(reader);
+            TopSuggestions top = new TopSuggestions(100, false);
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                top.offer(doc, 1f, 0f);
+            }
+            top.sort();
+
+            // the first suggester spends its whole budget, the second one keeps its texts all the same
+            full.createResults(searcher, top, false, Collections.emptySet(), null, false);
+            assertTrue(full.getTextCache().totalBytes() > 0);
+            List<LookupResult> first = other.createResults(searcher, top, false, Collections.emptySet(), null, false);
+            List<LookupResult> second = other.createResults(searcher, top, false, Collections.emptySet(), null, false);
+            for (int i = 0; i < first.size(); i++) {
+                assertSame(first.get(i).key, second.get(i).key);
+            }
+            assertTrue(other.getTextCache().totalBytes() > full.getTextCache().totalBytes());
+        }
+    }
+
+    @Test
+    public void testReleasedWithSuggester() throws Exception {
+        Directory dir = build("closed", 50);
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            AutocompleteSuggester suggester = suggester(dir);
+            SegmentTexts.Cache cache = suggester.getTextCache();
+            TopSuggestions top = new TopSuggestions(10, false);
+            for (int doc = 0; doc < 10; doc++) {
+                top.offer(doc, 1f, 0f);
+            }
+            top.sort();
+            suggester.createResults(new IndexSearcher(reader), top, false, Collections.emptySet(), null, false);
+            assertEquals(1, cache.size());
+            assertTrue(cache.totalBytes() > 0);
+            suggester.close();
+            // the reader is still open
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.totalBytes());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Fixture of the suggester tests: the test core, the fields of its suggester, indexes built by
+ * {@link AutocompleteIndexBuilder} and suggesters opened on them
+ */
+public abstract class SuggesterTestCase extends SolrTestCaseJ4 {
+
+    /**
+     * Start the test core, to call from the {@code @BeforeClass} method of the test
+     */
+    protected static void initSuggesterCore() throws Exception {
+        System.setProperty("enable.update.log", "false");
+        initCore("solrconfig.xml", "schema.xml");
+    }
+
+    /**
+     * @return fields of the suggester of the test core
+     */
+    protected static Map<String, String> fields() {
+        return AutocompleteLookupFactory.getFields(AutocompleteIndexBuilderTool.findSuggester(h.getCore().getSolrConfig(), null));
+    }
+
+    /**
+     * @param maxWords maximum number of words of a suggestion, picked at random among {@code words}
+     * @param numbered append the index of the suggestion to its text, so that all texts differ
+     * @param weight   weight of a suggestion, drawn after its words
+     * @return suggestions without context, whose ids are their index
+     */
+    protected static List<AutocompleteIndexBuilder.Suggestion> randomSuggestions(Random random, int size, String[] words, int maxWords,
+                                                                                 boolean numbered, ToDoubleFunction<Random> weight) {
+        List<AutocompleteIndexBuilder.Suggestion> suggestions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder text = new StringBuilder();
+            int nbWords = 1 + random.nextInt(maxWords);
+            for (int w = 0; w < nbWords; w++) {
+                text.append(w == 0 ? "" : " ").append(words[random.nextInt(words.length)]);
+            }
+            if (numbered) {
+                text.append(' ').append(i);
+            }
+            suggestions.add(new AutocompleteIndexBuilder.Suggestion(String.valueOf(i), text.toString(),
+                    (float) weight.applyAsDouble(random), null));
+        }
+        return suggestions;
+    }
+
+    /**
+     * Build an index of the suggestions in {@code dir}
+     *
+     * @return number of suggestions indexed
+     */
+    protected static long build(Directory dir, List<AutocompleteIndexBuilder.Suggestion> suggestions, int threads,
+                                boolean sortByWeight, boolean suggestionStore) throws IOException {
+        Iterator<AutocompleteIndexBuilder.Suggestion> iterator = suggestions.iterator();
+        return new AutocompleteIndexBuilder(h.getCore().getLatestSchema(), fields(), threads, sortByWeight, suggestionStore)
+                .build(dir, () -> iterator.hasNext() ? iterator.next() : null);
+    }
+
+    /**
+     * @return an index of the suggestions in memory, built by two threads
+     */
+    protected static Directory build(List<AutocompleteIndexBuilder.Suggestion> suggestions, boolean sortByWeight) throws IOException {
+        Directory dir = new ByteBuffersDirectory();
+        build(dir, suggestions, 2, sortByWeight, false);
+        return dir;
+    }
+
+    /**
+     * @return a suggester on {@code dir}, which it closes, refreshing its searcher on the lookups which follow a
+     * change of the index
+     */
+    protected static AutocompleteSuggester suggester(Directory dir) throws IOException {
+        return suggester(dir, 0L);
+    }
+
+    /**
+     * @param refreshInterval delay between two refreshes of the searcher in the background, in milliseconds
+     * @return a suggester on {@code dir}, which it closes
+     */
+    protected static AutocompleteSuggester suggester(Directory dir, long refreshInterval) throws IOException {
+        return new AutocompleteSuggester(dir, 0, true, true, fields(), 0.00003f, null,
+                h.getCore().getLatestSchema().getSimilarity(), false, refreshInterval, 0, 0);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.solr.spelling.suggest.fst.AutocompleteLookupFactory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SuggestionStoreTest extends SuggesterTestCase {
+
+    private static final String[] WORDS = {"apple", "iphone", "ipad", "samsung", "galaxy", "telephone",
+            "velo", "rouge", "cafe", "machine"};
+
+    private static final List<String> QUERIES = List.of("a", "ip", "apple i", "samsung galaxy", "velo r", "cafe");
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        initSuggesterCore();
+    }
+
+    private static long build(Directory dir, int size, long seed, boolean suggestionStore) throws IOException {
+        return build(dir, randomSuggestions(new Random(seed), size, WORDS, 3, false, random -> random.nextInt(1000)),
+                2, false, suggestionStore);
+    }
+
+    private static String contextField() {
+        return fields().get(AutocompleteLookupFactory.FIELD_CONTEXT);
+    }
+
+    private static AutocompleteSuggester suggester(Directory dir, boolean suggestionStore) throws IOException {
+        AutocompleteSuggester suggester = suggester(dir);
+        suggester.setSuggestionStore(suggestionStore);
+        return suggester;
+    }
+
+    private static List<String> stores(Directory dir) throws IOException {
+        List<String> stores = new ArrayList<>();
+        for (String file : dir.listAll()) {
+            if (file.startsWith(SuggestionStore.PREFIX)) {
+                stores.add(file);
+            }
+        }
+        return stores;
+    }
+
+    private static List<String> results(List<LookupResult> results) {
+        List<String> list = new ArrayList<>();
+        for (LookupResult result : results) {
+            list.add(result.key + "|" + result.highlightKey + "|" + result.value);
+        }
+        return list;
+    }
+
+    @Test
+    public void testStoreReadsDocValues() throws Exception {
+        try (Directory dir = new MMapDirectory(createTempDir())) {
+            build(dir, 500, random().nextLong(), true);
+            assertEquals(1, stores(dir).size());
+
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    assertEquals(SuggestionStore.fileName(((SegmentReader) leaf.reader()).getSegmentInfo().info,
+                            "search_text", contextField()), stores(dir).get(0));
+                    SuggestionStore.Cursor cursor = SuggestionStore.cursor(leaf, "search_text", contextField());
+                    assertNotNull(cursor);
+                    SortedDocValues values = leaf.reader().getSortedDocValues("search_text");
+                    String[] expected = new String[leaf.reader().maxDoc()];
+                    for (int doc = 0; doc < expected.length; doc++) {
+                        assertTrue(values.advanceExact(doc));
+                        expected[doc] = values.binaryValue().utf8ToString();
+                        assertNull(cursor.context(doc));
+                    }
+                    // random access, backwards included
+                    for (int doc = expected.length - 1; doc >= 0; doc--) {
+                        assertEquals(expected[doc], cursor.text(doc));
+                    }
+                    expectThrows(IllegalArgumentException.class, () -> cursor.text(leaf.reader().maxDoc()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameResultsAsDocValues() throws Exception {
+        try (Directory dir = new MMapDirectory(createTempDir())) {
+            build(dir, 1000, 17L, true);
+            try (AutocompleteSuggester withStore = suggester(dir, true);
+                 AutocompleteSuggester withoutStore = suggester(dir, false)) {
+                for (String query : QUERIES) {
+                    List<String> expected = results(withoutStore.lookup2(query, 10, true, true));
+                    assertFalse(query, expected.isEmpty());
+                    assertEquals(query, expected, results(withStore.lookup2(query, 10, true, true)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores are written for the segments of a commit, those of the replaced segments are deleted
+     */
+    @Test
+    public void testWrittenAfterCommitAndDeletedWhenStale() throws Exception {
+        try (Directory dir = new MMapDirectory(createTempDir())) {
+            build(dir, 300, 5L, false);
+            assertTrue(stores(dir).isEmpty());
+
+            try (AutocompleteSuggester suggester = suggester(dir, true)) {
+                assertFalse(suggester.lookup2("apple", 5, true, true).isEmpty());
+                // never written by the searcher
+                assertTrue(stores(dir).isEmpty());
+
+                suggester.postCommit(dir);
+                assertEquals(1, stores(dir).size());
+                String first = stores(dir).get(0);
+                assertFalse(suggester.lookup2("apple", 5, true, true).isEmpty());
+
+                // a rebuild replaces the segment, its store goes with the next commit
+                build(dir, 300, 6L, false);
+                suggester.postCommit(dir);
+                List<String> stores = stores(dir);
+                assertEquals(stores.toString(), 1, stores.size());
+                assertFalse(stores.contains(first));
+                assertFalse(suggester.lookup2("apple", 5, true, true).isEmpty());
+            }
+        }
+    }
+
+    /**
+     * A reader older than the latest commit neither writes the stores of its segments nor deletes the newer ones
+     */
+    @Test
+    public void testOldReaderKeepsNewerStores() throws Exception {
+        try (Directory dir = new MMapDirectory(createTempDir())) {
+            build(dir, 200, 3L, false);
+            try (DirectoryReader old = DirectoryReader.open(dir)) {
+                build(dir, 200, 4L, false);
+                try (DirectoryReader latest = DirectoryReader.open(dir)) {
+                    assertEquals(1, SuggestionStore.writeMissing(latest, "search_text", contextField()));
+                }
+                List<String> stores = stores(dir);
+                assertEquals(0, SuggestionStore.writeMissing(old, "search_text", contextField()));
+                assertEquals(stores, stores(dir));
+                // the segments of the old reader are read from the doc values
+                assertNull(SuggestionStore.cursor(old.leaves().get(0), "search_text", contextField()));
+            }
+        }
+    }
+
+    /**
+     * Suggesters of the same index displaying other fields have their own stores
+     */
+    @Test
+    public void testStoresByFields() throws Exception {
+        try (Directory dir = new MMapDirectory(createTempDir())) {
+            build(dir, 200, 8L, false);
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                LeafReaderContext leaf = reader.leaves().get(0);
+                assertEquals(1, SuggestionStore.writeMissing(reader, "search_text", null));
+                assertNull(SuggestionStore.cursor(leaf, "search_text", contextField()));
+                assertEquals(1, SuggestionStore.writeMissing(reader, "search_text", contextField()));
+                assertEquals(2, stores(dir).size());
+
+                SortedDocValues values = leaf.reader().getSortedDocValues("search_text");
+                assertTrue(values.advanceExact(0));
+                assertEquals(values.binaryValue().utf8ToString(), SuggestionStore.cursor(leaf, "search_text", null).text(0));
+                assertEquals(values.binaryValue().utf8ToString(),
+                        SuggestionStore.cursor(leaf, "search_text", contextField()).text(0));
+            }
+        }
+    }
+
+    @Test
+    public void testMissingStoreFallsBackToDocValues() throws Exception {
+        try (Directory dir = new MMapDirectory(createTempDir())) {
+            build(dir, 200, 9L, false);
+            try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                assertNull(SuggestionStore.cursor(reader.leaves().get(0), "search_text", null));
+                assertEquals(1, SuggestionStore.writeMissing(reader, "search_text", null));
+                assertEquals(0, SuggestionStore.writeMissing(reader, "search_text", null));
+                assertEquals(Arrays.asList(SuggestionStore.fileName(
+                        ((SegmentReader) reader.leaves().get(0).reader()).getSegmentInfo().info, "search_text", null)),
+                        stores(dir));
+                // looked for again once written
+                assertNotNull(SuggestionStore.cursor(reader.leaves().get(0), "search_text", null));
+            }
+        }
+    }
+}
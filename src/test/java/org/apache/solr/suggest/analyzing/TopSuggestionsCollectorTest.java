@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.suggest.Lookup.LookupResult;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class TopSuggestionsCollectorTest extends SuggesterTestCase {
+
+    private static final String[] WORDS = {"apple", "iphone", "ipad", "samsung", "galaxy", "tablet", "phone", "case",
+            "red", "blue", "black", "bike", "thermomix", "kitchen", "robot", "coffee", "machine", "watch", "tv", "oled"};
+
+    private static final List<String> QUERIES = Arrays.asList("a", "i", "ip", "b", "t", "apple", "apple i", "iphone b",
+            "samsung galaxy", "red bike", "coffee machine bl", "iphon", "blak", "apple iphone red case black bike galaxy tablet");
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        initSuggesterCore();
+    }
+
+    /**
+     * @return a few heavy suggestions, a long tail of light ones
+     */
+    static List<AutocompleteIndexBuilder.Suggestion> suggestions(int size, long seed) {
+        return randomSuggestions(new Random(seed), size, WORDS, 4, true,
+                random -> random.nextInt(10) == 0 ? random.nextInt(100000) : random.nextInt(1000));
+    }
+
+    private static Directory build(int size, boolean sortByWeight, long seed) throws IOException {
+        return build(suggestions(size, seed), sortByWeight);
+    }
+
+    private static AutocompleteSuggester suggester(Directory dir, boolean sortByWeight) throws IOException {
+        AutocompleteSuggester suggester = suggester(dir);
+        suggester.setSortByWeight(sortByWeight);
+        return suggester;
+    }
+
+    /**
+     * Early terminated lookups return the same suggestions, in the same order, as complete ones
+     */
+    @Test
+    public void testSameResults() throws Exception {
+        Directory dir = build(3000, true, random().nextLong());
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            for (LeafReaderContext leaf : reader.leaves()) {
+                assertTrue(TopSuggestionsCollector.isSortedByWeight(leaf.reader(), "weight"));
+            }
+        }
+
+        try (AutocompleteSuggester complete = suggester(dir, false);
+             AutocompleteSuggester terminated = suggester(dir, true)) {
+            for (String query : QUERIES) {
+                for (int num : new int[]{1, 5, 10}) {
+                    assertEquals(query, results(complete.lookup2(query, num, true, true)),
+                            results(terminated.lookup2(query, num, true, true)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTerminatesSortedSegments() throws Exception {
+        Directory sorted = build(3000, true, 42L);
+        Directory unsorted = build(3000, false, 42L);
+        try (AutocompleteSuggester suggester = suggester(sorted, true)) {
+            for (Directory dir : List.of(sorted, unsorted)) {
+                try (DirectoryReader reader = DirectoryReader.open(dir)) {
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    searcher.setSimilarity(h.getCore().getLatestSchema().getSimilarity());
+                    CompiledQueryCache.CompiledQuery compiled = compile(suggester, "a", reader.getDocCount("id"));
+                    assertTrue(Float.isFinite(compiled.maxTextScore));
+
+                    TopSuggestionsCollector collector = new TopSuggestionsCollector(new TopSuggestions(10, false),
+                            "weight", compiled.blend, compiled.maxTextScore);
+                    searcher.search(compiled.query, collector);
+                    TopSuggestions top = collector.getTop();
+                    top.sort();
+                    TopScoreDocCollector reference = TopScoreDocCollector.create(10, Integer.MAX_VALUE);
+                    searcher.search(compiled.query, reference);
+                    TopDocs expected = reference.topDocs();
+
+                    assertEquals(expected.scoreDocs.length, top.size());
+                    for (int i = 0; i < expected.scoreDocs.length; i++) {
+                        assertEquals(expected.scoreDocs[i].doc, top.getDoc(i));
+                        assertEquals(expected.scoreDocs[i].score, top.getScore(i), 0f);
+                    }
+                    if (dir == sorted) {
+                        assertTrue(collector.isTerminated());
+                        assertTrue(collector.getTotalHits() + " < " + expected.totalHits.value,
+                                collector.getTotalHits() < expected.totalHits.value / 2);
+                    } else {
+                        assertFalse(collector.isTerminated());
+                        assertEquals(expected.totalHits.value, collector.getTotalHits());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Same suggestions and order as a complete sort, with and without the weight breaking ties, heaps merged or not
+     */
+    @Test
+    public void testHeapOrder() {
+        Random random = random();
+        for (int iter = 0; iter < 50; iter++) {
+            int count = random.nextInt(200);
+            int[] docs = new int[count];
+            float[] scores = new float[count];
+            float[] weights = new float[count];
+            for (int i = 0; i < count; i++) {
+                docs[i] = i;
+                // few distinct values, plenty of ties
+                scores[i] = random.nextInt(5);
+                weights[i] = random.nextInt(3);
+            }
+            for (boolean tieBreak : new boolean[]{false, true}) {
+                for (int num : new int[]{1, 5, 10}) {
+                    TopSuggestions top = new TopSuggestions(num, tieBreak);
+                    TopSuggestions first = new TopSuggestions(num, tieBreak);
+                    TopSuggestions second = new TopSuggestions(num, tieBreak);
+                    for (int i = 0; i < count; i++) {
+                        top.offer(docs[i], scores[i], weights[i]);
+                        (i % 2 == 0 ? first : second).offer(docs[i], scores[i], weights[i]);
+                    }
+                    TopSuggestions merged = new TopSuggestions(num, tieBreak);
+                    merged.addAll(second);
+                    merged.addAll(first);
+                    top.sort();
+                    merged.sort();
+
+                    List<Integer> expected = new ArrayList<>();
+                    for (int i = 0; i < count; i++) {
+                        expected.add(i);
+                    }
+                    expected.sort((a, b) -> {
+                        if (scores[a] != scores[b]) {
+                            return Float.compare(scores[b], scores[a]);
+                        } else if (tieBreak && weights[a] != weights[b]) {
+                            return Float.compare(weights[b], weights[a]);
+                        }
+                        return Integer.compare(a, b);
+                    });
+                    expected = expected.subList(0, Math.min(num, count));
+                    assertEquals(expected.size(), top.size());
+                    assertEquals(expected.size(), merged.size());
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertEquals(expected.get(i).intValue(), top.getDoc(i));
+                        assertEquals(scores[expected.get(i)], top.getScore(i), 0f);
+                        assertEquals(expected.get(i).intValue(), merged.getDoc(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThreadBuffersReused() {
+        TopSuggestions top = TopSuggestions.forThread(5, false);
+        top.offer(3, 1f, 0f);
+        TopSuggestions next = TopSuggestions.forThread(50, true);
+        assertSame(top, next);
+        assertEquals(0, next.size());
+        assertTrue(next.isTieBreakOnWeight());
+        for (int i = 0; i < 60; i++) {
+            next.offer(i, i, 0f);
+        }
+        assertEquals(50, next.size());
+        expectThrows(IllegalArgumentException.class, () -> TopSuggestions.forThread(0, false));
+    }
+
+    @Test
+    public void testUnboundedQueries() throws Exception {
+        try (AutocompleteSuggester suggester = suggester(new ByteBuffersDirectory(), true)) {
+            // long queries use fuzzy queries summing the scores of their expansions
+            Query query = compile(suggester, "apple iphone red case black bike galaxy tablet", 1000).query;
+            assertEquals(Float.POSITIVE_INFINITY, TextScoreBound.of(query, 1f), 0f);
+            assertTrue(Float.isFinite(TextScoreBound.of(compile(suggester, "apple i", 1000).query, 1f)));
+        }
+        assertFalse(TopSuggestionsCollector.canTerminate(null, blend(1f), 10f));
+        assertFalse(TopSuggestionsCollector.canTerminate("weight", blend(0f), 10f));
+        assertFalse(TopSuggestionsCollector.canTerminate("weight", blend(1f), Float.POSITIVE_INFINITY));
+    }
+
+    private static CompiledQueryCache.CompiledQuery compile(AutocompleteSuggester suggester, String text, long docCount) {
+        QueryInfos queryInfos = QueryInfos.parse(text, suggester.queryAnalyzer);
+        Query query = new AutocompleteQueryBuilder(null, fields(), blend(0.00003f), docCount / 1000)
+                .getQuery(queryInfos, BooleanClause.Occur.MUST);
+        return new CompiledQueryCache.CompiledQuery(queryInfos, query, blend(0.00003f),
+                TextScoreBound.of(query, TextScoreBound.maxTermScore(h.getCore().getLatestSchema().getSimilarity())));
+    }
+
+    private static WeightBlend blend(float coeff) {
+        return new WeightBlend(WeightBlend.Formula.ADDITIVE, coeff);
+    }
+
+    private static List<String> results(List<LookupResult> results) {
+        List<String> keys = new ArrayList<>();
+        for (LookupResult result : results) {
+            keys.add(result.key + "|" + result.highlightKey + "|" + result.value);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.suggest.analyzing;
+
+import org.apache.lucene.analysis.NormalAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.queries.function.FunctionQuery;
+import org.apache.lucene.queries.function.valuesource.FloatFieldSource;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class WeightBlendQueryTest extends SuggesterTestCase {
+
+    private static final String[] WORDS = {"apple", "iphone", "ipad", "samsung", "galaxy", "tablet", "red", "bike",
+            "coffee", "machine"};
+
+    private static final List<String> QUERIES = List.of("a", "ip", "apple", "apple i", "samsung galaxy", "red bik",
+            "coffee machine", "iphon");
+
+    private static final float COEFF = 0.00003f;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        initSuggesterCore();
+    }
+
+    private static Directory build(int size, long seed) throws IOException {
+        return build(randomSuggestions(new Random(seed), size, WORDS, 3, false, random -> random.nextInt(100000)), false);
+    }
+
+    private static IndexSearcher searcher(DirectoryReader reader) {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        searcher.setSimilarity(h.getCore().getLatestSchema().getSimilarity());
+        return searcher;
+    }
+
+    private static WeightBlendQuery query(String text, BooleanClause.Occur occur, WeightBlend blend) {
+        QueryInfos queryInfos = QueryInfos.parse(text, new NormalAnalyzer());
+        Query query = new AutocompleteQueryBuilder(null, fields(), blend, 1).getQuery(queryInfos, occur);
+        assertTrue(query instanceof WeightBlendQuery);
+        return (WeightBlendQuery) query;
+    }
+
+    /**
+     * The text clauses with the former weight clause
+     */
+    private static Query withWeightClause(WeightBlendQuery query, BooleanClause.Occur occur) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (BooleanClause clause : (BooleanQuery) query.getQuery()) {
+            builder.add(clause);
+        }
+        builder.add(new BoostQuery(new FunctionQuery(new FloatFieldSource("weight")), COEFF), occur);
+        return builder.build();
+    }
+
+    private static Map<Integer, Float> scores(IndexSearcher searcher, Query query) throws IOException {
+        TopDocs topDocs = searcher.search(query, Math.max(1, searcher.getIndexReader().maxDoc()));
+        Map<Integer, Float> scores = new HashMap<>();
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            scores.put(scoreDoc.doc, scoreDoc.score);
+        }
+        return scores;
+    }
+
+    private static void assertScores(String message, Map<Integer, Float> expected, Map<Integer, Float> actual) {
+        assertEquals(message, expected.keySet(), actual.keySet());
+        for (Map.Entry<Integer, Float> entry : expected.entrySet()) {
+            assertEquals(message, entry.getValue(), actual.get(entry.getKey()), Math.abs(entry.getValue()) * 1e-5f);
+        }
+    }
+
+    /**
+     * With all terms required, the additive blend scores the documents like the former weight clause
+     */
+    @Test
+    public void testAdditiveSameAsWeightClause() throws Exception {
+        WeightBlend blend = new WeightBlend(WeightBlend.Formula.ADDITIVE, COEFF);
+        try (DirectoryReader reader = DirectoryReader.open(build(1000, random().nextLong()))) {
+            IndexSearcher searcher = searcher(reader);
+            for (String text : QUERIES) {
+                WeightBlendQuery query = query(text, BooleanClause.Occur.MUST, blend);
+                Map<Integer, Float> scores = scores(searcher, query);
+                assertFalse(text, scores.isEmpty());
+                assertScores(text, scores(searcher, withWeightClause(query, BooleanClause.Occur.MUST)), scores);
+            }
+        }
+    }
+
+    /**
+     * Optional terms: only the documents matching the text are returned, the weight clause matched them all
+     */
+    @Test
+    public void testOnlyTextMatchesAreWeighted() throws Exception {
+        WeightBlend blend = new WeightBlend(WeightBlend.Formula.ADDITIVE, COEFF);
+        try (DirectoryReader reader = DirectoryReader.open(build(1000, 7L))) {
+            IndexSearcher searcher = searcher(reader);
+            WeightBlendQuery query = query("samsung galaxy", BooleanClause.Occur.SHOULD, blend);
+            int textHits = searcher.count(query.getQuery());
+            assertTrue(textHits > 0 && textHits < reader.maxDoc());
+            assertEquals(textHits, searcher.count(query));
+            assertEquals(textHits, scores(searcher, query).size());
+            assertEquals(reader.maxDoc(), searcher.count(withWeightClause(query, BooleanClause.Occur.SHOULD)));
+        }
+    }
+
+    @Test
+    public void testMultiplicative() throws Exception {
+        WeightBlend blend = new WeightBlend(WeightBlend.Formula.MULTIPLICATIVE, COEFF);
+        try (DirectoryReader reader = DirectoryReader.open(build(1000, 11L))) {
+            IndexSearcher searcher = searcher(reader);
+            for (String text : QUERIES) {
+                WeightBlendQuery query = query(text, BooleanClause.Occur.MUST, blend);
+                Map<Integer, Float> expected = new HashMap<>();
+                for (Map.Entry<Integer, Float> entry : scores(searcher, query.getQuery()).entrySet()) {
+                    LeafReaderContext leaf = reader.leaves().get(ReaderUtil.subIndex(entry.getKey(), reader.leaves()));
+                    float weight = SegmentWeights.get(leaf, "weight").get(entry.getKey() - leaf.docBase);
+                    expected.put(entry.getKey(), entry.getValue() * (1 + COEFF * weight));
+                }
+                assertScores(text, expected, scores(searcher, query));
+            }
+        }
+    }
+
+    /**
+     * Maximum scores bound the blended scores, explanations give the same score
+     */
+    @Test
+    public void testMaxScoreAndExplain() throws Exception {
+        try (DirectoryReader reader = DirectoryReader.open(build(500, 3L))) {
+            IndexSearcher searcher = searcher(reader);
+            for (WeightBlend.Formula formula : WeightBlend.Formula.values()) {
+                WeightBlendQuery query = query("apple i", BooleanClause.Occur.MUST, new WeightBlend(formula, COEFF));
+                Weight weight = searcher.createWeight(searcher.rewrite(query), ScoreMode.TOP_SCORES, 1f);
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    Scorer scorer = weight.scorer(leaf);
+                    if (scorer == null) {
+                        continue;
+                    }
+                    float maxScore = scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS);
+                    for (int doc = scorer.iterator().nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = scorer.iterator().nextDoc()) {
+                        float score = scorer.score();
+                        assertTrue(score + " > " + maxScore, score <= maxScore);
+                        assertEquals(score, weight.explain(leaf, doc).getValue().floatValue(), score * 1e-6f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSegmentWeightsReleasedOnClose() throws Exception {
+        Directory dir = build(200, 5L);
+        int before = SegmentWeights.size();
+        try (DirectoryReader reader = DirectoryReader.open(dir)) {
+            LeafReaderContext leaf = reader.leaves().get(0);
+            SegmentWeights weights = SegmentWeights.get(leaf, "weight");
+            assertSame(weights, SegmentWeights.get(leaf, "weight"));
+            assertTrue(weights.getMinWeight() <= weights.getMaxWeight());
+            assertEquals(before + 1, SegmentWeights.size());
+        }
+        assertEquals(before, SegmentWeights.size());
+    }
+
+    @Test
+    public void testFormula() {
+        assertEquals(WeightBlend.Formula.MULTIPLICATIVE, WeightBlend.Formula.fromString(" Multiplicative"));
+        expectThrows(IllegalArgumentException.class, () -> WeightBlend.Formula.fromString("log"));
+
+        WeightBlend additive = new WeightBlend(WeightBlend.Formula.ADDITIVE, 2f);
+        assertEquals(7f, additive.combine(1f, 3f), 0f);
+        assertEquals(1f, additive.minTextScore(7f, 0f, 3f), 1e-5f);
+        WeightBlend multiplicative = new WeightBlend(WeightBlend.Formula.MULTIPLICATIVE, 2f);
+        assertEquals(14f, multiplicative.combine(2f, 3f), 0f);
+        assertEquals(2f, multiplicative.minTextScore(14f, 0f, 3f), 1e-5f);
+        assertEquals(0f, new WeightBlend(WeightBlend.Formula.MULTIPLICATIVE, -1f).maxScore(5f, 3f), 0f);
+    }
+}
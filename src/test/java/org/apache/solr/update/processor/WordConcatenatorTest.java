@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.solr.update.processor;
+
+import org.apache.lucene.analysis.CustomAnalyzer;
+import org.apache.lucene.analysis.WordsParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class WordConcatenatorTest {
+
+    private static final String[] WORDS = {"Apple", "iPhone", "12", "Pro", "Max", "256Go", "Noir", "Cr\u00e8me",
+            "br\u00fbl\u00e9e", "\u0152uf", "T\u00e9l\u00e9viseur", "QLED", "4K", "55\"", "(139cm)", "Samsung", "l'arbre",
+            "-", "/", "Reconditionn\u00e9", "Tr\u00e8s", "bon", "\u00e9tat"};
+
+    /**
+     * Concatenation as done before, with a new analyzer and linked lists for each value
+     */
+    static String legacy(String text) {
+        return WordsParser.recomposeText(
+                WordsParser.concatWords(WordsParser.decomposeText(new CustomAnalyzer(), "", text), 2, true, true),
+                " ", true);
+    }
+
+    @Test
+    public void testConcat() throws IOException {
+        WordConcatenator concatenator = new WordConcatenator(new CustomAnalyzer());
+        assertEquals("", concatenator.concat(""));
+        assertEquals("", concatenator.concat(" - / "));
+        assertEquals("apple  apple", concatenator.concat("Apple"));
+        assertEquals("appleiphone iphoneapple  appleiphone iphoneapple", concatenator.concat("Apple iPhone"));
+        assertEquals("ab ba bc cb  bc cb ab ba", concatenator.concat("a b c"));
+    }
+
+    @Test
+    public void testSameAsLegacy() throws IOException {
+        WordConcatenator concatenator = new WordConcatenator(new CustomAnalyzer());
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomTitle(random, random.nextInt(i % 100 == 0 ? 200 : 12));
+            assertEquals(text, legacy(text), concatenator.concat(text));
+        }
+    }
+
+    static String randomTitle(Random random, int nbWords) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < nbWords; j++) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return sb.toString();
+    }
+}